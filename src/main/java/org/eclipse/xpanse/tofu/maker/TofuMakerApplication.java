@@ -11,11 +11,13 @@ import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfi
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.retry.annotation.EnableRetry;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /** Main entry class to tofu-maker. This class can be directly executed to start the server. */
 @EnableRetry
 @EnableAsync
 @EnableCaching
+@EnableScheduling
 @SpringBootApplication(exclude = {SecurityAutoConfiguration.class})
 public class TofuMakerApplication {
 
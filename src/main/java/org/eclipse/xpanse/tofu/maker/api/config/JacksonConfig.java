@@ -7,7 +7,9 @@ package org.eclipse.xpanse.tofu.maker.api.config;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.eclipse.xpanse.tofu.maker.models.request.OpenTofuRequest;
 import org.eclipse.xpanse.tofu.maker.models.request.OpenTofuRequestDeserializer;
 import org.springframework.context.annotation.Bean;
@@ -31,6 +33,8 @@ public class JacksonConfig {
         SimpleModule tofuRequestModule = new SimpleModule();
         tofuRequestModule.addDeserializer(OpenTofuRequest.class, new OpenTofuRequestDeserializer());
         mapper.registerModule(tofuRequestModule);
+        mapper.registerModule(new JavaTimeModule());
+        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
         mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
         return mapper;
     }
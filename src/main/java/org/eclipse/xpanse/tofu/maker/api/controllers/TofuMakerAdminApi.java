@@ -11,6 +11,8 @@ import jakarta.annotation.Resource;
 import jakarta.servlet.http.HttpServletRequest;
 import java.util.UUID;
 import lombok.extern.slf4j.Slf4j;
+import org.eclipse.xpanse.tofu.maker.async.TaskDrainController;
+import org.eclipse.xpanse.tofu.maker.models.response.TaskDrainStatus;
 import org.eclipse.xpanse.tofu.maker.models.response.TofuMakerSystemStatus;
 import org.eclipse.xpanse.tofu.maker.opentofu.service.OpenTofuRequestService;
 import org.springframework.context.annotation.Profile;
@@ -18,6 +20,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
@@ -33,6 +36,7 @@ import org.springframework.web.context.request.ServletRequestAttributes;
 public class TofuMakerAdminApi {
 
     @Resource private OpenTofuRequestService requestService;
+    @Resource private TaskDrainController taskDrainController;
 
     /**
      * Method to find out the current state of the system.
@@ -52,4 +56,34 @@ public class TofuMakerAdminApi {
         healthStatus.setServiceUrl(request.getRequestURL().toString());
         return healthStatus;
     }
+
+    /**
+     * Stop accepting new tasks, e.g. before a rolling upgrade of the node.
+     *
+     * @return drain status of the node.
+     */
+    @Tag(name = "Admin", description = "Admin services for managing the application.")
+    @Operation(
+            description =
+                    "Stop accepting new tasks. Accepted tasks still run, and are waited for when"
+                            + " the node is shut down.")
+    @PostMapping(value = "/drain", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public TaskDrainStatus startDraining() {
+        taskDrainController.startDraining();
+        return taskDrainController.getDrainStatus();
+    }
+
+    /**
+     * Get the drain status of the node.
+     *
+     * @return drain status of the node.
+     */
+    @Tag(name = "Admin", description = "Admin services for managing the application.")
+    @Operation(description = "Get the drain status and the number of tasks in progress.")
+    @GetMapping(value = "/drain", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public TaskDrainStatus getDrainStatus() {
+        return taskDrainController.getDrainStatus();
+    }
 }
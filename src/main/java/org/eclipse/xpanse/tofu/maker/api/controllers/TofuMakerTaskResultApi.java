@@ -7,17 +7,27 @@ package org.eclipse.xpanse.tofu.maker.api.controllers;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.annotation.Resource;
-import java.util.ArrayList;
+import java.io.File;
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
 import lombok.extern.slf4j.Slf4j;
+import org.eclipse.xpanse.tofu.maker.async.TaskStatusRegistry;
 import org.eclipse.xpanse.tofu.maker.models.response.ReFetchResult;
+import org.eclipse.xpanse.tofu.maker.models.response.TaskStatus;
+import org.eclipse.xpanse.tofu.maker.opentofu.service.OpenTofuResultBatchManage;
 import org.eclipse.xpanse.tofu.maker.opentofu.service.OpenTofuResultPersistenceManage;
 import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.util.CollectionUtils;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -27,6 +37,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /** REST controller for manage the task form tofu-maker. */
 @Slf4j
@@ -37,6 +48,8 @@ import org.springframework.web.bind.annotation.RestController;
 public class TofuMakerTaskResultApi {
 
     @Resource private OpenTofuResultPersistenceManage resultPersistenceManage;
+    @Resource private OpenTofuResultBatchManage resultBatchManage;
+    @Resource private TaskStatusRegistry taskStatusRegistry;
 
     /**
      * Fetch the stored opentofu result.
@@ -60,6 +73,33 @@ public class TofuMakerTaskResultApi {
         return resultPersistenceManage.retrieveOpenTofuResultByRequestId(requestId);
     }
 
+    /**
+     * Fetch the full opentofu result of a task whose callback was sent as notification.
+     *
+     * @param requestId id of the request
+     * @return opentofu result as JSON, or the requested byte ranges of it
+     */
+    @Tag(
+            name = "RetrieveOpenTofuResult",
+            description = "APIs to manually fetching task results from tofu-maker.")
+    @Operation(
+            description =
+                    "Method to fetch the full opentofu result of a task whose callback was sent"
+                            + " as notification. Supports HTTP range requests.")
+    @GetMapping(value = "/result/{requestId}/content", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<FileSystemResource> getTaskResultContent(
+            @Parameter(name = "requestId", description = "id of the request")
+                    @PathVariable("requestId")
+                    UUID requestId) {
+        File contentFile = resultPersistenceManage.getOpenTofuResultContentFile(requestId);
+        if (Objects.isNull(contentFile)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(new FileSystemResource(contentFile));
+    }
+
     /**
      * Batch retrieve stored opentofu results.
      *
@@ -69,21 +109,104 @@ public class TofuMakerTaskResultApi {
     @Tag(
             name = "RetrieveOpenTofuResult",
             description = "APIs to manually fetching task results from tofu-maker.")
-    @Operation(description = "Method to batch retrieve stored opentofu result from tofu-maker.")
-    @PostMapping(value = "/results/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
-    public List<ReFetchResult> getBatchTaskResults(
+    @Operation(
+            description =
+                    "Method to batch retrieve stored opentofu result from tofu-maker. The results"
+                            + " are returned in the order they are read, and removed once the"
+                            + " response was written.")
+    @ApiResponse(
+            responseCode = "200",
+            content =
+                    @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            array =
+                                    @ArraySchema(
+                                            schema =
+                                                    @Schema(
+                                                            implementation =
+                                                                    ReFetchResult.class))))
+    @PostMapping(
+            value = "/results/batch",
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getBatchTaskResults(
+            @Parameter(description = "List of request IDs", required = true) @RequestBody
+                    List<UUID> requestIds) {
+        return streamBatchTaskResults(requestIds, MediaType.APPLICATION_JSON, false);
+    }
+
+    /**
+     * Batch retrieve stored opentofu results as newline delimited JSON.
+     *
+     * @param requestIds list of requestIds
+     * @return one reFetchResult per line
+     */
+    @Tag(
+            name = "RetrieveOpenTofuResult",
+            description = "APIs to manually fetching task results from tofu-maker.")
+    @Operation(
+            description =
+                    "Method to batch retrieve stored opentofu result from tofu-maker as newline"
+                            + " delimited JSON. Each result is sent as soon as it is read, and"
+                            + " removed once the response was written.")
+    @ApiResponse(
+            responseCode = "200",
+            content =
+                    @Content(
+                            mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                            schema = @Schema(implementation = ReFetchResult.class)))
+    @PostMapping(
+            value = "/results/batch",
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getBatchTaskResultsAsNdjson(
+            @Parameter(description = "List of request IDs", required = true) @RequestBody
+                    List<UUID> requestIds) {
+        return streamBatchTaskResults(requestIds, MediaType.APPLICATION_NDJSON, true);
+    }
+
+    private ResponseEntity<StreamingResponseBody> streamBatchTaskResults(
+            List<UUID> requestIds, MediaType mediaType, boolean isNdjson) {
+        if (CollectionUtils.isEmpty(requestIds)) {
+            throw new IllegalArgumentException("requestIds cannot be empty.");
+        }
+        return ResponseEntity.ok()
+                .contentType(mediaType)
+                .body(output -> resultBatchManage.writeResults(requestIds, output, isNdjson));
+    }
+
+    /**
+     * Get the status of the task.
+     *
+     * @param requestId id of the request
+     * @return status of the task
+     */
+    @Tag(name = "TaskStatus", description = "APIs to query the status of tasks in tofu-maker.")
+    @Operation(description = "Method to get the current phase of a task running on this node.")
+    @GetMapping(value = "/{requestId}/status", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public TaskStatus getTaskStatus(
+            @Parameter(name = "requestId", description = "id of the request")
+                    @PathVariable("requestId")
+                    UUID requestId) {
+        return taskStatusRegistry.getStatus(requestId);
+    }
+
+    /**
+     * Batch get the statuses of tasks.
+     *
+     * @param requestIds list of requestIds
+     * @return list of task statuses
+     */
+    @Tag(name = "TaskStatus", description = "APIs to query the status of tasks in tofu-maker.")
+    @Operation(description = "Method to batch get the current phase of tasks on this node.")
+    @PostMapping(value = "/status/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<TaskStatus> getBatchTaskStatuses(
             @Parameter(description = "List of request IDs", required = true) @RequestBody
                     List<UUID> requestIds) {
         if (CollectionUtils.isEmpty(requestIds)) {
             throw new IllegalArgumentException("requestIds cannot be empty.");
         }
-        List<ReFetchResult> reFetchResults = new ArrayList<>();
-        requestIds.forEach(
-                requestId -> {
-                    ReFetchResult reFetchResult =
-                            resultPersistenceManage.retrieveOpenTofuResultByRequestId(requestId);
-                    reFetchResults.add(reFetchResult);
-                });
-        return reFetchResults;
+        return taskStatusRegistry.getStatuses(requestIds);
     }
 }
@@ -6,11 +6,13 @@
 package org.eclipse.xpanse.tofu.maker.api.queues.rabbitmq;
 
 import jakarta.annotation.Resource;
+import java.time.Duration;
 import java.util.Objects;
 import java.util.UUID;
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.xpanse.tofu.maker.api.queues.AmqpConsumer;
 import org.eclipse.xpanse.tofu.maker.api.queues.config.AmqpConstants;
+import org.eclipse.xpanse.tofu.maker.async.TaskAdmissionController;
 import org.eclipse.xpanse.tofu.maker.models.enums.HealthStatus;
 import org.eclipse.xpanse.tofu.maker.models.exceptions.UnsupportedEnumValueException;
 import org.eclipse.xpanse.tofu.maker.models.request.OpenTofuRequest;
@@ -19,6 +21,7 @@ import org.eclipse.xpanse.tofu.maker.models.request.git.OpenTofuRequestWithScrip
 import org.eclipse.xpanse.tofu.maker.models.request.scripts.OpenTofuRequestWithScripts;
 import org.eclipse.xpanse.tofu.maker.models.response.TofuMakerSystemStatus;
 import org.eclipse.xpanse.tofu.maker.opentofu.service.OpenTofuRequestService;
+import org.springframework.amqp.ImmediateRequeueAmqpException;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -34,10 +37,14 @@ import org.springframework.stereotype.Component;
 @ConditionalOnProperty(name = "spring.amqp.provider", havingValue = "rabbitmq")
 public class RabbitMqConsumer implements AmqpConsumer {
 
+    private static final String AMQP_REQUEST_SOURCE = "amqp";
+
     @Resource private RabbitMqProducer producer;
 
     @Lazy @Resource private OpenTofuRequestService requestService;
 
+    @Resource private TaskAdmissionController admissionController;
+
     @Value("${springwolf.docket.servers.amqp-server.protocol}")
     private String serverProtocol;
 
@@ -93,11 +100,33 @@ public class RabbitMqConsumer implements AmqpConsumer {
     }
 
     private void handleOpenTofuRequestAndSendResult(OpenTofuRequest request) {
+        if (!admissionController.tryAdmit(request.getRequestId(), AMQP_REQUEST_SOURCE)) {
+            pauseAndRequeue(request);
+        }
+        admissionController.started(request.getRequestId());
         try {
             processRequestByType(request);
         } catch (Exception e) {
             sendErrorResultToQueue(Objects.requireNonNull(request), e);
+        } finally {
+            admissionController.completed(request.getRequestId());
+        }
+    }
+
+    /**
+     * Pause the consumer before the message is requeued, so that it is not redelivered
+     * immediately while tofu-maker still has no capacity.
+     */
+    private void pauseAndRequeue(OpenTofuRequest request) {
+        try {
+            Thread.sleep(Duration.ofSeconds(admissionController.getRetryAfterSeconds()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+        throw new ImmediateRequeueAmqpException(
+                String.format(
+                        "Requeue request %s as tofu-maker has no capacity left.",
+                        request.getRequestId()));
     }
 
     private void processRequestByType(OpenTofuRequest request) {
@@ -0,0 +1,424 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.async;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.xpanse.tofu.maker.models.request.directory.OpenTofuAsyncRequestWithScriptsDirectory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Append-only journal of the async tasks on local disk. Every async task is recorded when it is
+ * accepted, started and completed, so that unfinished tasks can be recovered after a restart.
+ *
+ * <p>Records are written by a single writer thread. All records waiting when the writer wakes up
+ * are written with one write and one fsync (group commit), so the accept latency stays close to
+ * the latency of a single fsync even when many requests arrive at the same time. The journal is
+ * compacted to the unfinished tasks on startup and whenever it grows above the threshold.
+ *
+ * <p>The accepted records contain the full requests including their credentials, so the journal
+ * directory and file are only accessible by the owner on file systems with POSIX permissions.
+ */
+@Slf4j
+@Component
+public class OpenTofuTaskJournal {
+
+    private static final String JOURNAL_DIRECTORY_NAME = "tofu-maker-task-journal";
+    private static final String JOURNAL_FILE_NAME = "tasks.journal";
+    private static final String TYPE_FIELD = "type";
+    private static final String REQUEST_ID_FIELD = "requestId";
+    private static final String REQUEST_FIELD = "request";
+    private static final String TIMESTAMP_FIELD = "timestamp";
+    private static final int MAX_BATCH_SIZE = 1024;
+    private static final boolean IS_POSIX =
+            FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    private static final Set<PosixFilePermission> DIRECTORY_PERMISSIONS =
+            PosixFilePermissions.fromString("rwx------");
+    private static final Set<PosixFilePermission> FILE_PERMISSIONS =
+            PosixFilePermissions.fromString("rw-------");
+    // stops the writer after the records queued before it are written.
+    private static final PendingRecord CLOSE_RECORD =
+            new PendingRecord(null, null, new CompletableFuture<>());
+
+    private final BlockingQueue<PendingRecord> pendingRecords = new LinkedBlockingQueue<>();
+    private final Map<UUID, JournalEntry> unfinishedEntries = new LinkedHashMap<>();
+    private final List<RecoveredTask> recoveredTasks = new ArrayList<>();
+    private FileChannel journalChannel;
+    private Path journalFile;
+    private volatile Thread writer;
+
+    @Resource private ObjectMapper objectMapper;
+
+    @Value("${tofu.maker.task.journal.enabled:true}")
+    private boolean isJournalEnabled;
+
+    @Value("${tofu.maker.task.journal.directory:}")
+    private String journalDirectory;
+
+    @Value("${tofu.maker.task.journal.compact.threshold.bytes:67108864}")
+    private long compactThresholdBytes;
+
+    @Value("${tofu.maker.task.journal.write.timeout.millis:1000}")
+    private long writeTimeoutMillis;
+
+    /** Read the unfinished tasks from the journal and start the writer thread. */
+    @PostConstruct
+    public void open() {
+        if (!isJournalEnabled) {
+            return;
+        }
+        try {
+            Path directory =
+                    StringUtils.isNotBlank(journalDirectory)
+                            ? Paths.get(journalDirectory)
+                            : Paths.get(
+                                    System.getProperty("java.io.tmpdir"), JOURNAL_DIRECTORY_NAME);
+            createJournalDirectory(directory);
+            journalFile = directory.resolve(JOURNAL_FILE_NAME);
+            replay();
+            compact();
+        } catch (IOException e) {
+            log.error("Open task journal failed. Async tasks will not be recoverable.", e);
+            return;
+        }
+        writer = Thread.ofPlatform().name("tofu-task-journal").daemon().start(this::write);
+        log.info(
+                "Task journal {} opened with {} unfinished tasks.",
+                journalFile,
+                recoveredTasks.size());
+    }
+
+    /**
+     * Stop the writer thread after all pending records are written. The writer is stopped with a
+     * close record on the queue, as an interrupt would close the channel it is writing to.
+     */
+    @PreDestroy
+    public void close() {
+        Thread journalWriter = writer;
+        if (Objects.isNull(journalWriter)) {
+            return;
+        }
+        writer = null;
+        pendingRecords.add(CLOSE_RECORD);
+        try {
+            journalWriter.join(TimeUnit.SECONDS.toMillis(5));
+            journalChannel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.error("Close task journal failed.", e);
+        }
+    }
+
+    /**
+     * Check whether the tasks are recorded in the journal.
+     *
+     * @return true when the journal is enabled and open.
+     */
+    public boolean isEnabled() {
+        return Objects.nonNull(writer);
+    }
+
+    /**
+     * Record that the task was accepted. Returns when the record is durable on disk.
+     *
+     * @param request request of the task.
+     */
+    public void accepted(OpenTofuAsyncRequestWithScriptsDirectory request) {
+        if (Objects.isNull(writer)) {
+            return;
+        }
+        ObjectNode record = newRecord(TaskJournalRecordType.ACCEPTED, request.getRequestId());
+        record.set(REQUEST_FIELD, objectMapper.valueToTree(request));
+        CompletableFuture<Void> written = append(record);
+        try {
+            written.get(writeTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.error(
+                    "Task {} is not recoverable as the journal write failed.",
+                    request.getRequestId(),
+                    e);
+        }
+    }
+
+    /**
+     * Record that the task was started.
+     *
+     * @param requestId id of the request.
+     */
+    public void started(UUID requestId) {
+        if (Objects.nonNull(writer)) {
+            append(newRecord(TaskJournalRecordType.STARTED, requestId));
+        }
+    }
+
+    /**
+     * Record that the task was completed and its result was delivered.
+     *
+     * @param requestId id of the request.
+     */
+    public void completed(UUID requestId) {
+        if (Objects.nonNull(writer)) {
+            append(newRecord(TaskJournalRecordType.COMPLETED, requestId));
+        }
+    }
+
+    /**
+     * Get the tasks that were not completed before the last shutdown. The list is returned only
+     * once, later calls return an empty list.
+     *
+     * @return unfinished tasks read on startup.
+     */
+    public synchronized List<RecoveredTask> takeRecoveredTasks() {
+        List<RecoveredTask> tasks = new ArrayList<>(recoveredTasks);
+        recoveredTasks.clear();
+        return tasks;
+    }
+
+    private ObjectNode newRecord(TaskJournalRecordType type, UUID requestId) {
+        ObjectNode record = objectMapper.createObjectNode();
+        record.put(TYPE_FIELD, type.name());
+        record.put(REQUEST_ID_FIELD, requestId.toString());
+        record.put(TIMESTAMP_FIELD, System.currentTimeMillis());
+        return record;
+    }
+
+    private CompletableFuture<Void> append(ObjectNode record) {
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        try {
+            pendingRecords.add(
+                    new PendingRecord(record, objectMapper.writeValueAsString(record), written));
+        } catch (IOException e) {
+            written.completeExceptionally(e);
+        }
+        return written;
+    }
+
+    private void write() {
+        List<PendingRecord> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(pendingRecords.take());
+            } catch (InterruptedException e) {
+                // the writer is only stopped by the close record.
+                continue;
+            }
+            pendingRecords.drainTo(batch, MAX_BATCH_SIZE);
+            int closeIndex = batch.indexOf(CLOSE_RECORD);
+            List<PendingRecord> records = closeIndex < 0 ? batch : batch.subList(0, closeIndex);
+            if (!records.isEmpty()) {
+                writeRecords(records);
+            }
+            if (closeIndex >= 0) {
+                // records added after the close record are not written any more.
+                List<PendingRecord> rejectedRecords =
+                        new ArrayList<>(batch.subList(closeIndex, batch.size()));
+                pendingRecords.drainTo(rejectedRecords);
+                IOException e = new IOException("Task journal is closed.");
+                rejectedRecords.forEach(
+                        pendingRecord -> pendingRecord.written().completeExceptionally(e));
+                return;
+            }
+            batch.clear();
+        }
+    }
+
+    private void writeRecords(List<PendingRecord> records) {
+        try {
+            writeBatch(records);
+            records.forEach(pendingRecord -> pendingRecord.written().complete(null));
+            if (journalChannel.size() > compactThresholdBytes) {
+                compact();
+            }
+        } catch (IOException e) {
+            log.error("Write {} records to task journal failed.", records.size(), e);
+            records.forEach(pendingRecord -> pendingRecord.written().completeExceptionally(e));
+        }
+    }
+
+    private void writeBatch(List<PendingRecord> batch) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (PendingRecord pendingRecord : batch) {
+            lines.append(pendingRecord.line()).append('\n');
+            applyRecord(pendingRecord.record(), pendingRecord.line());
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            journalChannel.write(buffer);
+        }
+        journalChannel.force(false);
+    }
+
+    /** Track the unfinished tasks in memory, so that compaction doesn't need to read the file. */
+    private void applyRecord(JsonNode record, String line) {
+        UUID requestId = UUID.fromString(record.path(REQUEST_ID_FIELD).asText());
+        switch (TaskJournalRecordType.valueOf(record.path(TYPE_FIELD).asText())) {
+            case ACCEPTED -> unfinishedEntries.put(requestId, new JournalEntry(line, null));
+            case STARTED ->
+                    unfinishedEntries.computeIfPresent(
+                            requestId, (id, entry) -> new JournalEntry(entry.acceptedLine(), line));
+            case COMPLETED -> unfinishedEntries.remove(requestId);
+        }
+    }
+
+    /**
+     * Create the journal directory accessible only by the owner. The permissions of an existing
+     * directory are restricted as well, which fails if it belongs to another user.
+     */
+    private void createJournalDirectory(Path directory) throws IOException {
+        if (!IS_POSIX) {
+            Files.createDirectories(directory);
+            return;
+        }
+        Files.createDirectories(
+                directory, PosixFilePermissions.asFileAttribute(DIRECTORY_PERMISSIONS));
+        Files.setPosixFilePermissions(directory, DIRECTORY_PERMISSIONS);
+    }
+
+    private void replay() throws IOException {
+        if (!Files.exists(journalFile)) {
+            return;
+        }
+        int lineNumber = 0;
+        try (BufferedReader reader = Files.newBufferedReader(journalFile)) {
+            String line;
+            while (Objects.nonNull(line = reader.readLine())) {
+                lineNumber++;
+                try {
+                    applyRecord(objectMapper.readTree(line), line);
+                } catch (IOException | IllegalArgumentException e) {
+                    // the last record may be incomplete if the node crashed while writing it.
+                    log.warn("Skipped invalid record at line {} of task journal.", lineNumber);
+                }
+            }
+        }
+        for (JournalEntry entry : unfinishedEntries.values()) {
+            try {
+                JsonNode request = objectMapper.readTree(entry.acceptedLine()).get(REQUEST_FIELD);
+                recoveredTasks.add(
+                        new RecoveredTask(
+                                objectMapper.treeToValue(
+                                        request, OpenTofuAsyncRequestWithScriptsDirectory.class),
+                                Objects.nonNull(entry.startedLine())));
+            } catch (IOException e) {
+                log.error("Read request of unfinished task from journal failed.", e);
+            }
+        }
+    }
+
+    /** Rewrite the journal with only the records of the unfinished tasks. */
+    private void compact() throws IOException {
+        Path compactedFile = journalFile.resolveSibling(JOURNAL_FILE_NAME + ".compact");
+        StringBuilder lines = new StringBuilder();
+        for (JournalEntry entry : unfinishedEntries.values()) {
+            lines.append(entry.acceptedLine()).append('\n');
+            if (Objects.nonNull(entry.startedLine())) {
+                lines.append(entry.startedLine()).append('\n');
+            }
+        }
+        try (FileChannel channel =
+                openFile(
+                        compactedFile,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8)));
+            channel.force(true);
+        }
+        try {
+            if (Objects.nonNull(journalChannel)) {
+                journalChannel.close();
+            }
+            Files.move(compactedFile, journalFile, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            // keep appending to the old journal if it could not be replaced.
+            journalChannel =
+                    openFile(
+                            journalFile,
+                            StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE,
+                            StandardOpenOption.APPEND);
+        }
+        log.debug("Compacted task journal to {} unfinished tasks.", unfinishedEntries.size());
+    }
+
+    /**
+     * Open a file of the journal. Files are created accessible only by the owner, and the
+     * permissions of an existing file are restricted as well.
+     */
+    private FileChannel openFile(Path file, OpenOption... options) throws IOException {
+        if (!IS_POSIX) {
+            return FileChannel.open(file, options);
+        }
+        FileAttribute<Set<PosixFilePermission>> permissions =
+                PosixFilePermissions.asFileAttribute(FILE_PERMISSIONS);
+        FileChannel channel = FileChannel.open(file, Set.of(options), permissions);
+        try {
+            Files.setPosixFilePermissions(file, FILE_PERMISSIONS);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    /** Types of the records in the journal. */
+    private enum TaskJournalRecordType {
+        ACCEPTED,
+        STARTED,
+        COMPLETED
+    }
+
+    private record PendingRecord(ObjectNode record, String line, CompletableFuture<Void> written) {}
+
+    private record JournalEntry(String acceptedLine, String startedLine) {}
+
+    /**
+     * Task which was not completed before the last shutdown.
+     *
+     * @param request request of the task.
+     * @param isStarted whether the task was already started.
+     */
+    public record RecoveredTask(
+            OpenTofuAsyncRequestWithScriptsDirectory request, boolean isStarted) {}
+}
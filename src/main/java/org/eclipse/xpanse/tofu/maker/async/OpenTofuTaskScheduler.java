@@ -0,0 +1,409 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.async;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.xpanse.tofu.maker.models.request.OpenTofuRequest;
+import org.eclipse.xpanse.tofu.maker.models.request.directory.OpenTofuAsyncRequestWithScriptsDirectory;
+import org.eclipse.xpanse.tofu.maker.models.request.directory.OpenTofuRequestWithScriptsDirectory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduler in front of the task executor. Tasks are dispatched by priority class first. Within a
+ * priority class, tenants share the execution capacity by weighted fair queuing, so that a flood
+ * of requests from one tenant doesn't delay the tasks of all others. Tasks which waited longer
+ * than the aging limit are dispatched first regardless of their priority class to avoid
+ * starvation. Tasks whose keys of the {@link TaskKeyLimiter} are saturated are skipped and stay
+ * queued, so that they don't hold a dispatch permit while other tasks could run. Unless a fixed
+ * maximum is configured, the number of dispatched tasks follows the current slot limit of the
+ * {@link TaskSlotLimiter}, so that tasks aren't handed to the executor only to wait for a slot.
+ */
+@Slf4j
+@Component
+public class OpenTofuTaskScheduler {
+
+    private static final String DEFAULT_TENANT = "default";
+
+    private final Map<TaskPriority, PriorityQueue<ScheduledTask>> queues =
+            new EnumMap<>(TaskPriority.class);
+    private final Map<TaskPriority, Map<String, Double>> lastFinishTags =
+            new EnumMap<>(TaskPriority.class);
+    private final Map<TaskPriority, Map<String, Integer>> queuedTasksPerTenant =
+            new EnumMap<>(TaskPriority.class);
+    private final Map<TaskPriority, Double> virtualTimes = new EnumMap<>(TaskPriority.class);
+    private final Map<String, Double> tenantWeights = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition taskAvailable = lock.newCondition();
+    private long sequence;
+    private int runningTasks;
+    private Thread dispatcher;
+
+    @Resource(name = TaskConfiguration.TASK_EXECUTOR_NAME)
+    private Executor taskExecutor;
+
+    @Resource private TaskSlotLimiter taskSlotLimiter;
+    @Resource private TaskKeyLimiter taskKeyLimiter;
+    @Resource private MeterRegistry meterRegistry;
+
+    @Value("${tofu.maker.task.scheduler.max.running:0}")
+    private int maxRunningTasks;
+
+    @Value("${tofu.maker.task.scheduler.tenant.weights:}")
+    private String tenantWeightsConfig;
+
+    @Value("${tofu.maker.task.scheduler.aging.seconds:300}")
+    private long agingSeconds;
+
+    /** Start the dispatcher thread. */
+    @PostConstruct
+    public void start() {
+        for (TaskPriority priority : TaskPriority.values()) {
+            queues.put(
+                    priority,
+                    new PriorityQueue<>(
+                            Comparator.comparingDouble(ScheduledTask::finishTag)
+                                    .thenComparingLong(ScheduledTask::sequence)));
+            lastFinishTags.put(priority, new HashMap<>());
+            queuedTasksPerTenant.put(priority, new HashMap<>());
+            virtualTimes.put(priority, 0.0);
+            Gauge.builder(
+                            "tofu.maker.task.scheduler.queued",
+                            this,
+                            scheduler -> scheduler.getQueuedTasks(priority))
+                    .description("Number of tasks waiting in the scheduler.")
+                    .tag("priority", priority.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry);
+        }
+        parseTenantWeights();
+        dispatcher =
+                Thread.ofPlatform().name("tofu-task-dispatcher").daemon().start(this::dispatch);
+        log.info("Task scheduler started with {} concurrently running tasks.", getRunningLimit());
+    }
+
+    /** Stop the dispatcher thread. */
+    @PreDestroy
+    public void stop() {
+        if (Objects.nonNull(dispatcher)) {
+            dispatcher.interrupt();
+        }
+    }
+
+    /**
+     * Schedule the task of the request. The MDC context of the caller is propagated to the task.
+     *
+     * @param request request of the task.
+     * @param task task to run.
+     */
+    public void schedule(OpenTofuRequest request, Runnable task) {
+        TaskPriority priority = TaskPriority.of(request);
+        String tenant = getTenantKey(request);
+        Runnable taskWithMdc = ThreadMdcUtil.wrap(task, MDC.getCopyOfContextMap());
+        TaskKeyLimiter.Keys keys = getKeys(request);
+        lock.lock();
+        try {
+            Map<String, Double> finishTags = lastFinishTags.get(priority);
+            double startTag =
+                    Math.max(virtualTimes.get(priority), finishTags.getOrDefault(tenant, 0.0));
+            double finishTag = startTag + 1.0 / tenantWeights.getOrDefault(tenant, 1.0);
+            finishTags.put(tenant, finishTag);
+            queuedTasksPerTenant.get(priority).merge(tenant, 1, Integer::sum);
+            queues.get(priority)
+                    .add(
+                            new ScheduledTask(
+                                    request,
+                                    taskWithMdc,
+                                    keys,
+                                    priority,
+                                    tenant,
+                                    finishTag,
+                                    sequence++,
+                                    System.nanoTime()));
+            taskAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+        log.debug(
+                "Scheduled request {} as {} for tenant {}.",
+                request.getRequestId(),
+                priority,
+                tenant);
+    }
+
+    /**
+     * Get the number of tasks waiting in the scheduler for the priority class.
+     *
+     * @param priority priority class.
+     * @return number of waiting tasks.
+     */
+    public int getQueuedTasks(TaskPriority priority) {
+        lock.lock();
+        try {
+            return queues.get(priority).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove all tasks waiting in the scheduler.
+     *
+     * @return requests of the removed tasks.
+     */
+    public List<OpenTofuRequest> removeQueuedTasks() {
+        List<OpenTofuRequest> requests = new ArrayList<>();
+        lock.lock();
+        try {
+            for (PriorityQueue<ScheduledTask> queue : queues.values()) {
+                queue.forEach(scheduledTask -> requests.add(scheduledTask.request()));
+                queue.clear();
+            }
+            lastFinishTags.values().forEach(Map::clear);
+            queuedTasksPerTenant.values().forEach(Map::clear);
+        } finally {
+            lock.unlock();
+        }
+        return requests;
+    }
+
+    private void dispatch() {
+        while (!Thread.currentThread().isInterrupted()) {
+            DispatchedTask dispatchedTask = null;
+            try {
+                dispatchedTask = takeNextTask();
+                DispatchedTask task = dispatchedTask;
+                taskExecutor.execute(() -> runAndRelease(task));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                if (e instanceof TaskRejectedException) {
+                    log.warn("Task executor rejected task, retrying. {}", e.getMessage());
+                } else {
+                    log.error("Dispatching task failed, retrying.", e);
+                }
+                if (Objects.nonNull(dispatchedTask)) {
+                    release(dispatchedTask);
+                    requeue(dispatchedTask.scheduledTask());
+                }
+                pauseDispatching();
+            }
+        }
+        log.info("Task dispatcher stopped.");
+    }
+
+    private void pauseDispatching() {
+        try {
+            TimeUnit.SECONDS.sleep(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runAndRelease(DispatchedTask dispatchedTask) {
+        try {
+            taskKeyLimiter.runWithPermits(dispatchedTask.scheduledTask().task());
+        } finally {
+            release(dispatchedTask);
+        }
+    }
+
+    private void release(DispatchedTask dispatchedTask) {
+        dispatchedTask.permits().close();
+        lock.lock();
+        try {
+            runningTasks--;
+            taskAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private DispatchedTask takeNextTask() throws InterruptedException {
+        lock.lock();
+        try {
+            DispatchedTask next = pollNextTaskWithinLimit();
+            while (Objects.isNull(next)) {
+                // keys released by synchronous requests and changes of the slot limit don't
+                // signal the scheduler.
+                taskAvailable.await(1, TimeUnit.SECONDS);
+                next = pollNextTaskWithinLimit();
+            }
+            runningTasks++;
+            virtualTimes.put(next.scheduledTask().priority(), next.scheduledTask().finishTag());
+            return next;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int getRunningLimit() {
+        return maxRunningTasks > 0 ? maxRunningTasks : taskSlotLimiter.getSlotLimit();
+    }
+
+    private DispatchedTask pollNextTaskWithinLimit() {
+        return runningTasks < getRunningLimit() ? pollNextTask() : null;
+    }
+
+    /**
+     * Poll the next task whose keys have a permit available. Must be called while holding the
+     * lock.
+     */
+    private DispatchedTask pollNextTask() {
+        long agingLimit = System.nanoTime() - TimeUnit.SECONDS.toNanos(agingSeconds);
+        List<ScheduledTask> agedTasks = new ArrayList<>();
+        for (PriorityQueue<ScheduledTask> queue : queues.values()) {
+            ScheduledTask head = queue.peek();
+            if (Objects.nonNull(head) && head.scheduledAt() < agingLimit) {
+                agedTasks.add(head);
+            }
+        }
+        agedTasks.sort(Comparator.comparingLong(ScheduledTask::scheduledAt));
+        for (ScheduledTask agedTask : agedTasks) {
+            TaskKeyLimiter.Permits permits = taskKeyLimiter.tryAcquire(agedTask.keys());
+            if (Objects.nonNull(permits)) {
+                queues.get(agedTask.priority()).remove(agedTask);
+                removeQueuedTask(agedTask);
+                return new DispatchedTask(agedTask, permits);
+            }
+        }
+        for (PriorityQueue<ScheduledTask> queue : queues.values()) {
+            DispatchedTask next = pollNextTask(queue);
+            if (Objects.nonNull(next)) {
+                return next;
+            }
+        }
+        return null;
+    }
+
+    private DispatchedTask pollNextTask(PriorityQueue<ScheduledTask> queue) {
+        List<ScheduledTask> skippedTasks = new ArrayList<>();
+        try {
+            while (!queue.isEmpty()) {
+                ScheduledTask scheduledTask = queue.poll();
+                TaskKeyLimiter.Permits permits = taskKeyLimiter.tryAcquire(scheduledTask.keys());
+                if (Objects.nonNull(permits)) {
+                    removeQueuedTask(scheduledTask);
+                    return new DispatchedTask(scheduledTask, permits);
+                }
+                skippedTasks.add(scheduledTask);
+            }
+            return null;
+        } finally {
+            queue.addAll(skippedTasks);
+        }
+    }
+
+    /**
+     * Forget the finish tag of a tenant once it has nothing queued anymore, so that the tags of
+     * tenants seen only once don't pile up. The next task of the tenant starts at the virtual time
+     * again. Must be called while holding the lock.
+     */
+    private void removeQueuedTask(ScheduledTask scheduledTask) {
+        Integer queuedTasks =
+                queuedTasksPerTenant
+                        .get(scheduledTask.priority())
+                        .computeIfPresent(
+                                scheduledTask.tenant(),
+                                (tenant, count) -> count > 1 ? count - 1 : null);
+        if (Objects.isNull(queuedTasks)) {
+            lastFinishTags.get(scheduledTask.priority()).remove(scheduledTask.tenant());
+        }
+    }
+
+    private void requeue(ScheduledTask scheduledTask) {
+        lock.lock();
+        try {
+            queues.get(scheduledTask.priority()).add(scheduledTask);
+            queuedTasksPerTenant
+                    .get(scheduledTask.priority())
+                    .merge(scheduledTask.tenant(), 1, Integer::sum);
+            lastFinishTags
+                    .get(scheduledTask.priority())
+                    .merge(scheduledTask.tenant(), scheduledTask.finishTag(), Math::max);
+            taskAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private TaskKeyLimiter.Keys getKeys(OpenTofuRequest request) {
+        if (request instanceof OpenTofuRequestWithScriptsDirectory requestWithDirectory) {
+            return taskKeyLimiter.getKeys(requestWithDirectory);
+        }
+        return TaskKeyLimiter.Keys.NONE;
+    }
+
+    /**
+     * The tenant of a request is the host of its webhook URL, which identifies the calling
+     * application. Requests without a webhook share the default tenant.
+     */
+    private String getTenantKey(OpenTofuRequest request) {
+        if (request instanceof OpenTofuAsyncRequestWithScriptsDirectory asyncRequest
+                && Objects.nonNull(asyncRequest.getWebhookConfig())) {
+            try {
+                String host = URI.create(asyncRequest.getWebhookConfig().getUrl()).getHost();
+                if (StringUtils.isNotBlank(host)) {
+                    return host;
+                }
+            } catch (IllegalArgumentException e) {
+                log.debug("Invalid webhook url of request {}.", request.getRequestId());
+            }
+        }
+        return DEFAULT_TENANT;
+    }
+
+    private void parseTenantWeights() {
+        for (String entry : StringUtils.split(StringUtils.trimToEmpty(tenantWeightsConfig), ',')) {
+            String[] parts = StringUtils.split(entry, ':');
+            if (parts.length != 2) {
+                log.warn("Ignored invalid tenant weight '{}'.", entry);
+                continue;
+            }
+            try {
+                double weight = Double.parseDouble(parts[1].trim());
+                if (weight > 0) {
+                    tenantWeights.put(parts[0].trim(), weight);
+                }
+            } catch (NumberFormatException e) {
+                log.warn("Ignored invalid tenant weight '{}'.", entry);
+            }
+        }
+    }
+
+    private record ScheduledTask(
+            OpenTofuRequest request,
+            Runnable task,
+            TaskKeyLimiter.Keys keys,
+            TaskPriority priority,
+            String tenant,
+            double finishTag,
+            long sequence,
+            long scheduledAt) {}
+
+    private record DispatchedTask(ScheduledTask scheduledTask, TaskKeyLimiter.Permits permits) {}
+}
@@ -0,0 +1,185 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.async;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.xpanse.tofu.maker.models.exceptions.TaskAdmissionRejectedException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Admission control for OpenTofu tasks. A task is admitted only when the number of admitted and
+ * not yet completed tasks is below the configured capacity. Callers which are not admitted must
+ * back off instead of running the task on their own thread.
+ */
+@Slf4j
+@Component
+public class TaskAdmissionController {
+
+    private final int maxAdmittedTasks;
+    private final long retryAfterSeconds;
+    private final AtomicInteger admittedTasks = new AtomicInteger();
+    private final AtomicInteger runningTasks = new AtomicInteger();
+    private final Map<UUID, Long> pendingTasks = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final Timer waitTimer;
+    private volatile boolean isDraining;
+
+    /**
+     * Constructor for the TaskAdmissionController bean.
+     *
+     * @param maxAdmittedTasks value of `tofu.maker.task.max.admitted` property.
+     * @param retryAfterSeconds value of `tofu.maker.task.retry.after.seconds` property.
+     * @param meterRegistry registry for the admission metrics.
+     */
+    @Autowired
+    public TaskAdmissionController(
+            @Value("${tofu.maker.task.max.admitted:200}") int maxAdmittedTasks,
+            @Value("${tofu.maker.task.retry.after.seconds:10}") long retryAfterSeconds,
+            MeterRegistry meterRegistry) {
+        this.maxAdmittedTasks = maxAdmittedTasks;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("tofu.maker.task.pending", pendingTasks, Map::size)
+                .description("Number of admitted tasks waiting to be started.")
+                .register(meterRegistry);
+        Gauge.builder("tofu.maker.task.running", runningTasks, AtomicInteger::get)
+                .description("Number of admitted tasks running.")
+                .register(meterRegistry);
+        this.waitTimer =
+                Timer.builder("tofu.maker.task.wait")
+                        .description("Time between admission and start of a task.")
+                        .register(meterRegistry);
+    }
+
+    /**
+     * Admit the task or throw an exception when there is no capacity left.
+     *
+     * @param requestId id of the request.
+     * @param source source of the request, used as metrics tag.
+     */
+    public void admit(UUID requestId, String source) {
+        if (!tryAdmit(requestId, source)) {
+            String reason =
+                    isDraining
+                            ? "the node is draining"
+                            : maxAdmittedTasks + " tasks are already in progress";
+            throw new TaskAdmissionRejectedException(
+                    String.format("Request %s rejected as %s.", requestId, reason),
+                    retryAfterSeconds);
+        }
+    }
+
+    /**
+     * Try to admit the task.
+     *
+     * @param requestId id of the request.
+     * @param source source of the request, used as metrics tag.
+     * @return true when the task is admitted.
+     */
+    public boolean tryAdmit(UUID requestId, String source) {
+        if (isDraining) {
+            getRejectedCounter(source).increment();
+            log.warn("Rejected request {} from {} as the node is draining.", requestId, source);
+            return false;
+        }
+        int admitted;
+        do {
+            admitted = admittedTasks.get();
+            if (admitted >= maxAdmittedTasks) {
+                getRejectedCounter(source).increment();
+                log.warn(
+                        "Rejected request {} from {} as capacity is exhausted.",
+                        requestId,
+                        source);
+                return false;
+            }
+        } while (!admittedTasks.compareAndSet(admitted, admitted + 1));
+        pendingTasks.put(requestId, System.nanoTime());
+        return true;
+    }
+
+    /**
+     * Mark the admitted task as started.
+     *
+     * @param requestId id of the request.
+     */
+    public void started(UUID requestId) {
+        Long admittedAt = pendingTasks.remove(requestId);
+        if (Objects.nonNull(admittedAt)) {
+            waitTimer.record(Duration.ofNanos(System.nanoTime() - admittedAt));
+        }
+        runningTasks.incrementAndGet();
+    }
+
+    /**
+     * Release the capacity of the admitted task after it was completed.
+     *
+     * @param requestId id of the request.
+     */
+    public void completed(UUID requestId) {
+        if (Objects.isNull(pendingTasks.remove(requestId))) {
+            runningTasks.decrementAndGet();
+        }
+        admittedTasks.decrementAndGet();
+    }
+
+    /** Stop admitting new tasks. Tasks already admitted are not affected. */
+    public void startDraining() {
+        isDraining = true;
+    }
+
+    /**
+     * Check whether the node stopped admitting new tasks.
+     *
+     * @return true when draining.
+     */
+    public boolean isDraining() {
+        return isDraining;
+    }
+
+    /**
+     * Get the number of admitted tasks which are not completed yet.
+     *
+     * @return admitted tasks.
+     */
+    public int getAdmittedTasks() {
+        return admittedTasks.get();
+    }
+
+    /**
+     * Get the number of admitted tasks which are running.
+     *
+     * @return running tasks.
+     */
+    public int getRunningTasks() {
+        return runningTasks.get();
+    }
+
+    /**
+     * Get the time in seconds callers should wait before retrying a rejected task.
+     *
+     * @return seconds to wait.
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    private Counter getRejectedCounter(String source) {
+        return meterRegistry.counter("tofu.maker.task.rejected", "source", source);
+    }
+}
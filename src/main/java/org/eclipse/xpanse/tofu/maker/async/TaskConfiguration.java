@@ -7,33 +7,50 @@ package org.eclipse.xpanse.tofu.maker.async;
 
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadPoolExecutor;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 
 /**
  * Customize the thread pool. Define ThreadPoolTaskExecutor named taskExecutor to replace @Async's
- * default thread pool.
+ * default thread pool. With the executor mode 'virtual', each task runs on its own virtual thread
+ * instead and the number of concurrent OpenTofu executions is bounded by {@link TaskSlotLimiter}.
  */
+@Slf4j
 @Configuration
 public class TaskConfiguration {
 
     public static final String TASK_EXECUTOR_NAME = "taskExecutor";
+    public static final String VIRTUAL_EXECUTOR_MODE = "virtual";
     private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
 
+    @Value("${tofu.maker.task.executor.mode:platform}")
+    private String executorMode;
+
     /**
-     * Define ThreadPoolTaskExecutor named taskExecutor.
+     * Define the executor named taskExecutor.
      *
      * @return executor
      */
     @Bean(TASK_EXECUTOR_NAME)
     public Executor taskExecutor() {
+        if (VIRTUAL_EXECUTOR_MODE.equalsIgnoreCase(executorMode)) {
+            log.info("Async tasks are executed on virtual threads.");
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("virtual-task-");
+            executor.setVirtualThreads(true);
+            executor.setTaskDecorator(task -> ThreadMdcUtil.wrap(task, MDC.getCopyOfContextMap()));
+            return executor;
+        }
         ServiceThreadPoolTaskExecutor executor = new ServiceThreadPoolTaskExecutor();
         executor.setCorePoolSize(CPU_COUNT * 2);
         executor.setMaxPoolSize(20);
         executor.setQueueCapacity(200);
         executor.setKeepAliveSeconds(300);
         executor.setThreadNamePrefix("thread-pool-");
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
         executor.initialize();
         return executor;
     }
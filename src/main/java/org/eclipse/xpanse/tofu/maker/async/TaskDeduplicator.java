@@ -0,0 +1,107 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.async;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.xpanse.tofu.maker.models.enums.RequestType;
+import org.eclipse.xpanse.tofu.maker.models.request.OpenTofuRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs each synchronous request at most once. A request submitted again while it is running waits
+ * for the running task and gets its result. A request submitted again shortly after it completed
+ * gets the cached result. Requests which failed with an exception are forgotten, so that they can
+ * be retried. Running tasks are tracked apart from the completed ones, so that the size limit
+ * only evicts results of completed tasks and never lets a duplicate of a running task run again.
+ */
+@Slf4j
+@Component
+public class TaskDeduplicator {
+
+    private final Map<TaskKey, CompletableFuture<Object>> runningTasks = new ConcurrentHashMap<>();
+    private final Cache<TaskKey, Object> completedTasks;
+
+    /**
+     * Constructor for the TaskDeduplicator bean.
+     *
+     * @param retentionSeconds value of `tofu.maker.task.dedup.retention.seconds` property.
+     * @param maxSize value of `tofu.maker.task.dedup.max.size` property.
+     */
+    @Autowired
+    public TaskDeduplicator(
+            @Value("${tofu.maker.task.dedup.retention.seconds:600}") long retentionSeconds,
+            @Value("${tofu.maker.task.dedup.max.size:1000}") long maxSize) {
+        this.completedTasks =
+                Caffeine.newBuilder()
+                        .maximumSize(maxSize)
+                        .expireAfterWrite(Duration.ofSeconds(retentionSeconds))
+                        .build();
+    }
+
+    /**
+     * Run the task of the request unless the same request is running or completed recently.
+     *
+     * @param request request of the task.
+     * @param task task to run.
+     * @param <T> result type of the task.
+     * @return result of the task, or of the earlier run of the same request.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T runOnce(OpenTofuRequest request, Supplier<T> task) {
+        TaskKey key = new TaskKey(request.getRequestId(), request.getRequestType());
+        Object completedResult = completedTasks.getIfPresent(key);
+        if (Objects.nonNull(completedResult)) {
+            log.info("Request {} is a duplicate, returning the result of the first run.", key);
+            return (T) completedResult;
+        }
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = runningTasks.putIfAbsent(key, future);
+        if (Objects.nonNull(existing)) {
+            log.info("Request {} is a duplicate, waiting for the result of the first run.", key);
+            return (T) awaitResult(existing);
+        }
+        try {
+            // the first run may have completed after the lookup of the completed tasks.
+            completedResult = completedTasks.getIfPresent(key);
+            T result = Objects.nonNull(completedResult) ? (T) completedResult : task.get();
+            if (Objects.nonNull(result)) {
+                completedTasks.put(key, result);
+            }
+            future.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            runningTasks.remove(key, future);
+        }
+    }
+
+    private Object awaitResult(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    private record TaskKey(UUID requestId, RequestType requestType) {}
+}
@@ -0,0 +1,169 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.async;
+
+import jakarta.annotation.Resource;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.xpanse.tofu.maker.models.request.OpenTofuRequest;
+import org.eclipse.xpanse.tofu.maker.models.request.directory.OpenTofuAsyncRequestWithScriptsDirectory;
+import org.eclipse.xpanse.tofu.maker.models.response.TaskDrainStatus;
+import org.eclipse.xpanse.tofu.maker.opentofu.service.OpenTofuScriptsDirectoryService;
+import org.springframework.amqp.rabbit.listener.AbstractMessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Drains the node before it is stopped. Draining is started by the admin API or on shutdown,
+ * e.g. after SIGTERM. A draining node admits no new tasks from HTTP and stops consuming from the
+ * AMQP queues, so that the messages are left to other nodes. On shutdown, the accepted tasks are
+ * waited for until the deadline, while the web server still serves callbacks and status queries.
+ * Tasks still queued after the deadline stay in the task journal and are scheduled again after
+ * the restart, or are failed with a callback when the journal is disabled. Tasks still running
+ * after the deadline are failed with a callback after the restart.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class TaskDrainController implements ApplicationListener<ContextClosedEvent> {
+
+    private static final long POLL_INTERVAL_MILLIS = 500;
+
+    private volatile OffsetDateTime drainStartedTime;
+    private volatile long drainStartedNanos;
+
+    @Resource private TaskAdmissionController admissionController;
+    @Resource private OpenTofuTaskScheduler taskScheduler;
+    @Resource private OpenTofuTaskJournal taskJournal;
+    @Lazy @Resource private OpenTofuScriptsDirectoryService scriptsDirectoryService;
+    @Resource private ObjectProvider<RabbitListenerEndpointRegistry> listenerEndpointRegistries;
+
+    @Value("${tofu.maker.task.drain.timeout.seconds:300}")
+    private long drainTimeoutSeconds;
+
+    /** Stop admitting new tasks. Calling it again has no effect. */
+    public synchronized void startDraining() {
+        if (admissionController.isDraining()) {
+            return;
+        }
+        admissionController.startDraining();
+        drainStartedNanos = System.nanoTime();
+        drainStartedTime = OffsetDateTime.now();
+        listenerEndpointRegistries.ifAvailable(this::stopListenerContainers);
+        log.info(
+                "Started draining with {} tasks in progress.",
+                admissionController.getAdmittedTasks());
+    }
+
+    /**
+     * Stop the AMQP listener containers, which only exist with the amqp profile. Otherwise the
+     * rejected messages would be redelivered to this node over and over. Stopping waits for the
+     * messages being processed, so it runs in the background, and waits until the drain deadline
+     * instead of closing their channels after the default timeout, which would requeue them while
+     * they are still processed here.
+     */
+    private void stopListenerContainers(RabbitListenerEndpointRegistry registry) {
+        long shutdownTimeoutMillis = TimeUnit.SECONDS.toMillis(drainTimeoutSeconds);
+        registry.getListenerContainers()
+                .forEach(
+                        container -> {
+                            if (container
+                                    instanceof AbstractMessageListenerContainer listenerContainer) {
+                                listenerContainer.setShutdownTimeout(shutdownTimeoutMillis);
+                            }
+                        });
+        Thread.ofVirtual()
+                .name("tofu-amqp-listener-stop")
+                .start(
+                        () -> {
+                            try {
+                                registry.stop();
+                                log.info("Stopped consuming AMQP requests.");
+                            } catch (RuntimeException e) {
+                                log.error("Stop AMQP listener containers failed.", e);
+                            }
+                        });
+    }
+
+    /**
+     * Get the drain status of the node.
+     *
+     * @return drain status.
+     */
+    public TaskDrainStatus getDrainStatus() {
+        OffsetDateTime startedTime = drainStartedTime;
+        return TaskDrainStatus.builder()
+                .isDraining(admissionController.isDraining())
+                .drainStartedTime(startedTime)
+                .drainDeadline(
+                        Objects.nonNull(startedTime)
+                                ? startedTime.plusSeconds(drainTimeoutSeconds)
+                                : null)
+                .inProgressTasks(admissionController.getAdmittedTasks())
+                .runningTasks(admissionController.getRunningTasks())
+                .build();
+    }
+
+    /** Drain the node when the application context is closed. */
+    @Override
+    public void onApplicationEvent(ContextClosedEvent event) {
+        if (Objects.nonNull(event.getApplicationContext().getParent())) {
+            return;
+        }
+        startDraining();
+        long deadline = drainStartedNanos + TimeUnit.SECONDS.toNanos(drainTimeoutSeconds);
+        try {
+            while (admissionController.getAdmittedTasks() > 0
+                    && System.nanoTime() - deadline < 0) {
+                TimeUnit.MILLISECONDS.sleep(POLL_INTERVAL_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (admissionController.getAdmittedTasks() == 0) {
+            log.info("Drained all tasks.");
+            return;
+        }
+        checkpointQueuedTasks();
+        int runningTasks = admissionController.getRunningTasks();
+        if (runningTasks > 0) {
+            log.warn(
+                    "Drain deadline passed with {} running tasks. {}",
+                    runningTasks,
+                    taskJournal.isEnabled()
+                            ? "They will be failed with a callback after the restart."
+                            : "They are lost as the task journal is disabled.");
+        }
+    }
+
+    private void checkpointQueuedTasks() {
+        List<OpenTofuRequest> queuedRequests = taskScheduler.removeQueuedTasks();
+        for (OpenTofuRequest request : queuedRequests) {
+            try {
+                if (taskJournal.isEnabled()) {
+                    log.info("Task {} kept in journal for the restart.", request.getRequestId());
+                } else if (request
+                        instanceof OpenTofuAsyncRequestWithScriptsDirectory asyncRequest) {
+                    scriptsDirectoryService.failInterruptedTask(asyncRequest);
+                }
+            } catch (RuntimeException e) {
+                log.error("Checkpoint of task {} failed.", request.getRequestId(), e);
+            } finally {
+                admissionController.completed(request.getRequestId());
+            }
+        }
+    }
+}
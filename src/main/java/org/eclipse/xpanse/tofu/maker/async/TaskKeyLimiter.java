@@ -0,0 +1,343 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.async;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.xpanse.tofu.maker.models.exceptions.OpenTofuExecutorException;
+import org.eclipse.xpanse.tofu.maker.models.request.directory.OpenTofuRequestWithScriptsDirectory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Limits the number of OpenTofu tasks running at the same time for the same key, such as a
+ * region in an env variable, the value of a variable or a provider used by the scripts. Keys and
+ * their limits are configured as rules in the form {@code env:NAME=limit}, {@code var:name=limit},
+ * {@code provider:name=limit} or {@code provider:*=limit}. A task which matches several rules
+ * waits for a permit of each key, acquired in a fixed order to avoid deadlocks. The semaphore of a
+ * key is dropped once no task holds or waits for it, so that keys of past values don't pile up.
+ *
+ * <p>Async tasks don't wait for their keys while holding a dispatch permit of the scheduler. The
+ * scheduler takes their permits with {@link #tryAcquire(Keys)} before it dispatches them and
+ * runs them with {@link #runWithPermits(Runnable)}, so that tasks of saturated keys stay queued
+ * while tasks of other keys run.
+ */
+@Slf4j
+@Component
+public class TaskKeyLimiter {
+
+    private static final String ANY_PROVIDER = "*";
+    private static final Pattern PROVIDER_BLOCK_PATTERN =
+            Pattern.compile("^\\s*provider\\s+\"([\\w-]+)\"", Pattern.MULTILINE);
+    private static final Pattern REQUIRED_PROVIDER_PATTERN =
+            Pattern.compile("([\\w-]+)\\s*=\\s*\\{\\s*source\\s*=");
+
+    private final List<KeyLimitRule> rules = new ArrayList<>();
+    private final Map<String, KeySemaphore> semaphores = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final ThreadLocal<Boolean> permitsHeld = new ThreadLocal<>();
+
+    /**
+     * Constructor for the TaskKeyLimiter bean.
+     *
+     * @param keyLimits value of `tofu.maker.task.key.limits` property.
+     * @param meterRegistry registry for the wait time metrics.
+     */
+    @Autowired
+    public TaskKeyLimiter(
+            @Value("${tofu.maker.task.key.limits:}") String keyLimits,
+            MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        parseRules(keyLimits);
+    }
+
+    /**
+     * Acquire a permit for each key of the request, waiting while the limit of a key is reached.
+     *
+     * @param request request of the task.
+     * @return permits to be closed when the task is finished.
+     */
+    public Permits acquire(OpenTofuRequestWithScriptsDirectory request) {
+        if (rules.isEmpty() || Boolean.TRUE.equals(permitsHeld.get())) {
+            return new Permits(Collections.emptyList());
+        }
+        List<String> acquired = new ArrayList<>();
+        for (Map.Entry<String, KeyLimitRule> key : getKeyRules(request).entrySet()) {
+            KeySemaphore keySemaphore = reserve(key.getKey(), key.getValue());
+            long waitStart = System.nanoTime();
+            try {
+                keySemaphore.semaphore.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                release(key.getKey(), false);
+                new Permits(acquired).close();
+                throw new OpenTofuExecutorException(
+                        "Interrupted while waiting for the limit of " + key.getValue().getTag(), e);
+            }
+            acquired.add(key.getKey());
+            getWaitTimer(key.getValue().getTag())
+                    .record(Duration.ofNanos(System.nanoTime() - waitStart));
+        }
+        return new Permits(acquired);
+    }
+
+    /**
+     * Get the keys of the request, to take their permits later without reading the scripts again.
+     *
+     * @param request request of the task.
+     * @return keys of the request.
+     */
+    public Keys getKeys(OpenTofuRequestWithScriptsDirectory request) {
+        return rules.isEmpty() ? Keys.NONE : new Keys(getKeyRules(request));
+    }
+
+    /**
+     * Acquire a permit for each of the keys if all of them have a permit available.
+     *
+     * @param keys keys of the task.
+     * @return permits to be closed when the task is finished, or null if a key is saturated.
+     */
+    public Permits tryAcquire(Keys keys) {
+        List<String> acquired = new ArrayList<>();
+        for (Map.Entry<String, KeyLimitRule> key : keys.keyRules.entrySet()) {
+            if (!reserve(key.getKey(), key.getValue()).semaphore.tryAcquire()) {
+                release(key.getKey(), false);
+                new Permits(acquired).close();
+                return null;
+            }
+            acquired.add(key.getKey());
+        }
+        return new Permits(acquired);
+    }
+
+    /**
+     * Run the task with the permits already acquired by {@link #tryAcquire(Keys)}. The task
+     * doesn't wait again for the permits of its keys.
+     *
+     * @param task task to run.
+     */
+    public void runWithPermits(Runnable task) {
+        permitsHeld.set(Boolean.TRUE);
+        try {
+            task.run();
+        } finally {
+            permitsHeld.remove();
+        }
+    }
+
+    /** Count the task as user of the semaphore of the key, so that it is not dropped. */
+    private KeySemaphore reserve(String key, KeyLimitRule rule) {
+        return semaphores.compute(
+                key,
+                (k, existing) -> {
+                    KeySemaphore semaphore =
+                            Objects.nonNull(existing) ? existing : new KeySemaphore(rule.limit());
+                    semaphore.users++;
+                    return semaphore;
+                });
+    }
+
+    /** Release the permit of the key and drop its semaphore when no other task uses it. */
+    private void release(String key, boolean heldPermit) {
+        semaphores.computeIfPresent(
+                key,
+                (k, keySemaphore) -> {
+                    if (heldPermit) {
+                        keySemaphore.semaphore.release();
+                    }
+                    keySemaphore.users--;
+                    return keySemaphore.users > 0 ? keySemaphore : null;
+                });
+    }
+
+    /** Keys of the request with their rules, sorted to acquire permits in a fixed order. */
+    private SortedMap<String, KeyLimitRule> getKeyRules(
+            OpenTofuRequestWithScriptsDirectory request) {
+        SortedMap<String, KeyLimitRule> keys = new TreeMap<>();
+        Set<String> providers = null;
+        for (KeyLimitRule rule : rules) {
+            switch (rule.type()) {
+                case ENV -> {
+                    String value =
+                            Objects.nonNull(request.getEnvVariables())
+                                    ? request.getEnvVariables().get(rule.name())
+                                    : null;
+                    if (StringUtils.isNotBlank(value)) {
+                        keys.put(rule.getTag() + "=" + value, rule);
+                    }
+                }
+                case VAR -> {
+                    Object value =
+                            Objects.nonNull(request.getVariables())
+                                    ? request.getVariables().get(rule.name())
+                                    : null;
+                    if (Objects.nonNull(value)) {
+                        keys.put(rule.getTag() + "=" + value, rule);
+                    }
+                }
+                case PROVIDER -> {
+                    if (Objects.isNull(providers)) {
+                        providers = getProviders(request.getScriptsDirectory());
+                    }
+                    for (String provider : providers) {
+                        String key = "provider:" + provider;
+                        if (rule.name().equals(provider)) {
+                            keys.put(key, rule);
+                        } else if (ANY_PROVIDER.equals(rule.name())) {
+                            keys.putIfAbsent(key, rule);
+                        }
+                    }
+                }
+            }
+        }
+        return keys;
+    }
+
+    /** Names of the providers configured or required in the scripts of the workspace. */
+    private Set<String> getProviders(String scriptsDirectory) {
+        Set<String> providers = new TreeSet<>();
+        File[] scripts =
+                new File(scriptsDirectory).listFiles((dir, name) -> name.endsWith(".tf"));
+        if (Objects.isNull(scripts)) {
+            return providers;
+        }
+        for (File script : scripts) {
+            try {
+                String content = Files.readString(script.toPath());
+                for (Pattern pattern : List.of(PROVIDER_BLOCK_PATTERN, REQUIRED_PROVIDER_PATTERN)) {
+                    Matcher matcher = pattern.matcher(content);
+                    while (matcher.find()) {
+                        providers.add(matcher.group(1).toLowerCase(Locale.ROOT));
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Read script {} for provider limits failed.", script.getName());
+            }
+        }
+        return providers;
+    }
+
+    /** The timer is tagged with the rule only, as values of variables may be secrets. */
+    private Timer getWaitTimer(String rule) {
+        return Timer.builder("tofu.maker.task.key.wait")
+                .description("Time tasks waited for the concurrency limit of a key.")
+                .tag("rule", rule)
+                .register(meterRegistry);
+    }
+
+    private void parseRules(String keyLimits) {
+        for (String entry : StringUtils.split(StringUtils.trimToEmpty(keyLimits), ',')) {
+            String[] expressionAndLimit = StringUtils.split(entry, '=');
+            String[] typeAndName =
+                    expressionAndLimit.length == 2
+                            ? StringUtils.split(expressionAndLimit[0], ':')
+                            : new String[0];
+            try {
+                if (typeAndName.length != 2) {
+                    throw new IllegalArgumentException("Missing type or name.");
+                }
+                KeyType type = KeyType.valueOf(typeAndName[0].trim().toUpperCase(Locale.ROOT));
+                String name = typeAndName[1].trim();
+                if (KeyType.PROVIDER == type) {
+                    name = name.toLowerCase(Locale.ROOT);
+                }
+                int limit = Integer.parseInt(expressionAndLimit[1].trim());
+                if (limit <= 0) {
+                    throw new IllegalArgumentException("Limit must be positive.");
+                }
+                rules.add(new KeyLimitRule(type, name, limit));
+            } catch (IllegalArgumentException e) {
+                log.warn("Ignored invalid task key limit '{}'. {}", entry, e.getMessage());
+            }
+        }
+        if (!rules.isEmpty()) {
+            log.info("Task concurrency is limited per key by {}.", rules);
+        }
+    }
+
+    private enum KeyType {
+        ENV,
+        VAR,
+        PROVIDER
+    }
+
+    private record KeyLimitRule(KeyType type, String name, int limit) {
+
+        String getTag() {
+            return type.name().toLowerCase(Locale.ROOT) + ":" + name;
+        }
+    }
+
+    /** Keys of a task with their rules. */
+    public static final class Keys {
+
+        /** No keys, for tasks without limits. */
+        public static final Keys NONE = new Keys(Collections.emptySortedMap());
+
+        private final SortedMap<String, KeyLimitRule> keyRules;
+
+        private Keys(SortedMap<String, KeyLimitRule> keyRules) {
+            this.keyRules = keyRules;
+        }
+    }
+
+    /** Semaphore of a key with the number of tasks holding or waiting for a permit. */
+    private static final class KeySemaphore {
+
+        private final Semaphore semaphore;
+        private int users;
+
+        private KeySemaphore(int limit) {
+            this.semaphore = new Semaphore(limit, true);
+        }
+    }
+
+    /** Permits held by a task for its keys. */
+    public final class Permits implements AutoCloseable {
+
+        private final List<String> keys;
+
+        private Permits(List<String> keys) {
+            this.keys = keys;
+        }
+
+        /**
+         * Keys of the acquired permits.
+         *
+         * @return keys of the acquired permits.
+         */
+        public List<String> keys() {
+            return keys;
+        }
+
+        /** Release all permits. */
+        @Override
+        public void close() {
+            keys.forEach(key -> release(key, true));
+        }
+    }
+}
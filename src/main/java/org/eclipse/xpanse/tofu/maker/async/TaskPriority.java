@@ -0,0 +1,38 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.async;
+
+import org.eclipse.xpanse.tofu.maker.models.enums.RequestType;
+import org.eclipse.xpanse.tofu.maker.models.request.OpenTofuRequest;
+
+/** Priority classes of OpenTofu tasks, from the most to the least urgent. */
+public enum TaskPriority {
+    DESTROY,
+    PLAN,
+    MODIFY,
+    DEPLOY;
+
+    /**
+     * Get the priority class of the request. Destroy releases resources and is the most urgent.
+     * Plan only requests are short and block users waiting for the result, so they run before
+     * requests which apply changes.
+     *
+     * @param request request of the task.
+     * @return priority class.
+     */
+    public static TaskPriority of(OpenTofuRequest request) {
+        RequestType requestType = request.getRequestType();
+        if (RequestType.DESTROY == requestType) {
+            return DESTROY;
+        }
+        if (RequestType.PLAN == requestType
+                || RequestType.VALIDATE == requestType
+                || Boolean.TRUE.equals(request.getIsPlanOnly())) {
+            return PLAN;
+        }
+        return RequestType.MODIFY == requestType ? MODIFY : DEPLOY;
+    }
+}
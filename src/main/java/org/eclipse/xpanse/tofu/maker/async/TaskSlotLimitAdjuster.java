@@ -0,0 +1,204 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.async;
+
+import com.sun.management.OperatingSystemMXBean;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.Resource;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.xpanse.tofu.maker.opentofu.service.OpenTofuScriptsDirectoryHelper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Adjusts the limit of concurrent OpenTofu executions to the pressure on the node by additive
+ * increase and multiplicative decrease. The limit is lowered when free memory, free disk in the
+ * workspace root or the CPU load cross their thresholds, or when executions get much slower than
+ * usual. Execution times are compared per operation, so that a burst of applies after a run of
+ * validates is not taken for a slowdown. The limit is raised by one slot when all slots are in
+ * use and the node is not under pressure.
+ * The CPU load is taken from the JVM, which measures it against the CPU limit inside a container,
+ * while the load average is the one of the whole host.
+ */
+@Slf4j
+@Component
+public class TaskSlotLimitAdjuster {
+
+    private static final double DECREASE_FACTOR = 0.75;
+    private static final double BASELINE_WEIGHT = 0.1;
+    private static final int MIN_EXECUTIONS_FOR_LATENCY = 3;
+    private static final long BYTES_PER_MB = 1024L * 1024L;
+    private static final Path MEMINFO_PATH = Paths.get("/proc/meminfo");
+
+    private final OperatingSystemMXBean operatingSystem =
+            ManagementFactory.getPlatformMXBean(OperatingSystemMXBean.class);
+    private final Map<TaskSlotLimiter.Operation, LatencyBaseline> latencyBaselines =
+            new EnumMap<>(TaskSlotLimiter.Operation.class);
+
+    @Resource private TaskSlotLimiter taskSlotLimiter;
+    @Resource private OpenTofuScriptsDirectoryHelper scriptsHelper;
+
+    @Value("${tofu.maker.task.adaptive.enabled:true}")
+    private boolean isAdaptiveEnabled;
+
+    @Value("${tofu.maker.task.adaptive.min.free.memory.ratio:0.1}")
+    private double minFreeMemoryRatio;
+
+    @Value("${tofu.maker.task.adaptive.max.cpu.load:0.9}")
+    private double maxCpuLoad;
+
+    @Value("${tofu.maker.task.adaptive.min.free.disk.mb:1024}")
+    private long minFreeDiskMb;
+
+    @Value("${tofu.maker.task.adaptive.latency.tolerance:2.0}")
+    private double latencyTolerance;
+
+    /** Sample the pressure on the node and adjust the slot limit. */
+    @Scheduled(
+            initialDelayString = "${tofu.maker.task.adaptive.interval.seconds:10}",
+            fixedDelayString = "${tofu.maker.task.adaptive.interval.seconds:10}",
+            timeUnit = TimeUnit.SECONDS)
+    public void adjustSlotLimit() {
+        if (!isAdaptiveEnabled) {
+            return;
+        }
+        List<String> pressures = getPressures();
+        int limit = taskSlotLimiter.getSlotLimit();
+        int newLimit = limit;
+        if (!pressures.isEmpty()) {
+            newLimit = Math.max(1, (int) (limit * DECREASE_FACTOR));
+        } else if (taskSlotLimiter.getUsedSlots() >= limit) {
+            newLimit = limit + 1;
+        }
+        if (newLimit != limit) {
+            taskSlotLimiter.setSlotLimit(newLimit);
+            log.info(
+                    "Changed slot limit from {} to {}. Pressure: {}",
+                    limit,
+                    taskSlotLimiter.getSlotLimit(),
+                    pressures);
+        }
+    }
+
+    private List<String> getPressures() {
+        List<String> pressures = new ArrayList<>();
+        if (getFreeMemoryRatio() < minFreeMemoryRatio) {
+            pressures.add("memory");
+        }
+        // negative when the CPU load is not available.
+        if (operatingSystem.getCpuLoad() > maxCpuLoad) {
+            pressures.add("cpu");
+        }
+        File workspaceRoot = new File(scriptsHelper.getModuleParentDirectoryPath());
+        if (workspaceRoot.exists()
+                && workspaceRoot.getUsableSpace() / BYTES_PER_MB < minFreeDiskMb) {
+            pressures.add("disk");
+        }
+        List<String> slowerOperations = getOperationsSlowerThanBaseline();
+        if (!slowerOperations.isEmpty()) {
+            pressures.add("latency" + slowerOperations);
+        }
+        return pressures;
+    }
+
+    /**
+     * Free memory ratio of the node. On Linux hosts MemAvailable is used, as the free memory
+     * reported by the JVM doesn't count page cache which can be reclaimed. Inside a memory limited
+     * container the total memory differs from the host and the JVM values of the limit are kept.
+     */
+    private double getFreeMemoryRatio() {
+        long totalMemory = operatingSystem.getTotalMemorySize();
+        if (totalMemory <= 0) {
+            return 1;
+        }
+        long freeMemory = operatingSystem.getFreeMemorySize();
+        if (Files.isReadable(MEMINFO_PATH)) {
+            try {
+                Map<String, Long> memInfo = new HashMap<>();
+                for (String line : Files.readAllLines(MEMINFO_PATH)) {
+                    String[] parts = StringUtils.split(line, ": ");
+                    if (parts.length >= 2 && StringUtils.isNumeric(parts[1])) {
+                        memInfo.put(parts[0], Long.parseLong(parts[1]) * 1024L);
+                    }
+                }
+                Long hostTotal = memInfo.get("MemTotal");
+                Long hostAvailable = memInfo.get("MemAvailable");
+                if (Objects.nonNull(hostTotal)
+                        && Objects.nonNull(hostAvailable)
+                        && hostTotal == totalMemory) {
+                    freeMemory = hostAvailable;
+                }
+            } catch (IOException e) {
+                log.debug("Read {} failed.", MEMINFO_PATH);
+            }
+        }
+        return (double) freeMemory / totalMemory;
+    }
+
+    /** Get the operations whose executions since the last sample were slower than usual. */
+    private List<String> getOperationsSlowerThanBaseline() {
+        List<String> slowerOperations = new ArrayList<>();
+        for (TaskSlotLimiter.Operation operation : TaskSlotLimiter.Operation.values()) {
+            LatencyBaseline latencyBaseline =
+                    latencyBaselines.computeIfAbsent(operation, key -> new LatencyBaseline());
+            if (latencyBaseline.isSlower(taskSlotLimiter.getExecutionTimer(operation))) {
+                slowerOperations.add(operation.name().toLowerCase(Locale.ROOT));
+            }
+        }
+        return slowerOperations;
+    }
+
+    /** Moving baseline of the execution time of one operation. */
+    private final class LatencyBaseline {
+
+        private long lastExecutionCount;
+        private double lastExecutionTotalMillis;
+        private double baselineExecutionMillis;
+
+        /**
+         * Compare the mean execution time since the last sample with the moving baseline.
+         * Samples with too few executions are not compared, but are added to the baseline.
+         */
+        private boolean isSlower(Timer executionTimer) {
+            long count = executionTimer.count();
+            double totalMillis = executionTimer.totalTime(TimeUnit.MILLISECONDS);
+            long executions = count - lastExecutionCount;
+            double meanMillis =
+                    executions > 0 ? (totalMillis - lastExecutionTotalMillis) / executions : 0;
+            lastExecutionCount = count;
+            lastExecutionTotalMillis = totalMillis;
+            if (executions == 0) {
+                return false;
+            }
+            if (baselineExecutionMillis == 0) {
+                baselineExecutionMillis = meanMillis;
+                return false;
+            }
+            boolean isSlower =
+                    executions >= MIN_EXECUTIONS_FOR_LATENCY
+                            && meanMillis > baselineExecutionMillis * latencyTolerance;
+            baselineExecutionMillis =
+                    baselineExecutionMillis * (1 - BASELINE_WEIGHT) + meanMillis * BASELINE_WEIGHT;
+            return isSlower;
+        }
+    }
+}
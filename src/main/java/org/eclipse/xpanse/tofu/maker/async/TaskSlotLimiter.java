@@ -0,0 +1,202 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.async;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.Serial;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.xpanse.tofu.maker.models.exceptions.OpenTofuExecutorException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Limits the number of OpenTofu executions running at the same time on this node. The limit is
+ * independent of the number of threads of the task executor, so that tasks can wait for a slot
+ * without holding a platform thread when the executor runs on virtual threads. The limit can be
+ * changed at runtime between one and the maximum number of slots. The time slots are held is
+ * recorded per operation, as a validate takes a fraction of the time of an apply.
+ */
+@Slf4j
+@Component
+public class TaskSlotLimiter {
+
+    private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+
+    private final ResizableSemaphore slots;
+    private final int maxSlots;
+    private final AtomicInteger slotLimit = new AtomicInteger();
+    private final Map<Operation, Timer> executionTimers = new EnumMap<>(Operation.class);
+    private final ThreadLocal<Integer> holdCount = ThreadLocal.withInitial(() -> 0);
+
+    /**
+     * Constructor for the TaskSlotLimiter bean.
+     *
+     * @param initialSlots value of `tofu.maker.task.max.concurrent.executions` property, or the
+     *     number of CPUs times two when the value is not positive.
+     * @param maxSlots value of `tofu.maker.task.adaptive.max.slots` property, or the initial
+     *     number of slots when the value is not greater.
+     * @param meterRegistry registry for the slot metrics.
+     */
+    @Autowired
+    public TaskSlotLimiter(
+            @Value("${tofu.maker.task.max.concurrent.executions:0}") int initialSlots,
+            @Value("${tofu.maker.task.adaptive.max.slots:0}") int maxSlots,
+            MeterRegistry meterRegistry) {
+        int initialLimit = initialSlots > 0 ? initialSlots : CPU_COUNT * 2;
+        this.maxSlots = Math.max(maxSlots, initialLimit);
+        this.slotLimit.set(initialLimit);
+        this.slots = new ResizableSemaphore(initialLimit);
+        Gauge.builder("tofu.maker.task.slots.limit", slotLimit, AtomicInteger::get)
+                .description("Current limit of concurrent OpenTofu executions.")
+                .register(meterRegistry);
+        for (Operation operation : Operation.values()) {
+            executionTimers.put(
+                    operation,
+                    Timer.builder("tofu.maker.task.slots.execution")
+                            .description("Time OpenTofu executions held a slot.")
+                            .tag("operation", operation.name().toLowerCase(Locale.ROOT))
+                            .register(meterRegistry));
+        }
+        Gauge.builder("tofu.maker.task.slots.used", this, TaskSlotLimiter::getUsedSlots)
+                .description("Number of OpenTofu executions holding a slot.")
+                .register(meterRegistry);
+        Gauge.builder("tofu.maker.task.slots.waiting", slots, Semaphore::getQueueLength)
+                .description("Number of tasks waiting for a slot.")
+                .register(meterRegistry);
+        log.info(
+                "OpenTofu executions are limited to {} concurrent slots, at most {}.",
+                initialLimit,
+                this.maxSlots);
+    }
+
+    /**
+     * Run the task while holding one execution slot. A thread which already holds a slot runs
+     * nested tasks with the same slot, and their time counts for the outer operation.
+     *
+     * @param operation operation the slot is held for.
+     * @param task task to run.
+     * @param <T> return type of the task.
+     * @return result of the task.
+     */
+    public <T> T runWithSlot(Operation operation, Supplier<T> task) {
+        if (holdCount.get() > 0) {
+            return runHoldingSlot(task);
+        }
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OpenTofuExecutorException("Interrupted while waiting for a task slot.", e);
+        }
+        long start = System.nanoTime();
+        try {
+            return runHoldingSlot(task);
+        } finally {
+            slots.release();
+            executionTimers.get(operation).record(Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * Get the maximum number of slots the limit can be raised to.
+     *
+     * @return max slots.
+     */
+    public int getMaxSlots() {
+        return maxSlots;
+    }
+
+    /**
+     * Get the current limit of slots.
+     *
+     * @return slot limit.
+     */
+    public int getSlotLimit() {
+        return slotLimit.get();
+    }
+
+    /**
+     * Change the limit of slots. When the limit is lowered, running executions keep their slots
+     * and new executions wait until the number of used slots is below the new limit.
+     *
+     * @param newLimit new limit, bounded to between one and the maximum number of slots.
+     */
+    public synchronized void setSlotLimit(int newLimit) {
+        int limit = Math.clamp(newLimit, 1, maxSlots);
+        int delta = limit - slotLimit.getAndSet(limit);
+        if (delta > 0) {
+            slots.release(delta);
+        } else if (delta < 0) {
+            slots.reducePermits(-delta);
+        }
+    }
+
+    /**
+     * Get the number of slots currently held.
+     *
+     * @return used slots.
+     */
+    public int getUsedSlots() {
+        return slotLimit.get() - slots.availablePermits();
+    }
+
+    /**
+     * Get the timer of the time executions of the operation held a slot.
+     *
+     * @param operation operation of the executions.
+     * @return execution timer.
+     */
+    public Timer getExecutionTimer(Operation operation) {
+        return executionTimers.get(operation);
+    }
+
+    private <T> T runHoldingSlot(Supplier<T> task) {
+        holdCount.set(holdCount.get() + 1);
+        try {
+            return task.get();
+        } finally {
+            int count = holdCount.get() - 1;
+            if (count == 0) {
+                holdCount.remove();
+            } else {
+                holdCount.set(count);
+            }
+        }
+    }
+
+    /** OpenTofu operations which hold a slot. */
+    public enum Operation {
+        VALIDATE,
+        PLAN,
+        APPLY,
+        DESTROY
+    }
+
+    /** Semaphore whose number of permits can be reduced. */
+    private static final class ResizableSemaphore extends Semaphore {
+
+        @Serial private static final long serialVersionUID = 4270563851739615062L;
+
+        private ResizableSemaphore(int permits) {
+            super(permits, true);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+}
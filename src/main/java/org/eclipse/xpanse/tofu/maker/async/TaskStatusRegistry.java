@@ -0,0 +1,194 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.async;
+
+import static org.eclipse.xpanse.tofu.maker.logging.CustomRequestIdGenerator.REQUEST_ID;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.xpanse.tofu.maker.models.enums.TaskPhase;
+import org.eclipse.xpanse.tofu.maker.models.request.OpenTofuRequest;
+import org.eclipse.xpanse.tofu.maker.models.response.TaskStatus;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory registry of the status of the async tasks on this node. Statuses are immutable
+ * snapshots replaced on each phase change, so that readers never block writers. Statuses of
+ * finished tasks are kept for the retention period and then removed.
+ */
+@Slf4j
+@Component
+public class TaskStatusRegistry {
+
+    private final Map<UUID, TaskStatus> statuses = new ConcurrentHashMap<>();
+    private final String nodeName = getNodeName();
+
+    @Value("${tofu.maker.task.status.retention.seconds:3600}")
+    private long retentionSeconds;
+
+    /**
+     * Register the task as queued.
+     *
+     * @param request request of the task.
+     */
+    public void queued(OpenTofuRequest request) {
+        statuses.put(request.getRequestId(), newQueuedStatus(request));
+    }
+
+    /**
+     * Register the task as queued unless a task with the same request id is already registered,
+     * either in progress or finished within the retention period.
+     *
+     * @param request request of the task.
+     * @return true when the task was registered, false when it is a duplicate.
+     */
+    public boolean tryQueued(OpenTofuRequest request) {
+        return Objects.isNull(
+                statuses.putIfAbsent(request.getRequestId(), newQueuedStatus(request)));
+    }
+
+    /**
+     * Remove the task from the registry, e.g. when it was not accepted after all.
+     *
+     * @param requestId id of the request.
+     */
+    public void remove(UUID requestId) {
+        statuses.remove(requestId);
+    }
+
+    /**
+     * Update the phase of a registered task. Tasks which are not registered are ignored.
+     *
+     * @param requestId id of the request.
+     * @param phase new phase of the task.
+     */
+    public void updatePhase(UUID requestId, TaskPhase phase) {
+        statuses.computeIfPresent(
+                requestId,
+                (id, status) ->
+                        status.getPhase().isFinished()
+                                ? status
+                                : status.toBuilder()
+                                        .phase(phase)
+                                        .phaseStartedTime(OffsetDateTime.now())
+                                        .build());
+    }
+
+    /**
+     * Update the phase of the task running on the current thread, identified by the request id
+     * in the MDC context.
+     *
+     * @param phase new phase of the task.
+     */
+    public void updatePhaseOfCurrentTask(TaskPhase phase) {
+        String requestId = MDC.get(REQUEST_ID);
+        if (StringUtils.isBlank(requestId)) {
+            return;
+        }
+        try {
+            updatePhase(UUID.fromString(requestId), phase);
+        } catch (IllegalArgumentException e) {
+            log.debug("Request id {} in MDC is not a valid UUID.", requestId);
+        }
+    }
+
+    /**
+     * Mark the task as finished.
+     *
+     * @param requestId id of the request.
+     * @param isSuccessful whether the task was successful.
+     */
+    public void finished(UUID requestId, boolean isSuccessful) {
+        statuses.computeIfPresent(
+                requestId,
+                (id, status) -> {
+                    OffsetDateTime now = OffsetDateTime.now();
+                    return status.toBuilder()
+                            .phase(isSuccessful ? TaskPhase.COMPLETED : TaskPhase.FAILED)
+                            .phaseStartedTime(now)
+                            .finishedTime(now)
+                            .build();
+                });
+    }
+
+    /**
+     * Get the status of the task.
+     *
+     * @param requestId id of the request.
+     * @return status of the task, with phase unknown when the task is not registered.
+     */
+    public TaskStatus getStatus(UUID requestId) {
+        TaskStatus status = statuses.get(requestId);
+        if (Objects.isNull(status)) {
+            return TaskStatus.builder().requestId(requestId).phase(TaskPhase.UNKNOWN).build();
+        }
+        return status;
+    }
+
+    /**
+     * Get the statuses of the tasks.
+     *
+     * @param requestIds ids of the requests.
+     * @return statuses of the tasks in the order of the ids.
+     */
+    public List<TaskStatus> getStatuses(List<UUID> requestIds) {
+        return requestIds.stream().map(this::getStatus).toList();
+    }
+
+    /**
+     * Check whether the task is registered and not finished.
+     *
+     * @param requestId id of the request.
+     * @return true when the task is in progress on this node.
+     */
+    public boolean isInProgress(UUID requestId) {
+        TaskStatus status = statuses.get(requestId);
+        return Objects.nonNull(status) && !status.getPhase().isFinished();
+    }
+
+    /** Remove the statuses of tasks finished before the retention period. */
+    @Scheduled(fixedDelay = 1, timeUnit = TimeUnit.MINUTES)
+    public void removeExpiredStatuses() {
+        OffsetDateTime expiry = OffsetDateTime.now().minusSeconds(retentionSeconds);
+        statuses.values()
+                .removeIf(
+                        status ->
+                                Objects.nonNull(status.getFinishedTime())
+                                        && status.getFinishedTime().isBefore(expiry));
+    }
+
+    private TaskStatus newQueuedStatus(OpenTofuRequest request) {
+        OffsetDateTime now = OffsetDateTime.now();
+        return TaskStatus.builder()
+                .requestId(request.getRequestId())
+                .requestType(request.getRequestType())
+                .phase(TaskPhase.QUEUED)
+                .node(nodeName)
+                .acceptedTime(now)
+                .phaseStartedTime(now)
+                .build();
+    }
+
+    private static String getNodeName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown";
+        }
+    }
+}
@@ -0,0 +1,16 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.cache;
+
+import org.eclipse.xpanse.tofu.maker.models.response.OpenTofuResult;
+
+/**
+ * Result kept in the result cache.
+ *
+ * @param result result of the task.
+ * @param size size of the serialized result in bytes, used as weight of the entry.
+ */
+public record CachedOpenTofuResult(OpenTofuResult result, int size) {}
@@ -8,7 +8,9 @@ package org.eclipse.xpanse.tofu.maker.cache;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import java.time.Duration;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
@@ -19,20 +21,46 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class CaffeineCacheConfig {
     public static final String OPENTOFU_VERSIONS_CACHE_NAME = "OPENTOFU_VERSIONS_CACHE";
+    public static final String OPENTOFU_RESULT_CACHE_NAME = "OPENTOFU_RESULT_CACHE";
 
     /**
      * Config cache manager with caffeine.
      *
+     * @param resultCacheMaxBytes value of `tofu.maker.result.cache.max.bytes` property.
+     * @param resultRetentionSeconds value of `tofu.maker.result.store.retention.seconds` property.
      * @return caffeineCacheManager
      */
     @Bean
-    public CacheManager caffeineCacheManager() {
+    public CacheManager caffeineCacheManager(
+            @Value("${tofu.maker.result.cache.max.bytes:67108864}") long resultCacheMaxBytes,
+            @Value("${tofu.maker.result.store.retention.seconds:604800}")
+                    long resultRetentionSeconds) {
         CaffeineCacheManager cacheManager = new CaffeineCacheManager();
         cacheManager.registerCustomCache(OPENTOFU_VERSIONS_CACHE_NAME, getOpenTofuVersionsCache());
+        cacheManager.registerCustomCache(
+                OPENTOFU_RESULT_CACHE_NAME,
+                getOpenTofuResultCache(resultCacheMaxBytes, resultRetentionSeconds));
         return cacheManager;
     }
 
     private Cache<Object, Object> getOpenTofuVersionsCache() {
         return Caffeine.newBuilder().build();
     }
+
+    /**
+     * Hot tier of the result store, weighed by the size of the serialized results. Entries
+     * expire with the stored results. Statistics are recorded for the cache metrics.
+     */
+    private Cache<Object, Object> getOpenTofuResultCache(long maxBytes, long retentionSeconds) {
+        return Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher(
+                        (Object key, Object value) ->
+                                value instanceof CachedOpenTofuResult cachedResult
+                                        ? cachedResult.size()
+                                        : 1)
+                .expireAfterWrite(Duration.ofSeconds(retentionSeconds))
+                .recordStats()
+                .build();
+    }
 }
@@ -0,0 +1,41 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.models.enums;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.xpanse.tofu.maker.models.exceptions.UnsupportedEnumValueException;
+
+/** The parts of the OpenTofu state that can be extracted into the result of a request. */
+public enum StateProjection {
+    OUTPUTS("outputs"),
+    RESOURCE_ADDRESSES("resourceAddresses");
+
+    private final String projection;
+
+    StateProjection(String projection) {
+        this.projection = projection;
+    }
+
+    /** Convert string to StateProjection. */
+    @JsonCreator
+    public StateProjection getByValue(String value) {
+        for (StateProjection stateProjection : values()) {
+            if (StringUtils.equalsIgnoreCase(stateProjection.projection, value)) {
+                return stateProjection;
+            }
+        }
+        throw new UnsupportedEnumValueException(
+                String.format("StateProjection value %s is not supported.", value));
+    }
+
+    /** For StateProjection deserialize. */
+    @JsonValue
+    public String toValue() {
+        return this.projection;
+    }
+}
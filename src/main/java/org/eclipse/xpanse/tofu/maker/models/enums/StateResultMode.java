@@ -0,0 +1,41 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.models.enums;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.xpanse.tofu.maker.models.exceptions.UnsupportedEnumValueException;
+
+/** The ways the OpenTofu state can be returned in the result of a request. */
+public enum StateResultMode {
+    FULL_STATE("fullState"),
+    STATE_DELTA("stateDelta");
+
+    private final String mode;
+
+    StateResultMode(String mode) {
+        this.mode = mode;
+    }
+
+    /** Convert string to StateResultMode. */
+    @JsonCreator
+    public StateResultMode getByValue(String value) {
+        for (StateResultMode stateResultMode : values()) {
+            if (StringUtils.equalsIgnoreCase(stateResultMode.mode, value)) {
+                return stateResultMode;
+            }
+        }
+        throw new UnsupportedEnumValueException(
+                String.format("StateResultMode value %s is not supported.", value));
+    }
+
+    /** For StateResultMode deserialize. */
+    @JsonValue
+    public String toValue() {
+        return this.mode;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.models.enums;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.xpanse.tofu.maker.models.exceptions.UnsupportedEnumValueException;
+
+/** Phases of an OpenTofu task. */
+public enum TaskPhase {
+    QUEUED("queued"),
+    INIT("init"),
+    PLAN("plan"),
+    APPLY("apply"),
+    DESTROY("destroy"),
+    CALLBACK("callback"),
+    COMPLETED("completed"),
+    FAILED("failed"),
+    UNKNOWN("unknown");
+
+    private final String phase;
+
+    TaskPhase(String phase) {
+        this.phase = phase;
+    }
+
+    /** Convert string to TaskPhase. */
+    @JsonCreator
+    public TaskPhase getByValue(String value) {
+        for (TaskPhase taskPhase : values()) {
+            if (StringUtils.equalsIgnoreCase(taskPhase.phase, value)) {
+                return taskPhase;
+            }
+        }
+        throw new UnsupportedEnumValueException(
+                String.format("TaskPhase value %s is not supported.", value));
+    }
+
+    /** For TaskPhase deserialize. */
+    @JsonValue
+    public String toValue() {
+        return this.phase;
+    }
+
+    /**
+     * Check whether the task has finished in this phase.
+     *
+     * @return true for the phases of finished tasks.
+     */
+    public boolean isFinished() {
+        return this == COMPLETED || this == FAILED;
+    }
+}
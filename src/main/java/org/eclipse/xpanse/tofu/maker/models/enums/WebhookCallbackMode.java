@@ -0,0 +1,41 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.models.enums;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.xpanse.tofu.maker.models.exceptions.UnsupportedEnumValueException;
+
+/** What is sent to the webhook when a task is finished. */
+public enum WebhookCallbackMode {
+    FULL_RESULT("fullResult"),
+    NOTIFICATION("notification");
+
+    private final String mode;
+
+    WebhookCallbackMode(String mode) {
+        this.mode = mode;
+    }
+
+    /** Convert string to WebhookCallbackMode. */
+    @JsonCreator
+    public WebhookCallbackMode getByValue(String value) {
+        for (WebhookCallbackMode callbackMode : values()) {
+            if (StringUtils.equalsIgnoreCase(callbackMode.mode, value)) {
+                return callbackMode;
+            }
+        }
+        throw new UnsupportedEnumValueException(
+                String.format("WebhookCallbackMode value %s is not supported.", value));
+    }
+
+    /** For WebhookCallbackMode deserialize. */
+    @JsonValue
+    public String toValue() {
+        return this.mode;
+    }
+}
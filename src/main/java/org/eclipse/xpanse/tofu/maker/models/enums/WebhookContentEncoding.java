@@ -0,0 +1,41 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.models.enums;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.xpanse.tofu.maker.models.exceptions.UnsupportedEnumValueException;
+
+/** Content encodings of the body of webhook callbacks. */
+public enum WebhookContentEncoding {
+    IDENTITY("identity"),
+    GZIP("gzip");
+
+    private final String encoding;
+
+    WebhookContentEncoding(String encoding) {
+        this.encoding = encoding;
+    }
+
+    /** Convert string to WebhookContentEncoding. */
+    @JsonCreator
+    public WebhookContentEncoding getByValue(String value) {
+        for (WebhookContentEncoding contentEncoding : values()) {
+            if (StringUtils.equalsIgnoreCase(contentEncoding.encoding, value)) {
+                return contentEncoding;
+            }
+        }
+        throw new UnsupportedEnumValueException(
+                String.format("WebhookContentEncoding value %s is not supported.", value));
+    }
+
+    /** For WebhookContentEncoding deserialize. */
+    @JsonValue
+    public String toValue() {
+        return this.encoding;
+    }
+}
@@ -12,7 +12,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.eclipse.xpanse.tofu.maker.models.response.Response;
 import org.eclipse.xpanse.tofu.maker.models.response.ResultType;
 import org.springframework.amqp.AmqpException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageConversionException;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.FieldError;
@@ -133,6 +135,19 @@ public class OpenTofuApiExceptionHandler {
                 ResultType.INVALID_OPENTOFU_REQUEST, Collections.singletonList(ex.getMessage()));
     }
 
+    /** Exception handler for TaskAdmissionRejectedException. */
+    @ExceptionHandler({TaskAdmissionRejectedException.class})
+    public ResponseEntity<Response> handleTaskAdmissionRejectedException(
+            TaskAdmissionRejectedException ex) {
+        log.warn("handleTaskAdmissionRejectedException: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(
+                        Response.errorResponse(
+                                ResultType.TOO_MANY_REQUESTS,
+                                Collections.singletonList(ex.getMessage())));
+    }
+
     /** Exception handler for AmqpException. */
     @ExceptionHandler({AmqpException.class})
     @ResponseStatus(HttpStatus.BAD_REQUEST)
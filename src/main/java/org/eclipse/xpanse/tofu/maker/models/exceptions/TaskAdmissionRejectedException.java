@@ -0,0 +1,20 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.models.exceptions;
+
+import lombok.Getter;
+
+/** Exception thrown when a task is not admitted because tofu-maker has no capacity left. */
+@Getter
+public class TaskAdmissionRejectedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public TaskAdmissionRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,18 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.models.exceptions;
+
+/** Defines possible exceptions returned by delivery of webhook requests. */
+public class WebhookDeliveryException extends RuntimeException {
+
+    public WebhookDeliveryException(String message) {
+        super("Webhook Delivery Exception: " + message);
+    }
+
+    public WebhookDeliveryException(String message, Throwable ex) {
+        super(message, ex);
+    }
+}
@@ -11,10 +11,13 @@ import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Pattern;
 import java.io.Serial;
 import java.io.Serializable;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import lombok.Data;
 import org.eclipse.xpanse.tofu.maker.models.enums.RequestType;
+import org.eclipse.xpanse.tofu.maker.models.enums.StateProjection;
+import org.eclipse.xpanse.tofu.maker.models.enums.StateResultMode;
 import org.eclipse.xpanse.tofu.maker.models.request.directory.OpenTofuAsyncRequestWithScriptsDirectory;
 import org.eclipse.xpanse.tofu.maker.models.request.directory.OpenTofuRequestWithScriptsDirectory;
 import org.eclipse.xpanse.tofu.maker.models.request.git.OpenTofuAsyncRequestWithScriptsGitRepo;
@@ -75,4 +78,20 @@ public abstract class OpenTofuRequest implements Serializable {
 
     @Schema(description = "OpenTofu state as a string.")
     private String tfState;
+
+    @Schema(
+            description =
+                    "Controls how the OpenTofu state is returned in the result. With "
+                            + "'stateDelta', a RFC 6902 JSON patch from the tfState in the request "
+                            + "to the new state is returned instead of the full state. When the "
+                            + "patch can't be applied safely, the full state is returned, also "
+                            + "when stateProjections are set. Defaults to 'fullState'.")
+    private StateResultMode stateResultMode;
+
+    @Schema(
+            description =
+                    "Parts of the OpenTofu state to be extracted into the result. When set, only"
+                            + " the requested outputs and/or resource addresses are returned and"
+                            + " the full state is omitted from the result.")
+    private List<StateProjection> stateProjections;
 }
@@ -30,4 +30,13 @@ public class OpenTofuScriptsGitRepoDetails implements Serializable {
                     "Location of the scripts. If not provided, the scripts will be executed from"
                             + " root folder of the repo.")
     private String scriptPath;
+
+    @Schema(
+            description =
+                    "Full commit SHA or tag to be checked-out instead of the head of the branch."
+                            + " The scripts of a commit are cached on the node and reused by all"
+                            + " later requests for the same commit without accessing the GIT"
+                            + " repo. Abbreviated commit SHAs are rejected. Tags are expected to"
+                            + " be immutable, a moved tag is picked up after the tag resolve TTL.")
+    private String commit;
 }
@@ -11,6 +11,8 @@ import java.io.Serial;
 import java.io.Serializable;
 import lombok.Data;
 import org.eclipse.xpanse.tofu.maker.models.enums.AuthType;
+import org.eclipse.xpanse.tofu.maker.models.enums.WebhookCallbackMode;
+import org.eclipse.xpanse.tofu.maker.models.enums.WebhookContentEncoding;
 
 /** Configuration information class of webhook. */
 @Data
@@ -25,4 +27,28 @@ public class WebhookConfig implements Serializable {
     @NotNull
     @Schema(description = "The permission type when calling back.")
     private AuthType authType;
+
+    @Schema(
+            description =
+                    "Content encoding of the callback body. With 'gzip', the body is sent"
+                            + " compressed, and sent again uncompressed if the webhook answers"
+                            + " with 400 or 415. The HMAC signature is computed over the body"
+                            + " bytes as sent, i.e. after compression. Defaults to 'identity'.")
+    private WebhookContentEncoding contentEncoding;
+
+    @Schema(
+            description =
+                    "What is sent to the webhook when the task is finished. With"
+                            + " 'notification', only a summary of the result is sent and the"
+                            + " full result is kept on tofu-maker, from where it can be fetched"
+                            + " with ranged requests. Defaults to 'fullResult'.")
+    private WebhookCallbackMode callbackMode;
+
+    @Schema(
+            description =
+                    "Whether callbacks to this url are batched. Results finishing close together"
+                            + " are sent in one signed request with a JSON array of the results"
+                            + " or notifications, also when only one result is sent. Defaults"
+                            + " to false.")
+    private Boolean isBatched;
 }
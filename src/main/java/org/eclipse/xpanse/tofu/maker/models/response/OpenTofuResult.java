@@ -9,6 +9,7 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.NotNull;
 import java.io.Serial;
 import java.io.Serializable;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import lombok.Builder;
@@ -38,6 +39,26 @@ public class OpenTofuResult implements Serializable {
     @Schema(description = ".tfstate file contents returned as string.")
     private String terraformState;
 
+    @Schema(
+            description =
+                    "RFC 6902 JSON patch from the state sent in the request to the new"
+                            + " state. Only returned when the request asked for the 'stateDelta'"
+                            + " result mode. The patch starts with 'test' operations on the"
+                            + " lineage and serial of the original state.")
+    private String terraformStatePatch;
+
+    @Schema(
+            description =
+                    "Values of the outputs in the state. Only returned when the request asked for"
+                            + " the 'outputs' state projection.")
+    private Map<String, Object> stateOutputs;
+
+    @Schema(
+            description =
+                    "Addresses of all resource instances in the state. Only returned when the"
+                            + " request asked for the 'resourceAddresses' state projection.")
+    private List<String> stateResourceAddresses;
+
     @Schema(
             description =
                     "Data of all other files generated by the openTofu execution.The map key"
@@ -0,0 +1,60 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.models.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotNull;
+import java.util.UUID;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Data model for the notification sent instead of the full result of a task. */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OpenTofuResultNotification {
+
+    @NotNull
+    @Schema(description = "Id of the request.")
+    private UUID requestId;
+
+    @NotNull
+    @Schema(description = "defines if the command was successfully executed")
+    private Boolean isCommandSuccessful;
+
+    @Schema(description = "The version of the OpenTofu binary used to execute scripts.")
+    private String openTofuVersionUsed;
+
+    @Schema(description = "Length of the stdout of the command in characters.")
+    private long commandStdOutputLength;
+
+    @Schema(description = "Length of the stderr of the command in characters.")
+    private long commandStdErrorLength;
+
+    @Schema(description = "Length of the .tfstate file contents in characters.")
+    private long terraformStateLength;
+
+    @Schema(description = "Number of other files generated by the openTofu execution.")
+    private int generatedFileCount;
+
+    @NotNull
+    @Schema(description = "Size of the full result in bytes.")
+    private long resultSize;
+
+    @NotNull
+    @Schema(description = "SHA-256 digest of the full result as hex string.")
+    private String resultDigest;
+
+    @NotNull
+    @Schema(
+            description =
+                    "Path on tofu-maker from where the full result can be fetched. Supports"
+                            + " HTTP range requests.")
+    private String resultPath;
+}
@@ -22,6 +22,7 @@ public enum ResultType {
     INVALID_OPENTOFU_SCRIPTS("Invalid OpenTofu Scripts"),
     INVALID_OPENTOFU_REQUEST("Invalid OpenTofu Request"),
     SEND_AMQP_MESSAGE_FAILED("Send Amqp Message Failed"),
+    TOO_MANY_REQUESTS("Too Many Requests"),
     RESULT_ALREADY_RETURNED_OR_REQUEST_ID_INVALID("Result Already Returned or RequestId Invalid");
 
     private final String value;
@@ -0,0 +1,32 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.models.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.time.OffsetDateTime;
+import lombok.Builder;
+import lombok.Data;
+
+/** Data model for the drain status of the node. */
+@Data
+@Builder
+public class TaskDrainStatus {
+
+    @Schema(description = "Whether the node stopped accepting new tasks.")
+    private Boolean isDraining;
+
+    @Schema(description = "Time when draining was started.")
+    private OffsetDateTime drainStartedTime;
+
+    @Schema(description = "Time until which running tasks are waited for on shutdown.")
+    private OffsetDateTime drainDeadline;
+
+    @Schema(description = "Number of accepted tasks which are not completed yet.")
+    private Integer inProgressTasks;
+
+    @Schema(description = "Number of tasks which are running.")
+    private Integer runningTasks;
+}
@@ -0,0 +1,44 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.models.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotNull;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+import lombok.Builder;
+import lombok.Data;
+import org.eclipse.xpanse.tofu.maker.models.enums.RequestType;
+import org.eclipse.xpanse.tofu.maker.models.enums.TaskPhase;
+
+/** Data model for the status of a task. */
+@Data
+@Builder(toBuilder = true)
+public class TaskStatus {
+
+    @NotNull
+    @Schema(description = "Id of the request.")
+    private UUID requestId;
+
+    @Schema(description = "Type of the request.")
+    private RequestType requestType;
+
+    @NotNull
+    @Schema(description = "Current phase of the task.")
+    private TaskPhase phase;
+
+    @Schema(description = "Name of the tofu-maker node which runs the task.")
+    private String node;
+
+    @Schema(description = "Time when the task was accepted.")
+    private OffsetDateTime acceptedTime;
+
+    @Schema(description = "Time when the task entered the current phase.")
+    private OffsetDateTime phaseStartedTime;
+
+    @Schema(description = "Time when the task finished.")
+    private OffsetDateTime finishedTime;
+}
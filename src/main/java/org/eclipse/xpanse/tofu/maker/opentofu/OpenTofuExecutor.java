@@ -16,6 +16,9 @@ import java.util.Map;
 import java.util.Objects;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
+import org.eclipse.xpanse.tofu.maker.async.TaskSlotLimiter;
+import org.eclipse.xpanse.tofu.maker.async.TaskStatusRegistry;
+import org.eclipse.xpanse.tofu.maker.models.enums.TaskPhase;
 import org.eclipse.xpanse.tofu.maker.models.exceptions.OpenTofuExecutorException;
 import org.eclipse.xpanse.tofu.maker.opentofu.utils.SystemCmd;
 import org.eclipse.xpanse.tofu.maker.opentofu.utils.SystemCmdResult;
@@ -37,6 +40,10 @@ public class OpenTofuExecutor {
 
     private final SystemCmd systemCmd;
 
+    private final TaskSlotLimiter taskSlotLimiter;
+
+    private final TaskStatusRegistry taskStatusRegistry;
+
     private final boolean isStdoutStdErrLoggingEnabled;
 
     private final String customOpenTofuBinary;
@@ -47,6 +54,8 @@ public class OpenTofuExecutor {
      * Constructor for the OpenTofuExecutor bean.
      *
      * @param systemCmd SystemCmd bean
+     * @param taskSlotLimiter TaskSlotLimiter bean
+     * @param taskStatusRegistry TaskStatusRegistry bean
      * @param isStdoutStdErrLoggingEnabled value of `log.openTofu.stdout.stderr` property
      * @param customOpenTofuBinary value of `openTofu.binary.location` property
      * @param openTofuLogLevel value of `openTofu.log.level` property
@@ -54,72 +63,119 @@ public class OpenTofuExecutor {
     @Autowired
     public OpenTofuExecutor(
             SystemCmd systemCmd,
+            TaskSlotLimiter taskSlotLimiter,
+            TaskStatusRegistry taskStatusRegistry,
             @Value("${log.opentofu.stdout.stderr:true}") boolean isStdoutStdErrLoggingEnabled,
             @Value("${opentofu.binary.location}") String customOpenTofuBinary,
             @Value("${opentofu.log.level}") String openTofuLogLevel) {
         this.systemCmd = systemCmd;
+        this.taskSlotLimiter = taskSlotLimiter;
+        this.taskStatusRegistry = taskStatusRegistry;
         this.customOpenTofuBinary = customOpenTofuBinary;
         this.isStdoutStdErrLoggingEnabled = isStdoutStdErrLoggingEnabled;
         this.openTofuLogLevel = openTofuLogLevel;
     }
 
-    /** OpenTofu executes init, plan and destroy commands. */
+    /** OpenTofu executes init, plan and destroy commands while holding one execution slot. */
     public SystemCmdResult tfDestroy(
             String executorPath,
             Map<String, Object> variables,
             Map<String, String> envVariables,
             String taskWorkspace) {
-        tfPlan(executorPath, variables, envVariables, taskWorkspace);
-        SystemCmdResult applyResult =
-                tfDestroyCommand(executorPath, variables, envVariables, taskWorkspace);
-        if (!applyResult.isCommandSuccessful()) {
-            log.error("TFExecutor.tfDestroy failed.");
-            throw new OpenTofuExecutorException(
-                    "TFExecutor.tfDestroy failed.", applyResult.getCommandStdError());
-        }
-        return applyResult;
+        return taskSlotLimiter.runWithSlot(
+                TaskSlotLimiter.Operation.DESTROY,
+                () -> {
+                    tfPlan(executorPath, variables, envVariables, taskWorkspace);
+                    SystemCmdResult applyResult =
+                            tfDestroyCommand(executorPath, variables, envVariables, taskWorkspace);
+                    if (!applyResult.isCommandSuccessful()) {
+                        log.error("TFExecutor.tfDestroy failed.");
+                        throw new OpenTofuExecutorException(
+                                "TFExecutor.tfDestroy failed.", applyResult.getCommandStdError());
+                    }
+                    return applyResult;
+                });
     }
 
-    /** OpenTofu executes init, plan and apply commands. */
+    /** OpenTofu executes init, plan and apply commands while holding one execution slot. */
     public SystemCmdResult tfApply(
             String executorPath,
             Map<String, Object> variables,
             Map<String, String> envVariables,
             String taskWorkspace) {
-        tfPlan(executorPath, variables, envVariables, taskWorkspace);
-        SystemCmdResult applyResult =
-                tfApplyCommand(executorPath, variables, envVariables, taskWorkspace);
-        if (!applyResult.isCommandSuccessful()) {
-            log.error("TFExecutor.tfApply failed.");
-            throw new OpenTofuExecutorException(
-                    "TFExecutor.tfApply failed.", applyResult.getCommandStdError());
-        }
-        return applyResult;
+        return taskSlotLimiter.runWithSlot(
+                TaskSlotLimiter.Operation.APPLY,
+                () -> {
+                    tfPlan(executorPath, variables, envVariables, taskWorkspace);
+                    SystemCmdResult applyResult =
+                            tfApplyCommand(executorPath, variables, envVariables, taskWorkspace);
+                    if (!applyResult.isCommandSuccessful()) {
+                        log.error("TFExecutor.tfApply failed.");
+                        throw new OpenTofuExecutorException(
+                                "TFExecutor.tfApply failed.", applyResult.getCommandStdError());
+                    }
+                    return applyResult;
+                });
     }
 
-    /** OpenTofu executes init and plan commands. */
+    /** OpenTofu executes init and plan commands while holding one execution slot. */
     public SystemCmdResult tfPlan(
             String executorPath,
             Map<String, Object> variables,
             Map<String, String> envVariables,
             String taskWorkspace) {
-        tfInit(executorPath, taskWorkspace);
-        SystemCmdResult planResult =
-                tfPlanCommand(executorPath, variables, envVariables, taskWorkspace);
-        if (!planResult.isCommandSuccessful()) {
-            log.error("TFExecutor.tfPlan failed.");
-            throw new OpenTofuExecutorException(
-                    "TFExecutor.tfPlan failed.", planResult.getCommandStdError());
-        }
-        return planResult;
+        return taskSlotLimiter.runWithSlot(
+                TaskSlotLimiter.Operation.PLAN,
+                () -> {
+                    tfInit(executorPath, taskWorkspace);
+                    SystemCmdResult planResult =
+                            tfPlanCommand(executorPath, variables, envVariables, taskWorkspace);
+                    if (!planResult.isCommandSuccessful()) {
+                        log.error("TFExecutor.tfPlan failed.");
+                        throw new OpenTofuExecutorException(
+                                "TFExecutor.tfPlan failed.", planResult.getCommandStdError());
+                    }
+                    return planResult;
+                });
     }
 
-    /** Method to execute openTofu plan and get the plan as a json string. */
+    /**
+     * Method to execute openTofu plan and get the plan as a json string, while holding one
+     * execution slot.
+     */
     public String getOpenTofuPlanAsJson(
             String executorPath,
             Map<String, Object> variables,
             Map<String, String> envVariables,
             String taskWorkspace) {
+        return taskSlotLimiter.runWithSlot(
+                TaskSlotLimiter.Operation.PLAN,
+                () ->
+                        getOpenTofuPlanAsJsonWithSlot(
+                                executorPath, variables, envVariables, taskWorkspace));
+    }
+
+    /** OpenTofu executes the init and validate commands. */
+    public SystemCmdResult tfValidate(String executorPath, String taskWorkspace) {
+        return taskSlotLimiter.runWithSlot(
+                TaskSlotLimiter.Operation.VALIDATE,
+                () -> tfValidateWithoutSlot(executorPath, taskWorkspace));
+    }
+
+    /**
+     * OpenTofu executes the init and validate commands without waiting for an execution slot, so
+     * that health checks are answered while all slots are held by long running tasks.
+     */
+    public SystemCmdResult tfValidateWithoutSlot(String executorPath, String taskWorkspace) {
+        tfInit(executorPath, taskWorkspace);
+        return tfValidateCommand(executorPath, taskWorkspace);
+    }
+
+    private String getOpenTofuPlanAsJsonWithSlot(
+            String executorPath,
+            Map<String, Object> variables,
+            Map<String, String> envVariables,
+            String taskWorkspace) {
         tfInit(executorPath, taskWorkspace);
         SystemCmdResult tfPlanResult =
                 executeWithVariables(
@@ -148,12 +204,6 @@ public class OpenTofuExecutor {
         return planJsonResult.getCommandStdOutput();
     }
 
-    /** OpenTofu executes the init command. */
-    public SystemCmdResult tfValidate(String executorPath, String taskWorkspace) {
-        tfInit(executorPath, taskWorkspace);
-        return tfValidateCommand(executorPath, taskWorkspace);
-    }
-
     /** OpenTofu executes the init command. */
     public void tfInit(String executorPath, String taskWorkspace) {
         SystemCmdResult initResult = tfInitCommand(executorPath, taskWorkspace);
@@ -170,6 +220,7 @@ public class OpenTofuExecutor {
      * @return Returns result of SystemCmd executed.
      */
     private SystemCmdResult tfInitCommand(String executorPath, String taskWorkspace) {
+        taskStatusRegistry.updatePhaseOfCurrentTask(TaskPhase.INIT);
         return execute(
                 getOpenTofuCommand(executorPath, "init -no-color"), taskWorkspace, new HashMap<>());
     }
@@ -196,6 +247,7 @@ public class OpenTofuExecutor {
             Map<String, Object> variables,
             Map<String, String> envVariables,
             String taskWorkspace) {
+        taskStatusRegistry.updatePhaseOfCurrentTask(TaskPhase.PLAN);
         return executeWithVariables(
                 new StringBuilder(getOpenTofuCommand(executorPath, "plan -input=false -no-color ")),
                 variables,
@@ -213,6 +265,7 @@ public class OpenTofuExecutor {
             Map<String, Object> variables,
             Map<String, String> envVariables,
             String taskWorkspace) {
+        taskStatusRegistry.updatePhaseOfCurrentTask(TaskPhase.APPLY);
         return executeWithVariables(
                 new StringBuilder(
                         getOpenTofuCommand(
@@ -232,6 +285,7 @@ public class OpenTofuExecutor {
             Map<String, Object> variables,
             Map<String, String> envVariables,
             String taskWorkspace) {
+        taskStatusRegistry.updatePhaseOfCurrentTask(TaskPhase.DESTROY);
         return executeWithVariables(
                 new StringBuilder(executorPath + " destroy -auto-approve -input=false -no-color "),
                 variables,
@@ -13,6 +13,11 @@ import java.util.List;
 import java.util.UUID;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.eclipse.xpanse.tofu.maker.async.OpenTofuTaskJournal;
+import org.eclipse.xpanse.tofu.maker.async.OpenTofuTaskScheduler;
+import org.eclipse.xpanse.tofu.maker.async.TaskAdmissionController;
+import org.eclipse.xpanse.tofu.maker.async.TaskDeduplicator;
+import org.eclipse.xpanse.tofu.maker.async.TaskStatusRegistry;
 import org.eclipse.xpanse.tofu.maker.models.enums.RequestType;
 import org.eclipse.xpanse.tofu.maker.models.exceptions.InvalidOpenTofuRequestException;
 import org.eclipse.xpanse.tofu.maker.models.exceptions.UnsupportedEnumValueException;
@@ -39,8 +44,15 @@ import org.springframework.util.CollectionUtils;
 @Service
 public class OpenTofuRequestService {
 
+    private static final String HTTP_REQUEST_SOURCE = "http";
+
     @Resource private OpenTofuScriptsDirectoryService scriptsDirectoryService;
     @Resource private OpenTofuScriptsDirectoryHelper scriptsDirectoryHelper;
+    @Resource private TaskAdmissionController admissionController;
+    @Resource private OpenTofuTaskScheduler taskScheduler;
+    @Resource private OpenTofuTaskJournal taskJournal;
+    @Resource private TaskStatusRegistry taskStatusRegistry;
+    @Resource private TaskDeduplicator taskDeduplicator;
 
     /** Handle the request of health check. */
     public TofuMakerSystemStatus healthCheck(UUID requestId) {
@@ -55,9 +67,11 @@ public class OpenTofuRequestService {
      * @return OpenTofuValidationResult.
      */
     public OpenTofuValidationResult handleOpenTofuValidateRequest(OpenTofuRequest request) {
-        OpenTofuRequestWithScriptsDirectory requestWithDirectory =
-                convertRequestWithScriptsDirectory(request);
-        return scriptsDirectoryService.tfValidateWithScriptsDirectory(requestWithDirectory);
+        return taskDeduplicator.runOnce(
+                request,
+                () ->
+                        scriptsDirectoryService.tfValidateWithScriptsDirectory(
+                                convertRequestWithScriptsDirectory(request)));
     }
 
     /**
@@ -67,9 +81,11 @@ public class OpenTofuRequestService {
      * @return OpenTofuPlan.
      */
     public OpenTofuPlan handleOpenTofuPlanRequest(OpenTofuRequest request) {
-        OpenTofuRequestWithScriptsDirectory requestWithDirectory =
-                convertRequestWithScriptsDirectory(request);
-        return scriptsDirectoryService.getOpenTofuPlanWithScriptsDirectory(requestWithDirectory);
+        return taskDeduplicator.runOnce(
+                request,
+                () ->
+                        scriptsDirectoryService.getOpenTofuPlanWithScriptsDirectory(
+                                convertRequestWithScriptsDirectory(request)));
     }
 
     /**
@@ -79,6 +95,10 @@ public class OpenTofuRequestService {
      * @return OpenTofuResult.
      */
     public OpenTofuResult handleOpenTofuDeploymentRequest(OpenTofuRequest request) {
+        return taskDeduplicator.runOnce(request, () -> runDeploymentRequest(request));
+    }
+
+    private OpenTofuResult runDeploymentRequest(OpenTofuRequest request) {
         OpenTofuRequestWithScriptsDirectory requestWithDirectory =
                 convertRequestWithScriptsDirectory(request);
         switch (request.getRequestType()) {
@@ -105,22 +125,65 @@ public class OpenTofuRequestService {
      * @param request request.
      */
     public void processAsyncDeploymentRequest(OpenTofuRequest request) {
+        MDC.put(REQUEST_ID, request.getRequestId().toString());
+        if (!taskStatusRegistry.tryQueued(request)) {
+            log.info(
+                    "Request {} is already known in phase {}, not starting it again.",
+                    request.getRequestId(),
+                    taskStatusRegistry.getStatus(request.getRequestId()).getPhase());
+            return;
+        }
+        try {
+            admissionController.admit(request.getRequestId(), HTTP_REQUEST_SOURCE);
+        } catch (RuntimeException e) {
+            taskStatusRegistry.remove(request.getRequestId());
+            throw e;
+        }
+        try {
+            scheduleAsyncDeploymentRequest(request);
+        } catch (RuntimeException e) {
+            taskStatusRegistry.remove(request.getRequestId());
+            admissionController.completed(request.getRequestId());
+            throw e;
+        }
+    }
+
+    private void scheduleAsyncDeploymentRequest(OpenTofuRequest request) {
         OpenTofuAsyncRequestWithScriptsDirectory requestWithDirectory =
                 (OpenTofuAsyncRequestWithScriptsDirectory)
                         convertRequestWithScriptsDirectory(request);
-        switch (request.getRequestType()) {
+        Runnable task = getAsyncTask(requestWithDirectory);
+        taskJournal.accepted(requestWithDirectory);
+        taskScheduler.schedule(requestWithDirectory, task);
+    }
+
+    /**
+     * Schedule again an async task which was accepted but not started before the last restart.
+     * The task must already be admitted and recorded in the task journal. The script files are
+     * not recorded in the journal, they are read again from the workspace of the task.
+     *
+     * @param request request of the recovered task.
+     */
+    public void scheduleRecoveredTask(OpenTofuAsyncRequestWithScriptsDirectory request) {
+        setScriptFilesFromScriptsDirectory(request);
+        taskStatusRegistry.queued(request);
+        taskScheduler.schedule(request, getAsyncTask(request));
+    }
+
+    private Runnable getAsyncTask(OpenTofuAsyncRequestWithScriptsDirectory request) {
+        return switch (request.getRequestType()) {
             case RequestType.DEPLOY ->
-                    scriptsDirectoryService.asyncDeployWithScriptsDirectory(requestWithDirectory);
+                    () -> scriptsDirectoryService.asyncDeployWithScriptsDirectory(request);
             case RequestType.MODIFY ->
-                    scriptsDirectoryService.asyncModifyWithScriptsDirectory(requestWithDirectory);
+                    () -> scriptsDirectoryService.asyncModifyWithScriptsDirectory(request);
             case RequestType.DESTROY ->
-                    scriptsDirectoryService.asyncDestroyWithScriptsDirectory(requestWithDirectory);
+                    () -> scriptsDirectoryService.asyncDestroyWithScriptsDirectory(request);
             default ->
                     throw new UnsupportedEnumValueException(
                             String.format(
                                     "RequestType value %s is not supported.",
                                     request.getRequestType().toValue()));
-        }
+        };
     }
 
     private OpenTofuRequestWithScriptsDirectory convertRequestWithScriptsDirectory(
@@ -159,19 +222,23 @@ public class OpenTofuRequestService {
             }
         }
         if (request instanceof OpenTofuRequestWithScriptsDirectory requestWithDirectory) {
-            List<File> scriptFiles =
-                    scriptsDirectoryHelper.getDeploymentFilesFromTaskWorkspace(
-                            requestWithDirectory.getScriptsDirectory());
-            if (CollectionUtils.isEmpty(scriptFiles)) {
-                String errorMessage =
-                        String.format(
-                                "No OpenTofu scripts files found in the directory %s.",
-                                requestWithDirectory.getScriptsDirectory());
-                log.error(errorMessage);
-                throw new InvalidOpenTofuRequestException(errorMessage);
-            }
-            requestWithDirectory.setScriptFiles(scriptFiles);
+            setScriptFilesFromScriptsDirectory(requestWithDirectory);
+        }
+    }
+
+    private void setScriptFilesFromScriptsDirectory(OpenTofuRequestWithScriptsDirectory request) {
+        List<File> scriptFiles =
+                scriptsDirectoryHelper.getDeploymentFilesFromTaskWorkspace(
+                        request.getScriptsDirectory());
+        if (CollectionUtils.isEmpty(scriptFiles)) {
+            String errorMessage =
+                    String.format(
+                            "No OpenTofu scripts files found in the directory %s.",
+                            request.getScriptsDirectory());
+            log.error(errorMessage);
+            throw new InvalidOpenTofuRequestException(errorMessage);
         }
+        request.setScriptFiles(scriptFiles);
     }
 
     /**
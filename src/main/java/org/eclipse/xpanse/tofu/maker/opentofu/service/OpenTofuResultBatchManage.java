@@ -0,0 +1,123 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.opentofu.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import jakarta.annotation.Resource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.xpanse.tofu.maker.models.response.ReFetchResult;
+import org.eclipse.xpanse.tofu.maker.models.response.ReFetchState;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Batch retrieval of the stored results. The results are read in parallel on virtual threads,
+ * and each result is written to the response as soon as it is read, in the order the reads
+ * complete. A read holds its permit until its result is written, so that at most {@code
+ * parallelism} results are held in memory when the client reads the response slowly. The
+ * results are removed only after the whole response was written, so that they can be fetched
+ * again when the response fails.
+ */
+@Slf4j
+@Component
+public class OpenTofuResultBatchManage {
+
+    @Resource private OpenTofuResultPersistenceManage resultPersistenceManage;
+    @Resource private ObjectMapper objectMapper;
+
+    @Value("${tofu.maker.result.batch.parallelism:8}")
+    private int parallelism;
+
+    /**
+     * Read the results and write them to the output, then remove the results delivered.
+     *
+     * @param requestIds ids of the requests.
+     * @param output output of the response.
+     * @param isNdjson true to write one result per line, false to write a JSON array.
+     * @throws IOException if writing the response failed, the results are kept then.
+     */
+    public void writeResults(List<UUID> requestIds, OutputStream output, boolean isNdjson)
+            throws IOException {
+        BlockingQueue<ReFetchResult> readResults = new LinkedBlockingQueue<>();
+        Semaphore permits = new Semaphore(Math.max(1, parallelism));
+        List<UUID> deliveredRequestIds = new ArrayList<>();
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            for (UUID requestId : requestIds) {
+                executor.execute(() -> readResult(requestId, permits, readResults));
+            }
+            ObjectWriter writer =
+                    objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            try (SequenceWriter sequenceWriter =
+                    isNdjson
+                            ? writer.withRootValueSeparator("\n").writeValues(output)
+                            : writer.writeValuesAsArray(output)) {
+                for (int i = 0; i < requestIds.size(); i++) {
+                    ReFetchResult reFetchResult = readResults.take();
+                    sequenceWriter.write(reFetchResult);
+                    permits.release();
+                    if (ReFetchState.OK == reFetchResult.getState()) {
+                        deliveredRequestIds.add(reFetchResult.getRequestId());
+                    }
+                }
+            }
+            if (isNdjson) {
+                output.write('\n');
+            }
+            output.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted writing results.", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        deliveredRequestIds.forEach(resultPersistenceManage::removeOpenTofuResult);
+        log.info(
+                "Delivered {} of {} requested results.",
+                deliveredRequestIds.size(),
+                requestIds.size());
+    }
+
+    private void readResult(
+            UUID requestId, Semaphore permits, BlockingQueue<ReFetchResult> readResults) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            return;
+        }
+        ReFetchResult reFetchResult = null;
+        try {
+            reFetchResult = resultPersistenceManage.readOpenTofuResultByRequestId(requestId);
+        } catch (RuntimeException e) {
+            log.error("Read result {} failed.", requestId, e);
+        } finally {
+            // the writer waits for one result per request, also when the read threw an error.
+            readResults.add(
+                    Objects.nonNull(reFetchResult)
+                            ? reFetchResult
+                            : ReFetchResult.builder()
+                                    .requestId(requestId)
+                                    .state(ReFetchState.RESULT_PARSE_FAILED)
+                                    .errorMessage(
+                                            "Failed to read result for requestId " + requestId)
+                                    .build());
+        }
+    }
+}
@@ -5,18 +5,41 @@
 
 package org.eclipse.xpanse.tofu.maker.opentofu.service;
 
+import static org.eclipse.xpanse.tofu.maker.cache.CaffeineCacheConfig.OPENTOFU_RESULT_CACHE_NAME;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.annotation.Resource;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.xpanse.tofu.maker.async.TaskStatusRegistry;
+import org.eclipse.xpanse.tofu.maker.cache.CachedOpenTofuResult;
 import org.eclipse.xpanse.tofu.maker.models.response.OpenTofuResult;
+import org.eclipse.xpanse.tofu.maker.models.response.OpenTofuResultNotification;
 import org.eclipse.xpanse.tofu.maker.models.response.ReFetchResult;
 import org.eclipse.xpanse.tofu.maker.models.response.ReFetchState;
 import org.eclipse.xpanse.tofu.maker.utils.OpenTofuResultSerializer;
+import org.eclipse.xpanse.tofu.maker.webhook.WebhookOutbox;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 /** OpenTofu service classes are manage task result. */
@@ -25,66 +48,96 @@ import org.springframework.stereotype.Component;
 public class OpenTofuResultPersistenceManage {
 
     private static final String TF_RESULT_FILE_SUFFIX = ".dat";
-    private static final String TF_LOCK_FILE_NAME = ".terraform.tfstate.lock.info";
+    private static final String TF_RESULT_CONTENT_FILE_SUFFIX = ".json";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final String RESULT_CONTENT_PATH = "/tofu-maker/task/result/%s/content";
 
     @Value("${failed.callback.response.store.location}")
     private String failedCallbackStoreLocation;
 
-    @Resource private OpenTofuScriptsDirectoryHelper scriptsHelper;
+    @Value("${tofu.maker.result.content.retention.seconds:86400}")
+    private long resultContentRetentionSeconds;
+
+    @Resource private TaskStatusRegistry taskStatusRegistry;
     @Resource private OpenTofuResultSerializer openTofuResultSerializer;
+    @Resource private OpenTofuResultSegmentStore resultSegmentStore;
+    @Resource private CacheManager cacheManager;
+    @Resource private ObjectMapper objectMapper;
+    @Lazy @Resource private WebhookOutbox webhookOutbox;
 
     /**
-     * When the tofu-maker callback fails, store the OpenTofuResult in the local file system.
+     * When the tofu-maker callback fails, store the OpenTofuResult in the result store. The result
+     * is also kept in the result cache once it is durable, as it is usually fetched soon.
      *
      * @param result OpenTofuResult.
+     * @throws IOException if the result could not be stored durably.
      */
-    public void persistOpenTofuResult(OpenTofuResult result) {
-        File filePath = getFilePath(result.getRequestId());
-        if (!filePath.exists() && !filePath.mkdirs()) {
-            log.error("Failed to create directory {}", filePath);
-            return;
-        }
-        File file = new File(filePath, getFileName(result.getRequestId()));
-        byte[] openTofuResultData = openTofuResultSerializer.serialize(result);
-        try (FileOutputStream fos = new FileOutputStream(file)) {
-            fos.write(openTofuResultData);
-            log.info(
-                    "openTofu result successfully stored to directoryName: {}",
-                    result.getRequestId());
-        } catch (IOException e) {
-            String errorMsg =
-                    String.format(
-                            "storing openTofu result to " + "directoryName %s failed. %s",
-                            result.getRequestId(), e);
-            log.error(errorMsg);
-        }
+    public void persistOpenTofuResult(OpenTofuResult result) throws IOException {
+        byte[] resultData = openTofuResultSerializer.serialize(result);
+        resultSegmentStore.put(result.getRequestId(), resultData);
+        cacheResult(result, openTofuResultSerializer.getSerializedSize(resultData));
+        log.info("openTofu result {} successfully stored.", result.getRequestId());
     }
 
     /**
-     * Get the OpenTofuResult object stored when the tofu-maker callback fails by RequestId.
+     * Get the OpenTofuResult object stored when the tofu-maker callback fails by RequestId. A
+     * result still waiting for a retry of its callback is taken out of the webhook outbox.
      *
      * @param requestId requestId.
      * @return OpenTofuResult.
      */
     public ReFetchResult retrieveOpenTofuResultByRequestId(UUID requestId) {
+        ReFetchResult reFetchResult = readOpenTofuResultByRequestId(requestId);
+        if (ReFetchState.OK == reFetchResult.getState()) {
+            removeOpenTofuResult(requestId);
+        }
+        return reFetchResult;
+    }
+
+    /**
+     * Get the stored OpenTofuResult object by RequestId without removing it, so that it can be
+     * removed once it was delivered to the caller.
+     *
+     * @param requestId requestId.
+     * @return OpenTofuResult.
+     */
+    public ReFetchResult readOpenTofuResultByRequestId(UUID requestId) {
+        OpenTofuResult pendingResult = webhookOutbox.peek(requestId);
+        if (Objects.nonNull(pendingResult)) {
+            log.info("Result {} found in the webhook outbox.", requestId);
+            return buildOkResponse(requestId, pendingResult);
+        }
+        CachedOpenTofuResult cachedResult =
+                getResultCache().get(requestId, CachedOpenTofuResult.class);
+        if (Objects.nonNull(cachedResult)) {
+            return buildOkResponse(requestId, cachedResult.result());
+        }
+        try {
+            byte[] resultData = resultSegmentStore.get(requestId);
+            if (Objects.nonNull(resultData)) {
+                OpenTofuResult openTofuResult = openTofuResultSerializer.deserialize(resultData);
+                cacheResult(
+                        openTofuResult, openTofuResultSerializer.getSerializedSize(resultData));
+                return buildOkResponse(requestId, openTofuResult);
+            }
+        } catch (Exception e) {
+            String errorMsg =
+                    String.format("Failed to read stored result for requestId %s", requestId);
+            return buildErrorResponse(requestId, errorMsg, ReFetchState.RESULT_PARSE_FAILED);
+        }
+        // result files written before the result store was introduced.
         File resultFile = new File(getFilePath(requestId), getFileName(requestId));
         if (!isValidResultFile(resultFile)) {
             String errorMsg = String.format("Not found result file for requestId %s.", requestId);
-            if (isDeployingInProgress(requestId)) {
+            if (taskStatusRegistry.isInProgress(requestId)) {
                 errorMsg = errorMsg + " The order is still in progress.";
                 return buildErrorResponse(requestId, errorMsg, ReFetchState.ORDER_IN_PROGRESS);
             }
             return buildErrorResponse(requestId, errorMsg, ReFetchState.RESULT_NOT_FOUND);
         }
         try (FileInputStream fis = new FileInputStream(resultFile)) {
-            OpenTofuResult openTofuResult =
-                    openTofuResultSerializer.deserialize(fis.readAllBytes());
-            deleteResultFileAndDirectory(resultFile);
-            return ReFetchResult.builder()
-                    .requestId(requestId)
-                    .state(ReFetchState.OK)
-                    .openTofuResult(openTofuResult)
-                    .build();
+            return buildOkResponse(
+                    requestId, openTofuResultSerializer.deserialize(fis.readAllBytes()));
         } catch (Exception e) {
             String errorMsg =
                     String.format("Failed to parse result file for requestId %s", requestId);
@@ -92,6 +145,124 @@ public class OpenTofuResultPersistenceManage {
         }
     }
 
+    /**
+     * Remove the stored OpenTofuResult object after it was delivered to the caller. A result
+     * still waiting for a retry of its callback is taken out of the webhook outbox.
+     *
+     * @param requestId requestId.
+     */
+    public void removeOpenTofuResult(UUID requestId) {
+        webhookOutbox.claim(requestId);
+        getResultCache().evict(requestId);
+        resultSegmentStore.remove(requestId);
+        File resultFile = new File(getFilePath(requestId), getFileName(requestId));
+        if (isValidResultFile(resultFile)) {
+            deleteResultFileAndDirectory(resultFile);
+        }
+    }
+
+    /**
+     * Store the full OpenTofuResult as JSON, to be fetched by the caller instead of receiving it
+     * with the callback, and build the notification which is sent instead.
+     *
+     * @param result OpenTofuResult.
+     * @return notification with the summary of the result.
+     * @throws IOException if the result could not be stored.
+     */
+    public OpenTofuResultNotification storeOpenTofuResultContent(OpenTofuResult result)
+            throws IOException {
+        UUID requestId = result.getRequestId();
+        File filePath = getFilePath(requestId);
+        if (!filePath.exists() && !filePath.mkdirs()) {
+            throw new IOException("Failed to create directory " + filePath);
+        }
+        Path file = new File(filePath, getContentFileName(requestId)).toPath();
+        Path tempFile = file.resolveSibling(file.getFileName() + TEMP_FILE_SUFFIX);
+        MessageDigest digest = DigestUtils.getSha256Digest();
+        try (OutputStream output =
+                new DigestOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(tempFile)), digest)) {
+            objectMapper.writeValue(output, result);
+        }
+        Files.move(
+                tempFile,
+                file,
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        Map<String, String> generatedFiles = result.getGeneratedFileContentMap();
+        return OpenTofuResultNotification.builder()
+                .requestId(requestId)
+                .isCommandSuccessful(result.isCommandSuccessful())
+                .openTofuVersionUsed(result.getOpenTofuVersionUsed())
+                .commandStdOutputLength(StringUtils.length(result.getCommandStdOutput()))
+                .commandStdErrorLength(StringUtils.length(result.getCommandStdError()))
+                .terraformStateLength(StringUtils.length(result.getTerraformState()))
+                .generatedFileCount(Objects.nonNull(generatedFiles) ? generatedFiles.size() : 0)
+                .resultSize(Files.size(file))
+                .resultDigest(Hex.encodeHexString(digest.digest()))
+                .resultPath(String.format(RESULT_CONTENT_PATH, requestId))
+                .build();
+    }
+
+    /**
+     * Get the file of the full OpenTofuResult stored to be fetched by the caller.
+     *
+     * @param requestId requestId.
+     * @return file with the result as JSON, or null when there is none.
+     */
+    public File getOpenTofuResultContentFile(UUID requestId) {
+        File file = new File(getFilePath(requestId), getContentFileName(requestId));
+        return isValidResultFile(file) ? file : null;
+    }
+
+    /**
+     * Remove the full results stored to be fetched which are older than the retention period,
+     * together with the directories of the requests which are left empty.
+     */
+    @Scheduled(fixedDelay = 10, timeUnit = TimeUnit.MINUTES)
+    public void removeExpiredResultContents() {
+        File[] directories = new File(failedCallbackStoreLocation).listFiles(File::isDirectory);
+        if (Objects.isNull(directories)) {
+            return;
+        }
+        long expiry =
+                System.currentTimeMillis()
+                        - TimeUnit.SECONDS.toMillis(resultContentRetentionSeconds);
+        for (File directory : directories) {
+            File[] contentFiles =
+                    directory.listFiles(
+                            (dir, name) -> name.endsWith(TF_RESULT_CONTENT_FILE_SUFFIX));
+            if (Objects.isNull(contentFiles)) {
+                continue;
+            }
+            for (File contentFile : contentFiles) {
+                if (contentFile.lastModified() < expiry) {
+                    deleteResultFileAndDirectory(contentFile);
+                }
+            }
+            // directories emptied before their parent was removed with the result file.
+            if (directory.lastModified() < expiry) {
+                deleteEmptyDirectory(directory);
+            }
+        }
+    }
+
+    private void cacheResult(OpenTofuResult result, int size) {
+        getResultCache().put(result.getRequestId(), new CachedOpenTofuResult(result, size));
+    }
+
+    private Cache getResultCache() {
+        return Objects.requireNonNull(cacheManager.getCache(OPENTOFU_RESULT_CACHE_NAME));
+    }
+
+    private ReFetchResult buildOkResponse(UUID requestId, OpenTofuResult openTofuResult) {
+        return ReFetchResult.builder()
+                .requestId(requestId)
+                .state(ReFetchState.OK)
+                .openTofuResult(openTofuResult)
+                .build();
+    }
+
     private ReFetchResult buildErrorResponse(
             UUID requestId, String errorMessage, ReFetchState state) {
         log.error(errorMessage);
@@ -106,21 +277,24 @@ public class OpenTofuResultPersistenceManage {
         return file.exists() && file.isFile();
     }
 
-    private boolean isDeployingInProgress(UUID requestId) {
-        File workspace = scriptsHelper.getTaskWorkspace(requestId.toString());
-        File targetFile = new File(workspace, TF_LOCK_FILE_NAME);
-        return targetFile.exists() && targetFile.isFile();
-    }
-
+    /** Delete the result file and the directory of its request when no other file is left. */
     private void deleteResultFileAndDirectory(File resultFile) {
         try {
             deleteRecursively(resultFile);
+            deleteEmptyDirectory(resultFile.getParentFile());
             log.info("File folder deleted successfully: {}", resultFile.getAbsolutePath());
         } catch (Exception e) {
             log.error("An error occurred while deleting files: {}", e.getMessage());
         }
     }
 
+    private void deleteEmptyDirectory(File directory) {
+        String[] files = directory.list();
+        if (Objects.nonNull(files) && files.length == 0 && directory.delete()) {
+            log.info("Directory deleted successfully: {}", directory.getAbsolutePath());
+        }
+    }
+
     private void deleteRecursively(File file) {
         if (file.isDirectory()) {
             File[] files = file.listFiles();
@@ -142,4 +316,8 @@ public class OpenTofuResultPersistenceManage {
     private String getFileName(UUID requestId) {
         return requestId + TF_RESULT_FILE_SUFFIX;
     }
+
+    private String getContentFileName(UUID requestId) {
+        return requestId + TF_RESULT_CONTENT_FILE_SUFFIX;
+    }
 }
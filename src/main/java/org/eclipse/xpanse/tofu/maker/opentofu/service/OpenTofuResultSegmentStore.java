@@ -0,0 +1,602 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.opentofu.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Embedded store of the serialized results, made of append-only segment files and an in-memory
+ * index from the request id to the position of its latest record. Deleting a result appends a
+ * tombstone record. When the active segment is full, it is sealed and memory-mapped for reads,
+ * and a new segment is started.
+ *
+ * <p>Records are written by a single writer thread, which writes all records waiting when it
+ * wakes up with one fsync. Expired results are not returned. The compaction moves the live
+ * records of the oldest segments to the active segment and deletes these segments once less
+ * than half of their bytes are live. As only the oldest segments are deleted, no older record of
+ * a deleted result is left behind when its tombstone is dropped. The index is rebuilt by reading
+ * the segments on startup, and a record torn by a crash is cut off the end of the last segment.
+ */
+@Slf4j
+@Component
+public class OpenTofuResultSegmentStore {
+
+    private static final String STORE_DIRECTORY_NAME = "tofu-maker-result-store";
+    private static final String SEGMENT_FILE_PREFIX = "segment-";
+    private static final String SEGMENT_FILE_SUFFIX = ".seg";
+    // type, request id, timestamp, data length and CRC32C of the header and the data.
+    private static final int HEADER_SIZE = 1 + 2 * Long.BYTES + Long.BYTES + 2 * Integer.BYTES;
+    private static final int MAX_BATCH_SIZE = 1024;
+    private static final byte[] NO_DATA = new byte[0];
+
+    private final Map<UUID, RecordLocation> index = new ConcurrentHashMap<>();
+    private final NavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final BlockingQueue<PendingRecord> pendingRecords = new LinkedBlockingQueue<>();
+    private final Path storeDirectory;
+    private final long segmentMaxBytes;
+    private final long retentionMillis;
+    private final long writeTimeoutMillis;
+    private final MeterRegistry meterRegistry;
+    private Segment activeSegment;
+    private volatile Thread writer;
+
+    /**
+     * Constructor for the OpenTofuResultSegmentStore bean.
+     *
+     * @param storeLocation value of `failed.callback.response.store.location` property.
+     * @param segmentMaxBytes value of `tofu.maker.result.store.segment.max.bytes` property.
+     * @param retentionSeconds value of `tofu.maker.result.store.retention.seconds` property.
+     * @param writeTimeoutMillis value of `tofu.maker.result.store.write.timeout.millis` property.
+     * @param meterRegistry registry of the store metrics.
+     */
+    @Autowired
+    public OpenTofuResultSegmentStore(
+            @Value("${failed.callback.response.store.location}") String storeLocation,
+            @Value("${tofu.maker.result.store.segment.max.bytes:67108864}") long segmentMaxBytes,
+            @Value("${tofu.maker.result.store.retention.seconds:604800}") long retentionSeconds,
+            @Value("${tofu.maker.result.store.write.timeout.millis:5000}")
+                    long writeTimeoutMillis,
+            MeterRegistry meterRegistry) {
+        this.storeDirectory = Paths.get(storeLocation, STORE_DIRECTORY_NAME);
+        this.segmentMaxBytes = Math.clamp(segmentMaxBytes, HEADER_SIZE, Integer.MAX_VALUE);
+        this.retentionMillis = TimeUnit.SECONDS.toMillis(retentionSeconds);
+        this.writeTimeoutMillis = writeTimeoutMillis;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /** Rebuild the index from the segments and start the writer thread. */
+    @PostConstruct
+    public void open() {
+        try {
+            Files.createDirectories(storeDirectory);
+            replay();
+        } catch (IOException e) {
+            log.error("Open result store {} failed.", storeDirectory, e);
+            return;
+        }
+        Gauge.builder("tofu.maker.result.store.records", index, Map::size)
+                .description("Results in the result store.")
+                .register(meterRegistry);
+        Gauge.builder("tofu.maker.result.store.segments", segments, Map::size)
+                .description("Segment files of the result store.")
+                .register(meterRegistry);
+        writer = Thread.ofPlatform().name("tofu-result-store").daemon().start(this::write);
+        log.info(
+                "Result store {} opened with {} results in {} segments.",
+                storeDirectory,
+                index.size(),
+                segments.size());
+    }
+
+    /**
+     * Stop the writer thread after all pending records are written. The writer is stopped with a
+     * close record on the queue, as an interrupt would close the channel it is writing to.
+     */
+    @PreDestroy
+    public void close() {
+        Thread storeWriter = writer;
+        if (Objects.isNull(storeWriter)) {
+            return;
+        }
+        writer = null;
+        pendingRecords.add(
+                new PendingRecord(RecordType.CLOSE, null, 0, NO_DATA, new CompletableFuture<>()));
+        try {
+            storeWriter.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Segment segment : segments.values()) {
+            try {
+                segment.channel.close();
+            } catch (IOException e) {
+                log.error("Close result store segment {} failed.", segment.file, e);
+            }
+        }
+    }
+
+    /**
+     * Store the result. Returns when the record is durable on disk.
+     *
+     * @param requestId id of the request.
+     * @param data serialized result.
+     * @throws IOException if the record could not be written in time.
+     */
+    public void put(UUID requestId, byte[] data) throws IOException {
+        if (Objects.isNull(writer)) {
+            throw new IOException("Result store " + storeDirectory + " is not open.");
+        }
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        pendingRecords.add(
+                new PendingRecord(
+                        RecordType.PUT, requestId, System.currentTimeMillis(), data, written));
+        try {
+            written.get(writeTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted storing result " + requestId);
+        } catch (ExecutionException e) {
+            throw new IOException("Write result " + requestId + " failed.", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IOException("Write result " + requestId + " timed out.", e);
+        }
+    }
+
+    /**
+     * Get the stored result.
+     *
+     * @param requestId id of the request.
+     * @return serialized result, or null when there is none or it is expired.
+     * @throws IOException if the record could not be read.
+     */
+    public byte[] get(UUID requestId) throws IOException {
+        RecordLocation location = index.get(requestId);
+        if (Objects.isNull(location) || isExpired(location, System.currentTimeMillis())) {
+            return null;
+        }
+        return location.segment().read(location.offset(), location.length());
+    }
+
+    /**
+     * Delete the stored result. The tombstone record is written in the background.
+     *
+     * @param requestId id of the request.
+     */
+    public void remove(UUID requestId) {
+        if (Objects.nonNull(index.remove(requestId)) && Objects.nonNull(writer)) {
+            pendingRecords.add(
+                    new PendingRecord(
+                            RecordType.DELETE,
+                            requestId,
+                            System.currentTimeMillis(),
+                            NO_DATA,
+                            new CompletableFuture<>()));
+        }
+    }
+
+    /**
+     * Compact the oldest segments on the writer thread.
+     *
+     * @return future completed when the compaction is finished.
+     */
+    public CompletableFuture<Void> compact() {
+        CompletableFuture<Void> compacted = new CompletableFuture<>();
+        if (Objects.isNull(writer)) {
+            compacted.complete(null);
+        } else {
+            pendingRecords.add(new PendingRecord(RecordType.COMPACT, null, 0, NO_DATA, compacted));
+        }
+        return compacted;
+    }
+
+    /** Compact the store periodically, dropping the expired results. */
+    @Scheduled(fixedDelay = 10, timeUnit = TimeUnit.MINUTES)
+    public void compactPeriodically() {
+        compact();
+    }
+
+    private boolean isExpired(RecordLocation location, long now) {
+        return location.timestamp() < now - retentionMillis;
+    }
+
+    private void write() {
+        List<PendingRecord> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(pendingRecords.take());
+            } catch (InterruptedException e) {
+                // the writer is only stopped by the close record.
+                continue;
+            }
+            pendingRecords.drainTo(batch, MAX_BATCH_SIZE);
+            int closeIndex = 0;
+            while (closeIndex < batch.size()
+                    && batch.get(closeIndex).type() != RecordType.CLOSE) {
+                closeIndex++;
+            }
+            if (closeIndex > 0) {
+                writeBatch(batch.subList(0, closeIndex));
+            }
+            if (closeIndex < batch.size()) {
+                // records added after the close record are not written any more.
+                List<PendingRecord> rejectedRecords =
+                        new ArrayList<>(batch.subList(closeIndex, batch.size()));
+                pendingRecords.drainTo(rejectedRecords);
+                IOException e = new IOException("Result store " + storeDirectory + " is closed.");
+                rejectedRecords.forEach(
+                        pendingRecord -> pendingRecord.written().completeExceptionally(e));
+                return;
+            }
+            batch.clear();
+        }
+    }
+
+    private void writeBatch(List<PendingRecord> batch) {
+        List<RecordLocation> locations = new ArrayList<>(batch.size());
+        boolean isCompactionRequested = false;
+        try {
+            for (PendingRecord pendingRecord : batch) {
+                if (pendingRecord.type() == RecordType.COMPACT) {
+                    isCompactionRequested = true;
+                    locations.add(null);
+                } else {
+                    locations.add(
+                            append(
+                                    pendingRecord.type(),
+                                    pendingRecord.requestId(),
+                                    pendingRecord.timestamp(),
+                                    pendingRecord.data()));
+                }
+            }
+            activeSegment.channel.force(false);
+        } catch (IOException e) {
+            log.error("Write {} records to result store failed.", batch.size(), e);
+            truncateActiveSegment();
+            batch.forEach(pendingRecord -> pendingRecord.written().completeExceptionally(e));
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            PendingRecord pendingRecord = batch.get(i);
+            if (pendingRecord.type() == RecordType.PUT) {
+                index.put(pendingRecord.requestId(), locations.get(i));
+            }
+            if (pendingRecord.type() != RecordType.COMPACT) {
+                pendingRecord.written().complete(null);
+            }
+        }
+        if (isCompactionRequested) {
+            try {
+                compactSegments();
+                completeCompactions(batch, null);
+            } catch (IOException e) {
+                log.error("Compact result store failed.", e);
+                truncateActiveSegment();
+                completeCompactions(batch, e);
+            }
+        }
+    }
+
+    private RecordLocation append(RecordType type, UUID requestId, long timestamp, byte[] data)
+            throws IOException {
+        int recordSize = HEADER_SIZE + data.length;
+        if (activeSegment.size > 0 && activeSegment.size + recordSize > segmentMaxBytes) {
+            rollSegment();
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put((byte) type.ordinal())
+                .putLong(requestId.getMostSignificantBits())
+                .putLong(requestId.getLeastSignificantBits())
+                .putLong(timestamp)
+                .putInt(data.length);
+        CRC32C crc = new CRC32C();
+        crc.update(header.array(), 0, HEADER_SIZE - Integer.BYTES);
+        crc.update(data);
+        header.putInt((int) crc.getValue()).flip();
+        ByteBuffer body = ByteBuffer.wrap(data);
+        ByteBuffer[] buffers = {header, body};
+        while (header.hasRemaining() || body.hasRemaining()) {
+            activeSegment.channel.write(buffers);
+        }
+        long offset = activeSegment.size + HEADER_SIZE;
+        activeSegment.size += recordSize;
+        return new RecordLocation(activeSegment, offset, data.length, timestamp);
+    }
+
+    /** Cut a partially written record off the active segment, so that later records are read. */
+    private void truncateActiveSegment() {
+        try {
+            activeSegment.channel.truncate(activeSegment.size);
+            activeSegment.channel.position(activeSegment.size);
+        } catch (IOException e) {
+            log.error("Truncate result store segment {} failed.", activeSegment.file, e);
+        }
+    }
+
+    private void rollSegment() throws IOException {
+        activeSegment.channel.force(false);
+        activeSegment.seal();
+        activeSegment = newSegment(activeSegment.sequence + 1);
+    }
+
+    private Segment newSegment(long sequence) throws IOException {
+        String name = SEGMENT_FILE_PREFIX + String.format("%020d", sequence) + SEGMENT_FILE_SUFFIX;
+        Path file = storeDirectory.resolve(name);
+        Segment segment =
+                new Segment(
+                        sequence,
+                        file,
+                        FileChannel.open(
+                                file,
+                                StandardOpenOption.CREATE,
+                                StandardOpenOption.READ,
+                                StandardOpenOption.WRITE));
+        segments.put(sequence, segment);
+        return segment;
+    }
+
+    /**
+     * Delete the oldest segments while less than half of their bytes are live, after moving
+     * their live records to the active segment. Runs on the writer thread.
+     */
+    private void compactSegments() throws IOException {
+        long now = System.currentTimeMillis();
+        while (segments.size() > 1) {
+            Segment oldest = segments.firstEntry().getValue();
+            List<Map.Entry<UUID, RecordLocation>> liveRecords = new ArrayList<>();
+            long liveBytes = 0;
+            for (Map.Entry<UUID, RecordLocation> entry : index.entrySet()) {
+                RecordLocation location = entry.getValue();
+                if (location.segment() != oldest) {
+                    continue;
+                }
+                if (isExpired(location, now)) {
+                    index.remove(entry.getKey(), location);
+                } else {
+                    liveRecords.add(entry);
+                    liveBytes += HEADER_SIZE + location.length();
+                }
+            }
+            if (liveBytes * 2 > oldest.size) {
+                return;
+            }
+            for (Map.Entry<UUID, RecordLocation> entry : liveRecords) {
+                UUID requestId = entry.getKey();
+                RecordLocation location = entry.getValue();
+                // a result deleted meanwhile must not be written again.
+                if (index.get(requestId) != location) {
+                    continue;
+                }
+                RecordLocation movedLocation =
+                        append(
+                                RecordType.PUT,
+                                requestId,
+                                location.timestamp(),
+                                oldest.read(location.offset(), location.length()));
+                index.replace(requestId, location, movedLocation);
+            }
+            activeSegment.channel.force(false);
+            segments.remove(oldest.sequence);
+            oldest.channel.close();
+            Files.deleteIfExists(oldest.file);
+            log.info(
+                    "Compacted result store segment {} with {} live results.",
+                    oldest.file,
+                    liveRecords.size());
+        }
+    }
+
+    private void completeCompactions(List<PendingRecord> batch, IOException e) {
+        for (PendingRecord pendingRecord : batch) {
+            if (pendingRecord.type() != RecordType.COMPACT) {
+                continue;
+            }
+            if (Objects.isNull(e)) {
+                pendingRecord.written().complete(null);
+            } else {
+                pendingRecord.written().completeExceptionally(e);
+            }
+        }
+    }
+
+    private void replay() throws IOException {
+        List<Path> files;
+        try (Stream<Path> paths = Files.list(storeDirectory)) {
+            files =
+                    paths.filter(
+                                    path -> {
+                                        String name = path.getFileName().toString();
+                                        return name.startsWith(SEGMENT_FILE_PREFIX)
+                                                && name.endsWith(SEGMENT_FILE_SUFFIX);
+                                    })
+                            .sorted()
+                            .toList();
+        }
+        for (int i = 0; i < files.size(); i++) {
+            Path file = files.get(i);
+            String name = file.getFileName().toString();
+            long sequence =
+                    Long.parseLong(
+                            name.substring(
+                                    SEGMENT_FILE_PREFIX.length(),
+                                    name.length() - SEGMENT_FILE_SUFFIX.length()));
+            Segment segment =
+                    new Segment(
+                            sequence,
+                            file,
+                            FileChannel.open(
+                                    file, StandardOpenOption.READ, StandardOpenOption.WRITE));
+            segments.put(sequence, segment);
+            segment.size = replaySegment(segment);
+            boolean isLast = i == files.size() - 1;
+            if (segment.size < segment.channel.size()) {
+                log.warn(
+                        "Ignored {} bytes of invalid records at the end of result store"
+                                + " segment {}.",
+                        segment.channel.size() - segment.size,
+                        file);
+                if (isLast) {
+                    segment.channel.truncate(segment.size);
+                }
+            }
+            if (isLast) {
+                segment.channel.position(segment.size);
+                activeSegment = segment;
+            } else {
+                segment.seal();
+            }
+        }
+        if (Objects.isNull(activeSegment)) {
+            activeSegment = newSegment(0);
+        }
+    }
+
+    /**
+     * Apply the records of the segment to the index.
+     *
+     * @return size of the valid records at the start of the segment.
+     */
+    private long replaySegment(Segment segment) throws IOException {
+        MappedByteBuffer buffer =
+                segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.channel.size());
+        int position = 0;
+        while (position + HEADER_SIZE <= buffer.limit()) {
+            int typeOrdinal = buffer.get(position);
+            int length = buffer.getInt(position + HEADER_SIZE - 2 * Integer.BYTES);
+            if (typeOrdinal < 0
+                    || typeOrdinal >= RecordType.COMPACT.ordinal()
+                    || length < 0
+                    || length > buffer.limit() - position - HEADER_SIZE) {
+                break;
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(position, HEADER_SIZE - Integer.BYTES));
+            crc.update(buffer.slice(position + HEADER_SIZE, length));
+            if ((int) crc.getValue() != buffer.getInt(position + HEADER_SIZE - Integer.BYTES)) {
+                break;
+            }
+            UUID requestId =
+                    new UUID(buffer.getLong(position + 1), buffer.getLong(position + 9));
+            if (RecordType.values()[typeOrdinal] == RecordType.PUT) {
+                index.put(
+                        requestId,
+                        new RecordLocation(
+                                segment,
+                                position + HEADER_SIZE,
+                                length,
+                                buffer.getLong(position + 17)));
+            } else {
+                index.remove(requestId);
+            }
+            position += HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    /**
+     * Types of the records in the segments. COMPACT only requests a compaction and CLOSE stops the
+     * writer, they are never written to the segments.
+     */
+    private enum RecordType {
+        PUT,
+        DELETE,
+        COMPACT,
+        CLOSE
+    }
+
+    private record PendingRecord(
+            RecordType type,
+            UUID requestId,
+            long timestamp,
+            byte[] data,
+            CompletableFuture<Void> written) {}
+
+    /**
+     * Position of the data of a record.
+     *
+     * @param offset offset of the data in the segment.
+     * @param timestamp time the result was stored.
+     */
+    private record RecordLocation(Segment segment, long offset, int length, long timestamp) {}
+
+    /**
+     * Segment file. The active segment is read from a file opened for each read, as interrupting
+     * a read on the channel of the writer would close it. A sealed segment is memory-mapped and
+     * its channel is closed, the mapping stays valid until it is collected.
+     */
+    private static final class Segment {
+
+        private final long sequence;
+        private final Path file;
+        private final FileChannel channel;
+        private volatile long size;
+        private volatile MappedByteBuffer mapped;
+
+        private Segment(long sequence, Path file, FileChannel channel) {
+            this.sequence = sequence;
+            this.file = file;
+            this.channel = channel;
+        }
+
+        private void seal() throws IOException {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            channel.close();
+        }
+
+        private byte[] read(long offset, int length) throws IOException {
+            byte[] data = new byte[length];
+            MappedByteBuffer buffer = mapped;
+            if (Objects.isNull(buffer)) {
+                try (RandomAccessFile segmentFile = new RandomAccessFile(file.toFile(), "r")) {
+                    segmentFile.seek(offset);
+                    segmentFile.readFully(data);
+                    return data;
+                } catch (IOException e) {
+                    // the segment was sealed and compacted while reading.
+                    buffer = mapped;
+                    if (Objects.isNull(buffer)) {
+                        throw e;
+                    }
+                }
+            }
+            buffer.get(Math.toIntExact(offset), data);
+            return data;
+        }
+    }
+}
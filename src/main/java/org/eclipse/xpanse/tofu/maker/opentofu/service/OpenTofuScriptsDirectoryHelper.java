@@ -175,7 +175,7 @@ public class OpenTofuScriptsDirectoryHelper {
     public String getTerraformState(String taskWorkspace) {
         String state = null;
         try {
-            File tfState = new File(taskWorkspace, TF_STATE_FILE_NAME);
+            File tfState = getTerraformStateFile(taskWorkspace);
             if (tfState.exists()) {
                 state = Files.readString(tfState.toPath());
             }
@@ -185,6 +185,16 @@ public class OpenTofuScriptsDirectoryHelper {
         return state;
     }
 
+    /**
+     * Get the tfState file in the workspace for the OpenTofu deployment task.
+     *
+     * @param taskWorkspace workspace path for the OpenTofu deployment task.
+     * @return tfState file.
+     */
+    public File getTerraformStateFile(String taskWorkspace) {
+        return new File(taskWorkspace, TF_STATE_FILE_NAME);
+    }
+
     /**
      * Get the list of files in the workspace for the OpenTofu deployment task.
      *
@@ -283,7 +293,12 @@ public class OpenTofuScriptsDirectoryHelper {
         return false;
     }
 
-    private String getModuleParentDirectoryPath() {
+    /**
+     * Get the root directory of the task workspaces.
+     *
+     * @return path of the root directory.
+     */
+    public String getModuleParentDirectoryPath() {
         return StringUtils.isNotBlank(moduleParentDirectoryPath)
                 ? moduleParentDirectoryPath
                 : System.getProperty("java.io.tmpdir");
@@ -8,12 +8,21 @@ package org.eclipse.xpanse.tofu.maker.opentofu.service;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.annotation.Resource;
+import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import lombok.extern.slf4j.Slf4j;
-import org.eclipse.xpanse.tofu.maker.async.TaskConfiguration;
+import org.eclipse.xpanse.tofu.maker.async.OpenTofuTaskJournal;
+import org.eclipse.xpanse.tofu.maker.async.TaskAdmissionController;
+import org.eclipse.xpanse.tofu.maker.async.TaskKeyLimiter;
+import org.eclipse.xpanse.tofu.maker.async.TaskStatusRegistry;
 import org.eclipse.xpanse.tofu.maker.models.enums.HealthStatus;
+import org.eclipse.xpanse.tofu.maker.models.enums.StateResultMode;
+import org.eclipse.xpanse.tofu.maker.models.enums.TaskPhase;
 import org.eclipse.xpanse.tofu.maker.models.exceptions.InvalidOpenTofuToolException;
 import org.eclipse.xpanse.tofu.maker.models.exceptions.OpenTofuExecutorException;
 import org.eclipse.xpanse.tofu.maker.models.request.directory.OpenTofuAsyncRequestWithScriptsDirectory;
@@ -26,11 +35,10 @@ import org.eclipse.xpanse.tofu.maker.opentofu.OpenTofuExecutor;
 import org.eclipse.xpanse.tofu.maker.opentofu.tool.OpenTofuInstaller;
 import org.eclipse.xpanse.tofu.maker.opentofu.tool.OpenTofuVersionsHelper;
 import org.eclipse.xpanse.tofu.maker.opentofu.utils.SystemCmdResult;
+import org.eclipse.xpanse.tofu.maker.webhook.WebhookOutbox;
 import org.springframework.beans.BeanUtils;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.util.CollectionUtils;
 
 /** OpenTofu service classes are deployed form Directory. */
 @Slf4j
@@ -46,13 +54,19 @@ public class OpenTofuScriptsDirectoryService {
             """;
     @Resource private OpenTofuExecutor executor;
     @Resource private OpenTofuInstaller installer;
-    @Resource private RestTemplate restTemplate;
     @Resource private OpenTofuVersionsHelper versionHelper;
     @Resource private OpenTofuScriptsDirectoryHelper scriptsHelper;
-    @Resource private OpenTofuResultPersistenceManage resultPersistenceManage;
+    @Resource private OpenTofuStateDeltaHelper stateDeltaHelper;
+    @Resource private OpenTofuStateProjectionHelper stateProjectionHelper;
+    @Resource private TaskAdmissionController admissionController;
+    @Resource private OpenTofuTaskJournal taskJournal;
+    @Resource private TaskStatusRegistry taskStatusRegistry;
+    @Resource private TaskKeyLimiter taskKeyLimiter;
+    @Resource private WebhookOutbox webhookOutbox;
 
     /**
-     * Perform Tofu-Maker health checks by creating a OpenTofu test configuration file.
+     * Perform Tofu-Maker health checks by creating a OpenTofu test configuration file. The check
+     * doesn't wait for an execution slot, so that it is answered while all slots are in use.
      *
      * @return TofuMakerSystemStatus.
      */
@@ -62,7 +76,8 @@ public class OpenTofuScriptsDirectoryService {
                 taskWorkspace, Map.of(HELLO_WORLD_TF_NAME, HELLO_WORLD_TEMPLATE), null);
         OpenTofuRequestWithScriptsDirectory request = new OpenTofuRequestWithScriptsDirectory();
         request.setScriptsDirectory(taskWorkspace);
-        OpenTofuValidationResult tofuValidationResult = tfValidateWithScriptsDirectory(request);
+        OpenTofuValidationResult tofuValidationResult =
+                validateWithScriptsDirectory(request, executor::tfValidateWithoutSlot);
         TofuMakerSystemStatus systemStatus = new TofuMakerSystemStatus();
         systemStatus.setRequestId(requestId);
         if (tofuValidationResult.isValid()) {
@@ -81,12 +96,18 @@ public class OpenTofuScriptsDirectoryService {
      */
     public OpenTofuValidationResult tfValidateWithScriptsDirectory(
             OpenTofuRequestWithScriptsDirectory request) {
+        return validateWithScriptsDirectory(request, executor::tfValidate);
+    }
+
+    private OpenTofuValidationResult validateWithScriptsDirectory(
+            OpenTofuRequestWithScriptsDirectory request,
+            BiFunction<String, String, SystemCmdResult> validateCommand) {
         try {
             String executorPath =
                     installer.getExecutorPathThatMatchesRequiredVersion(
                             request.getOpenTofuVersion());
             SystemCmdResult result =
-                    executor.tfValidate(executorPath, request.getScriptsDirectory());
+                    validateCommand.apply(executorPath, request.getScriptsDirectory());
             OpenTofuValidationResult validationResult =
                     new ObjectMapper()
                             .readValue(
@@ -104,7 +125,7 @@ public class OpenTofuScriptsDirectoryService {
     public OpenTofuResult deployWithScriptsDirectory(OpenTofuRequestWithScriptsDirectory request) {
         SystemCmdResult result;
         String executorPath = null;
-        try {
+        try (TaskKeyLimiter.Permits permits = taskKeyLimiter.acquire(request)) {
             executorPath =
                     installer.getExecutorPathThatMatchesRequiredVersion(
                             request.getOpenTofuVersion());
@@ -139,7 +160,7 @@ public class OpenTofuScriptsDirectoryService {
     public OpenTofuResult modifyWithScriptsDirectory(OpenTofuRequestWithScriptsDirectory request) {
         SystemCmdResult result;
         String executorPath = null;
-        try {
+        try (TaskKeyLimiter.Permits permits = taskKeyLimiter.acquire(request)) {
             executorPath =
                     installer.getExecutorPathThatMatchesRequiredVersion(
                             request.getOpenTofuVersion());
@@ -175,7 +196,7 @@ public class OpenTofuScriptsDirectoryService {
     public OpenTofuResult destroyWithScriptsDirectory(OpenTofuRequestWithScriptsDirectory request) {
         SystemCmdResult result;
         String executorPath = null;
-        try {
+        try (TaskKeyLimiter.Permits permits = taskKeyLimiter.acquire(request)) {
             executorPath =
                     installer.getExecutorPathThatMatchesRequiredVersion(
                             request.getOpenTofuVersion());
@@ -203,12 +224,15 @@ public class OpenTofuScriptsDirectoryService {
             OpenTofuRequestWithScriptsDirectory request) {
         String executorPath =
                 installer.getExecutorPathThatMatchesRequiredVersion(request.getOpenTofuVersion());
-        String result =
-                executor.getOpenTofuPlanAsJson(
-                        executorPath,
-                        request.getVariables(),
-                        request.getEnvVariables(),
-                        request.getScriptsDirectory());
+        String result;
+        try (TaskKeyLimiter.Permits permits = taskKeyLimiter.acquire(request)) {
+            result =
+                    executor.getOpenTofuPlanAsJson(
+                            executorPath,
+                            request.getVariables(),
+                            request.getEnvVariables(),
+                            request.getScriptsDirectory());
+        }
         scriptsHelper.deleteTaskWorkspace(request.getScriptsDirectory());
         OpenTofuPlan tofuPlan =
                 OpenTofuPlan.builder().plan(result).requestId(request.getRequestId()).build();
@@ -216,80 +240,96 @@ public class OpenTofuScriptsDirectoryService {
         return tofuPlan;
     }
 
-    /** Async deploy a source by open tofu. */
-    @Async(TaskConfiguration.TASK_EXECUTOR_NAME)
+    /** Async deploy a source by open tofu. Called by the task scheduler. */
     public void asyncDeployWithScriptsDirectory(
             OpenTofuAsyncRequestWithScriptsDirectory asyncDeployRequest) {
-        OpenTofuResult result;
-        try {
-            result = deployWithScriptsDirectory(asyncDeployRequest);
-        } catch (RuntimeException e) {
-            result =
-                    OpenTofuResult.builder()
-                            .commandStdOutput(null)
-                            .commandStdError(e.getMessage())
-                            .isCommandSuccessful(false)
-                            .terraformState(null)
-                            .generatedFileContentMap(new HashMap<>())
-                            .build();
-        }
-        result.setRequestId(asyncDeployRequest.getRequestId());
-        String url = asyncDeployRequest.getWebhookConfig().getUrl();
-        log.info("Deployment service complete, callback POST url:{}, requestBody:{}", url, result);
-        sendOpenTofuResult(url, result);
+        runAsyncTask(asyncDeployRequest, this::deployWithScriptsDirectory, "Deployment");
     }
 
-    /** Async modify a source by open tofu. */
-    @Async(TaskConfiguration.TASK_EXECUTOR_NAME)
+    /** Async modify a source by open tofu. Called by the task scheduler. */
     public void asyncModifyWithScriptsDirectory(
             OpenTofuAsyncRequestWithScriptsDirectory asyncModifyRequest) {
-        OpenTofuResult result;
-        try {
-            result = modifyWithScriptsDirectory(asyncModifyRequest);
-        } catch (RuntimeException e) {
-            result =
-                    OpenTofuResult.builder()
-                            .commandStdOutput(null)
-                            .commandStdError(e.getMessage())
-                            .isCommandSuccessful(false)
-                            .terraformState(null)
-                            .generatedFileContentMap(new HashMap<>())
-                            .build();
-        }
-        result.setRequestId(asyncModifyRequest.getRequestId());
-        String url = asyncModifyRequest.getWebhookConfig().getUrl();
-        log.info("Deployment service complete, callback POST url:{}, requestBody:{}", url, result);
-        sendOpenTofuResult(url, result);
+        runAsyncTask(asyncModifyRequest, this::modifyWithScriptsDirectory, "Deployment");
     }
 
-    /** Async destroy resource of the service. */
-    @Async(TaskConfiguration.TASK_EXECUTOR_NAME)
+    /** Async destroy resource of the service. Called by the task scheduler. */
     public void asyncDestroyWithScriptsDirectory(OpenTofuAsyncRequestWithScriptsDirectory request) {
-        OpenTofuResult result;
+        runAsyncTask(request, this::destroyWithScriptsDirectory, "Destroy");
+    }
+
+    /**
+     * Send a failed result for an async task which was interrupted by a restart of the service.
+     * The state left in the task workspace is returned, so that the caller can still track the
+     * resources created before the interruption.
+     *
+     * @param request request of the interrupted task.
+     */
+    public void failInterruptedTask(OpenTofuAsyncRequestWithScriptsDirectory request) {
         try {
-            result = destroyWithScriptsDirectory(request);
-        } catch (RuntimeException e) {
-            result =
+            OpenTofuResult result =
                     OpenTofuResult.builder()
-                            .commandStdOutput(null)
-                            .commandStdError(e.getMessage())
+                            .requestId(request.getRequestId())
                             .isCommandSuccessful(false)
-                            .terraformState(null)
+                            .commandStdError("Task was interrupted by a restart of tofu-maker.")
+                            .terraformState(
+                                    scriptsHelper.getTerraformState(request.getScriptsDirectory()))
                             .generatedFileContentMap(new HashMap<>())
                             .build();
+            taskStatusRegistry.updatePhase(request.getRequestId(), TaskPhase.CALLBACK);
+            String url = request.getWebhookConfig().getUrl();
+            log.info("Task {} interrupted, callback POST url:{}", request.getRequestId(), url);
+            webhookOutbox.enqueue(request.getWebhookConfig(), result);
+            if (new File(request.getScriptsDirectory()).exists()) {
+                scriptsHelper.deleteTaskWorkspace(request.getScriptsDirectory());
+            }
+        } finally {
+            taskJournal.completed(request.getRequestId());
         }
-        result.setRequestId(request.getRequestId());
-        String url = request.getWebhookConfig().getUrl();
-        log.info("Destroy service complete, callback POST url:{}, requestBody:{}", url, result);
-        sendOpenTofuResult(url, result);
     }
 
-    private void sendOpenTofuResult(String url, OpenTofuResult result) {
+    private OpenTofuResult getFailedResult(RuntimeException e) {
+        return OpenTofuResult.builder()
+                .commandStdOutput(null)
+                .commandStdError(e.getMessage())
+                .isCommandSuccessful(false)
+                .terraformState(null)
+                .generatedFileContentMap(new HashMap<>())
+                .build();
+    }
+
+    /**
+     * Run the async task and hand its result over to the webhook outbox. The task is completed
+     * once the result is in the outbox, which takes care of the delivery.
+     */
+    private void runAsyncTask(
+            OpenTofuAsyncRequestWithScriptsDirectory request,
+            Function<OpenTofuRequestWithScriptsDirectory, OpenTofuResult> task,
+            String taskName) {
+        UUID requestId = request.getRequestId();
+        admissionController.started(requestId);
+        taskJournal.started(requestId);
+        boolean isSuccessful = false;
         try {
-            restTemplate.postForLocation(url, result);
-        } catch (RestClientException e) {
-            log.error("error while sending open tofu result", e);
-            resultPersistenceManage.persistOpenTofuResult(result);
+            OpenTofuResult result;
+            try {
+                result = task.apply(request);
+            } catch (RuntimeException e) {
+                result = getFailedResult(e);
+            }
+            result.setRequestId(requestId);
+            taskStatusRegistry.updatePhase(requestId, TaskPhase.CALLBACK);
+            String url = request.getWebhookConfig().getUrl();
+            log.info(
+                    "{} service complete, callback POST url:{}, requestBody:{}",
+                    taskName,
+                    url,
+                    result);
+            webhookOutbox.enqueue(request.getWebhookConfig(), result);
+            isSuccessful = result.isCommandSuccessful();
+        } finally {
+            taskStatusRegistry.finished(requestId, isSuccessful);
+            taskJournal.completed(requestId);
+            admissionController.completed(requestId);
         }
     }
 
@@ -302,8 +342,7 @@ public class OpenTofuScriptsDirectoryService {
                         .build();
         try {
             BeanUtils.copyProperties(result, tofuResult);
-            tofuResult.setTerraformState(
-                    scriptsHelper.getTerraformState(request.getScriptsDirectory()));
+            setTerraformStateToResult(tofuResult, request);
             tofuResult.setGeneratedFileContentMap(
                     scriptsHelper.getDeploymentGeneratedFilesContent(
                             request.getScriptsDirectory(), request.getScriptFiles()));
@@ -312,4 +351,34 @@ public class OpenTofuScriptsDirectoryService {
         }
         return tofuResult;
     }
+
+    /**
+     * Set the requested projections of the state, and the state delta or the full state. When the
+     * state delta was requested but can't be applied, the full state is set even if projections
+     * were requested, as the client can't update its state from the projections alone.
+     */
+    private void setTerraformStateToResult(
+            OpenTofuResult tofuResult, OpenTofuRequestWithScriptsDirectory request) {
+        File stateFile = scriptsHelper.getTerraformStateFile(request.getScriptsDirectory());
+        boolean isProjectionRequested = !CollectionUtils.isEmpty(request.getStateProjections());
+        if (isProjectionRequested) {
+            stateProjectionHelper.setStateProjectionsToResult(
+                    tofuResult, stateFile, request.getStateProjections());
+        }
+        boolean isDeltaRequested = StateResultMode.STATE_DELTA == request.getStateResultMode();
+        if (isDeltaRequested) {
+            String statePatch = stateDeltaHelper.getStatePatch(request.getTfState(), stateFile);
+            if (Objects.nonNull(statePatch)) {
+                tofuResult.setTerraformStatePatch(statePatch);
+                return;
+            }
+            log.info(
+                    "State delta is not applicable for request {}, returning the full state.",
+                    request.getRequestId());
+        }
+        if (isDeltaRequested || !isProjectionRequested) {
+            tofuResult.setTerraformState(
+                    scriptsHelper.getTerraformState(request.getScriptsDirectory()));
+        }
+    }
 }
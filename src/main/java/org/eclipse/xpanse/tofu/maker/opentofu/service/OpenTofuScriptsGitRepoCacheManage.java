@@ -0,0 +1,237 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.opentofu.service;
+
+import jakarta.annotation.Resource;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.xpanse.tofu.maker.models.exceptions.GitRepoCloneException;
+import org.eclipse.xpanse.tofu.maker.models.request.git.OpenTofuScriptsGitRepoDetails;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bean to manage the cache of scripts of pinned commits. The scripts of a commit and script path
+ * are exported from the GIT repo mirror once into an immutable directory addressed by the repo,
+ * the commit id and the script path. All later workspaces for the same commit are copied from this
+ * directory without accessing GIT at all. Cached scripts which were not used within the idle time
+ * are removed, and the least recently used ones when there are more than the maximum entries.
+ */
+@Slf4j
+@Component
+public class OpenTofuScriptsGitRepoCacheManage {
+
+    private static final String CACHE_DIRECTORY_NAME = "tofu-maker-git-scripts-cache";
+    private static final String ROOT_PATH_KEY = "root";
+    private static final String TEMP_TREE_MARKER = ".tmp-";
+    // depth of the cached trees below the cache directory: <repo hash>/<commit id>/<path key>.
+    private static final int CACHED_TREE_DEPTH = 3;
+
+    // cached trees are only removed while no scripts are copied from or added to the cache.
+    private final ReentrantReadWriteLock cacheLock = new ReentrantReadWriteLock();
+
+    @Value("${tofu.maker.git.scripts.cache.directory:}")
+    private String cacheDirectory;
+
+    @Value("${tofu.maker.git.scripts.cache.max.entries:1000}")
+    private int maxEntries;
+
+    @Value("${tofu.maker.git.scripts.cache.max.idle.hours:168}")
+    private long maxIdleHours;
+
+    @Resource private OpenTofuScriptsGitRepoMirrorManage mirrorManage;
+
+    /**
+     * Copy the scripts of the commit in the GIT repo details into the task workspace.
+     *
+     * @param workspace directory where the scripts must be copied.
+     * @param scriptsRepo details of the GIT repo with the commit to check out.
+     */
+    public void copyScripts(String workspace, OpenTofuScriptsGitRepoDetails scriptsRepo) {
+        String commitId = mirrorManage.resolveCommit(scriptsRepo);
+        Path cachedTree =
+                getCachedTree(
+                        scriptsRepo.getRepoUrl(),
+                        commitId,
+                        mirrorManage.getExportPath(scriptsRepo));
+        cacheLock.readLock().lock();
+        try {
+            if (Files.isDirectory(cachedTree)) {
+                log.info("Using cached scripts of commit {}.", commitId);
+                Files.setLastModifiedTime(
+                        cachedTree, FileTime.fromMillis(System.currentTimeMillis()));
+            } else {
+                addToCache(scriptsRepo, commitId, cachedTree);
+            }
+            copyTree(cachedTree, Paths.get(workspace));
+        } catch (IOException e) {
+            String errorMsg =
+                    String.format(
+                            "Copy cached scripts of commit %s to workspace error:%s",
+                            commitId, e.getMessage());
+            log.error(errorMsg);
+            throw new GitRepoCloneException(errorMsg);
+        } finally {
+            cacheLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Remove the cached scripts which were not used within the idle time, and the least recently
+     * used ones above the maximum number of entries. The run is skipped while scripts are copied
+     * or added, as those may take as long as a fetch.
+     */
+    @Scheduled(fixedDelay = 10, timeUnit = TimeUnit.MINUTES)
+    public void removeUnusedScripts() {
+        Path cacheRoot = getCacheRoot();
+        if (!Files.isDirectory(cacheRoot) || !cacheLock.writeLock().tryLock()) {
+            return;
+        }
+        try {
+            List<CachedTree> cachedTrees = new ArrayList<>(listCachedTrees(cacheRoot));
+            cachedTrees.sort(Comparator.comparingLong(CachedTree::lastUsedMillis).reversed());
+            long idleLimit = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(maxIdleHours);
+            for (int i = 0; i < cachedTrees.size(); i++) {
+                CachedTree cachedTree = cachedTrees.get(i);
+                if (i >= maxEntries || cachedTree.lastUsedMillis() < idleLimit) {
+                    log.info("Removing unused cached scripts {}.", cachedTree.path());
+                    deleteTree(cachedTree.path());
+                    deleteIfEmpty(cachedTree.path().getParent());
+                    deleteIfEmpty(cachedTree.path().getParent().getParent());
+                }
+            }
+        } catch (IOException e) {
+            log.error("Remove unused cached scripts from {} error", cacheRoot, e);
+        } finally {
+            cacheLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The tree is exported into a temporary directory first and then moved to its final location
+     * with one atomic rename, so a cached tree is either complete or not visible at all.
+     */
+    private void addToCache(
+            OpenTofuScriptsGitRepoDetails scriptsRepo, String commitId, Path cachedTree) {
+        Path tempTree =
+                cachedTree.resolveSibling(
+                        cachedTree.getFileName() + TEMP_TREE_MARKER + UUID.randomUUID());
+        try {
+            Files.createDirectories(tempTree);
+            mirrorManage.exportCommit(scriptsRepo, commitId, tempTree.toFile());
+            Files.move(tempTree, cachedTree, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Added scripts of commit {} to cache {}.", commitId, cachedTree);
+        } catch (IOException e) {
+            // a concurrent fill of the same commit may have moved its tree first. Renaming onto the
+            // non-empty directory then fails with a generic error on Linux, so the tree of the
+            // winner is used whenever it exists.
+            if (!Files.isDirectory(cachedTree)) {
+                String errorMsg =
+                        String.format(
+                                "Add scripts of commit %s to cache error:%s",
+                                commitId, e.getMessage());
+                log.error(errorMsg);
+                throw new GitRepoCloneException(errorMsg);
+            }
+            log.info("Scripts of commit {} were added to cache concurrently.", commitId);
+        } finally {
+            deleteTree(tempTree);
+        }
+    }
+
+    private void copyTree(Path source, Path target) throws IOException {
+        List<Path> files;
+        try (Stream<Path> pathStream = Files.walk(source)) {
+            files = pathStream.filter(Files::isRegularFile).toList();
+        }
+        for (Path file : files) {
+            Path targetFile = target.resolve(source.relativize(file).toString());
+            Files.createDirectories(targetFile.getParent());
+            Files.copy(file, targetFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private List<CachedTree> listCachedTrees(Path cacheRoot) throws IOException {
+        try (Stream<Path> pathStream =
+                Files.find(
+                        cacheRoot,
+                        CACHED_TREE_DEPTH,
+                        (path, attributes) ->
+                                attributes.isDirectory()
+                                        && cacheRoot.relativize(path).getNameCount()
+                                                == CACHED_TREE_DEPTH
+                                        && !path.getFileName()
+                                                .toString()
+                                                .contains(TEMP_TREE_MARKER))) {
+            return pathStream
+                    .map(path -> new CachedTree(path, path.toFile().lastModified()))
+                    .toList();
+        }
+    }
+
+    private Path getCachedTree(String repoUrl, String commitId, String exportPath) {
+        String pathKey = StringUtils.isBlank(exportPath) ? ROOT_PATH_KEY : getHash(exportPath);
+        return getCacheRoot().resolve(getHash(repoUrl)).resolve(commitId).resolve(pathKey);
+    }
+
+    private Path getCacheRoot() {
+        return StringUtils.isNotBlank(cacheDirectory)
+                ? Paths.get(cacheDirectory)
+                : Paths.get(System.getProperty("java.io.tmpdir"), CACHE_DIRECTORY_NAME);
+    }
+
+    private String getHash(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void deleteTree(Path path) {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> pathStream = Files.walk(path)) {
+            pathStream.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        } catch (IOException e) {
+            log.error("Delete scripts directory {} error", path, e);
+        }
+    }
+
+    private void deleteIfEmpty(Path directory) {
+        try (Stream<Path> entries = Files.list(directory)) {
+            if (entries.findAny().isEmpty()) {
+                Files.delete(directory);
+            }
+        } catch (IOException e) {
+            log.warn("Delete empty cache directory {} error:{}", directory, e.getMessage());
+        }
+    }
+
+    private record CachedTree(Path path, long lastUsedMillis) {}
+}
@@ -7,6 +7,7 @@ package org.eclipse.xpanse.tofu.maker.opentofu.service;
 
 import static org.eclipse.xpanse.tofu.maker.opentofu.service.OpenTofuScriptsDirectoryHelper.TF_SCRIPT_FILE_EXTENSION;
 
+import jakarta.annotation.Resource;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -17,10 +18,12 @@ import org.apache.commons.lang3.StringUtils;
 import org.eclipse.jgit.api.CloneCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
 import org.eclipse.xpanse.tofu.maker.models.exceptions.GitRepoCloneException;
 import org.eclipse.xpanse.tofu.maker.models.exceptions.InvalidOpenTofuRequestException;
 import org.eclipse.xpanse.tofu.maker.models.request.git.OpenTofuScriptsGitRepoDetails;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.retry.annotation.Backoff;
 import org.springframework.retry.annotation.Retryable;
 import org.springframework.retry.support.RetrySynchronizationManager;
@@ -31,6 +34,19 @@ import org.springframework.stereotype.Component;
 @Component
 public class OpenTofuScriptsGitRepoHelper {
 
+    @Value("${tofu.maker.git.clone.timeout.seconds:20}")
+    private int cloneTimeoutSeconds;
+
+    @Value("${tofu.maker.git.sparse.checkout.enabled:true}")
+    private boolean isSparseCheckoutEnabled;
+
+    @Value("${tofu.maker.git.mirror.enabled:true}")
+    private boolean isMirrorEnabled;
+
+    @Resource private OpenTofuScriptsGitRepoMirrorManage mirrorManage;
+
+    @Resource private OpenTofuScriptsGitRepoCacheManage cacheManage;
+
     /**
      * Method to check out scripts from a GIT repo.
      *
@@ -46,18 +62,43 @@ public class OpenTofuScriptsGitRepoHelper {
                 "Clone GIT repo to get the deployment scripts. Retry number: "
                         + Objects.requireNonNull(RetrySynchronizationManager.getContext())
                                 .getRetryCount());
+        if (StringUtils.isNotBlank(scriptsRepo.getCommit())) {
+            cacheManage.copyScripts(workspace, scriptsRepo);
+        } else if (isMirrorEnabled) {
+            mirrorManage.exportScripts(workspace, scriptsRepo);
+        } else {
+            cloneScripts(workspace, scriptsRepo);
+        }
+        List<File> files = getSourceFiles(workspace, scriptsRepo);
+        validateIfFolderContainsOpenTofuScripts(files, scriptsRepo);
+        return files;
+    }
+
+    private void cloneScripts(String workspace, OpenTofuScriptsGitRepoDetails scriptsRepo) {
         File workspaceDirectory = new File(workspace);
         FileRepositoryBuilder repositoryBuilder = new FileRepositoryBuilder();
         repositoryBuilder.findGitDir(workspaceDirectory);
         if (Objects.isNull(repositoryBuilder.getGitDir())) {
+            String branchRef = getBranchRef(scriptsRepo.getBranch());
+            boolean isSparseCheckout =
+                    isSparseCheckoutEnabled && StringUtils.isNotBlank(getScriptPath(scriptsRepo));
             CloneCommand cloneCommand = new CloneCommand();
             cloneCommand.setURI(scriptsRepo.getRepoUrl());
             cloneCommand.setProgressMonitor(null);
             cloneCommand.setDirectory(workspaceDirectory);
-            cloneCommand.setBranch(scriptsRepo.getBranch());
-            cloneCommand.setTimeout(20);
+            cloneCommand.setBranch(branchRef);
+            cloneCommand.setCloneAllBranches(false);
+            cloneCommand.setBranchesToClone(List.of(branchRef));
+            cloneCommand.setDepth(1);
+            cloneCommand.setNoCheckout(isSparseCheckout);
+            cloneCommand.setTimeout(cloneTimeoutSeconds);
             try (Git git = cloneCommand.call()) {
-                git.checkout();
+                if (isSparseCheckout) {
+                    git.checkout()
+                            .setStartPoint(getCheckoutStartPoint(branchRef))
+                            .addPath(getScriptPath(scriptsRepo))
+                            .call();
+                }
             } catch (GitAPIException e) {
                 String errorMsg =
                         String.format("Clone scripts form GIT repo error:%s", e.getMessage());
@@ -67,9 +108,34 @@ public class OpenTofuScriptsGitRepoHelper {
         } else {
             log.info("Scripts repo is already cloned in the workspace.");
         }
-        List<File> files = getSourceFiles(workspace, scriptsRepo);
-        validateIfFolderContainsOpenTofuScripts(files, scriptsRepo);
-        return files;
+    }
+
+    /**
+     * Only the requested branch is cloned. Names which are already fully qualified refs, for
+     * example 'refs/tags/v1.0.0', are used as they are.
+     */
+    private String getBranchRef(String branch) {
+        if (branch.startsWith(Constants.R_REFS)) {
+            return branch;
+        }
+        return Constants.R_HEADS + branch;
+    }
+
+    private String getCheckoutStartPoint(String branchRef) {
+        if (branchRef.startsWith(Constants.R_HEADS)) {
+            return Constants.R_REMOTES
+                    + Constants.DEFAULT_REMOTE_NAME
+                    + "/"
+                    + branchRef.substring(Constants.R_HEADS.length());
+        }
+        return branchRef;
+    }
+
+    /** Path of the scripts in the repo, normalized to the format expected by GIT path filters. */
+    private String getScriptPath(OpenTofuScriptsGitRepoDetails scriptsRepo) {
+        return StringUtils.strip(
+                StringUtils.removeStart(StringUtils.trimToEmpty(scriptsRepo.getScriptPath()), "./"),
+                "/");
     }
 
     private List<File> getSourceFiles(String workspace, OpenTofuScriptsGitRepoDetails scriptsRepo) {
@@ -0,0 +1,659 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.opentofu.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.TagOpt;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.xpanse.tofu.maker.models.exceptions.GitRepoCloneException;
+import org.eclipse.xpanse.tofu.maker.models.request.git.OpenTofuScriptsGitRepoDetails;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bean to manage the node-local bare mirrors of GIT repos. Each repo URL has one bare mirror
+ * which is refreshed per ref with an incremental fetch at most once per refresh interval.
+ * Concurrent requests for the same ref wait for the running fetch instead of starting their own,
+ * and requests for refs which are fresh are served while other refs are fetched. The scripts are
+ * exported from the mirror into the task workspace without any network access. Mirrors which were
+ * not used within the idle time are removed, and the least recently used ones when there are more
+ * than the maximum entries.
+ */
+@Slf4j
+@Component
+public class OpenTofuScriptsGitRepoMirrorManage {
+
+    private static final String MIRROR_DIRECTORY_NAME = "tofu-maker-git-mirrors";
+    private static final String MIRROR_REQUESTS_METRIC = "tofu.maker.git.mirror.requests";
+    private static final String PINNED_COMMITS_REF = "refs/tofu-maker/commits/";
+    private static final String MIRROR_DIRECTORY_SUFFIX = ".git";
+    private static final long MAX_RESOLVED_TAGS = 10000;
+    private static final int MAX_REQUESTED_REFS = 10000;
+    // hex values with at least one letter, which are abbreviated commit SHAs rather than tags.
+    private static final Pattern ABBREVIATED_COMMIT_PATTERN =
+            Pattern.compile("(?=.*[a-fA-F])[0-9a-fA-F]{4,39}");
+
+    // keyed by the hash of the repo url, which is also the name of the mirror directory.
+    private final Map<String, MirrorState> mirrorStates = new ConcurrentHashMap<>();
+    private final Map<MirrorRef, AtomicLong> requestCounts = new ConcurrentHashMap<>();
+    private Cache<String, String> resolvedTags;
+
+    @Resource private MeterRegistry meterRegistry;
+
+    @Value("${tofu.maker.git.mirror.directory:}")
+    private String mirrorDirectory;
+
+    @Value("${tofu.maker.git.mirror.min.refresh.interval.seconds:30}")
+    private long minRefreshIntervalSeconds;
+
+    @Value("${tofu.maker.git.mirror.max.entries:100}")
+    private int maxEntries;
+
+    @Value("${tofu.maker.git.mirror.max.idle.hours:168}")
+    private long maxIdleHours;
+
+    @Value("${tofu.maker.git.clone.timeout.seconds:20}")
+    private int fetchTimeoutSeconds;
+
+    @Value("${tofu.maker.git.sparse.checkout.enabled:true}")
+    private boolean isSparseCheckoutEnabled;
+
+    @Value("${tofu.maker.git.tag.resolve.ttl.seconds:3600}")
+    private long tagResolveTtlSeconds;
+
+    /** Create the cache of the commits resolved from tags. */
+    @PostConstruct
+    public void createResolvedTagsCache() {
+        resolvedTags =
+                Caffeine.newBuilder()
+                        .maximumSize(MAX_RESOLVED_TAGS)
+                        .expireAfterWrite(Duration.ofSeconds(tagResolveTtlSeconds))
+                        .build();
+    }
+
+    /**
+     * Export the scripts of the GIT repo from the local mirror into the task workspace. The mirror
+     * is created or refreshed first when required.
+     *
+     * @param workspace directory where the scripts must be exported.
+     * @param scriptsRepo details of the GIT repo.
+     */
+    public void exportScripts(String workspace, OpenTofuScriptsGitRepoDetails scriptsRepo) {
+        String branchRef = getBranchRef(scriptsRepo.getBranch());
+        recordRequest(new MirrorRef(scriptsRepo.getRepoUrl(), branchRef));
+        MirrorState mirrorState = refreshAndLockForRead(scriptsRepo.getRepoUrl(), branchRef);
+        try (Git git = Git.open(mirrorState.directory)) {
+            Repository repository = git.getRepository();
+            ObjectId commitId = repository.resolve(branchRef);
+            if (Objects.isNull(commitId)) {
+                throw new GitRepoCloneException(
+                        String.format(
+                                "Branch %s not found in GIT repo %s.",
+                                scriptsRepo.getBranch(), scriptsRepo.getRepoUrl()));
+            }
+            exportTree(repository, commitId, getExportPath(scriptsRepo), new File(workspace));
+            log.info(
+                    "Exported scripts of commit {} from mirror of GIT repo {}.",
+                    commitId.name(),
+                    scriptsRepo.getRepoUrl());
+        } catch (IOException e) {
+            String errorMsg =
+                    String.format(
+                            "Export scripts from mirror of GIT repo %s error:%s",
+                            scriptsRepo.getRepoUrl(), e.getMessage());
+            log.error(errorMsg);
+            throw new GitRepoCloneException(errorMsg);
+        } finally {
+            unlockRead(mirrorState);
+        }
+    }
+
+    /**
+     * Refresh the branch in the mirror of the GIT repo. The fetch is skipped when the branch was
+     * fetched within the minimum refresh interval, which is also the case for all requests that
+     * waited for a concurrent fetch of the same branch.
+     *
+     * @param repoUrl url of the GIT repo.
+     * @param branchRef full name of the ref to refresh.
+     * @return directory of the bare mirror.
+     */
+    public File refreshMirror(String repoUrl, String branchRef) {
+        MirrorState mirrorState = refreshAndLockForRead(repoUrl, branchRef);
+        unlockRead(mirrorState);
+        return mirrorState.directory;
+    }
+
+    /**
+     * Remove the mirrors which were not used within the idle time, and the least recently used
+     * ones above the maximum number of entries, together with their request counts. Mirrors left
+     * by earlier runs are removed once their last fetch is older than the idle time. Mirrors in
+     * use are skipped until the next run.
+     */
+    @Scheduled(fixedDelay = 10, timeUnit = TimeUnit.MINUTES)
+    public void removeUnusedMirrors() {
+        addMirrorsOfEarlierRuns();
+        Instant idleLimit = Instant.now().minus(Duration.ofHours(maxIdleHours));
+        // the last used times are taken once, as they change while sorting.
+        List<UsedMirror> usedMirrors =
+                mirrorStates.values().stream()
+                        .map(mirrorState -> new UsedMirror(mirrorState, mirrorState.lastUsedTime))
+                        .sorted(Comparator.comparing(UsedMirror::lastUsedTime).reversed())
+                        .toList();
+        Set<String> removedMirrorKeys = new HashSet<>();
+        for (int i = 0; i < usedMirrors.size(); i++) {
+            MirrorState mirrorState = usedMirrors.get(i).mirrorState();
+            mirrorState.lastFetchedTimes.values().removeIf(time -> time.isBefore(idleLimit));
+            if ((i >= maxEntries || usedMirrors.get(i).lastUsedTime().isBefore(idleLimit))
+                    && mirrorState.lock.writeLock().tryLock()) {
+                try {
+                    log.info("Removing unused GIT repo mirror {}.", mirrorState.directory);
+                    removeMirror(mirrorState);
+                    removedMirrorKeys.add(mirrorState.directory.getName());
+                } finally {
+                    mirrorState.lock.writeLock().unlock();
+                }
+            }
+        }
+        requestCounts
+                .keySet()
+                .removeIf(ref -> removedMirrorKeys.contains(getMirrorKey(ref.repoUrl())));
+        if (requestCounts.size() > MAX_REQUESTED_REFS) {
+            getMostRequestedRefs(Integer.MAX_VALUE).stream()
+                    .skip(MAX_REQUESTED_REFS)
+                    .forEach(requestCounts::remove);
+        }
+    }
+
+    /**
+     * Get the refs which were requested most often since the last decay of the request counts.
+     *
+     * @param count maximum number of refs to return.
+     * @return refs ordered by their request count, highest first.
+     */
+    public List<MirrorRef> getMostRequestedRefs(int count) {
+        return requestCounts.entrySet().stream()
+                .sorted(
+                        Map.Entry.<MirrorRef, AtomicLong>comparingByValue(
+                                        Comparator.comparingLong(AtomicLong::get))
+                                .reversed())
+                .limit(count)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /**
+     * Halve all request counts, so that refs which are no longer requested drop out of the most
+     * requested refs over time.
+     */
+    public void decayRequestCounts() {
+        requestCounts.values().forEach(requestCount -> requestCount.updateAndGet(c -> c / 2));
+        requestCounts.values().removeIf(requestCount -> requestCount.get() == 0);
+    }
+
+    /**
+     * Get the time when the ref was last fetched into the mirror.
+     *
+     * @param mirrorRef ref in the GIT repo.
+     * @return time of the last fetch, or null when it was never fetched.
+     */
+    public Instant getLastFetchedTime(MirrorRef mirrorRef) {
+        MirrorState mirrorState = mirrorStates.get(getMirrorKey(mirrorRef.repoUrl()));
+        return Objects.nonNull(mirrorState)
+                ? mirrorState.lastFetchedTimes.get(mirrorRef.branchRef())
+                : null;
+    }
+
+    /**
+     * Resolve the commit requested in the GIT repo details to its full commit id. A full commit
+     * SHA is used as it is, an abbreviated one is rejected. A tag is fetched into the mirror and
+     * the resolved commit id is remembered for the resolve TTL, as tags of released scripts are
+     * expected to be immutable. A moved tag is picked up after the TTL at the latest.
+     *
+     * @param scriptsRepo details of the GIT repo.
+     * @return full commit id.
+     */
+    public String resolveCommit(OpenTofuScriptsGitRepoDetails scriptsRepo) {
+        String commit = StringUtils.trim(scriptsRepo.getCommit());
+        if (ObjectId.isId(commit)) {
+            return commit.toLowerCase(Locale.ROOT);
+        }
+        if (ABBREVIATED_COMMIT_PATTERN.matcher(commit).matches()) {
+            throw new GitRepoCloneException(
+                    String.format(
+                            "Commit %s of GIT repo %s is abbreviated, a full commit SHA is"
+                                    + " required.",
+                            commit, scriptsRepo.getRepoUrl()));
+        }
+        String tagRef = commit.startsWith(Constants.R_REFS) ? commit : Constants.R_TAGS + commit;
+        String tagKey = scriptsRepo.getRepoUrl() + "@" + tagRef;
+        String commitId = resolvedTags.getIfPresent(tagKey);
+        if (Objects.isNull(commitId)) {
+            commitId = resolveTag(scriptsRepo.getRepoUrl(), tagRef);
+            resolvedTags.put(tagKey, commitId);
+        }
+        return commitId;
+    }
+
+    /**
+     * Export the scripts of the commit from the mirror into the target directory. The commit is
+     * fetched into the mirror only when the mirror doesn't contain it yet.
+     *
+     * @param scriptsRepo details of the GIT repo.
+     * @param commitId full commit id resolved with {@link #resolveCommit}.
+     * @param target directory where the scripts must be exported.
+     */
+    public void exportCommit(
+            OpenTofuScriptsGitRepoDetails scriptsRepo, String commitId, File target) {
+        String repoUrl = scriptsRepo.getRepoUrl();
+        MirrorState mirrorState = fetchCommitAndLockForRead(repoUrl, commitId);
+        try (Git git = Git.open(mirrorState.directory)) {
+            exportTree(
+                    git.getRepository(),
+                    ObjectId.fromString(commitId),
+                    getExportPath(scriptsRepo),
+                    target);
+        } catch (IOException e) {
+            String errorMsg =
+                    String.format(
+                            "Export commit %s from mirror of GIT repo %s error:%s",
+                            commitId, repoUrl, e.getMessage());
+            log.error(errorMsg);
+            throw new GitRepoCloneException(errorMsg);
+        } finally {
+            unlockRead(mirrorState);
+        }
+    }
+
+    /**
+     * Get the path inside the GIT repo that is exported into the workspace.
+     *
+     * @param scriptsRepo details of the GIT repo.
+     * @return normalized path, or null when the whole repo is exported.
+     */
+    public String getExportPath(OpenTofuScriptsGitRepoDetails scriptsRepo) {
+        if (!isSparseCheckoutEnabled) {
+            return null;
+        }
+        return StringUtils.strip(
+                StringUtils.removeStart(StringUtils.trimToEmpty(scriptsRepo.getScriptPath()), "./"),
+                "/");
+    }
+
+    private String resolveTag(String repoUrl, String tagRef) {
+        MirrorState mirrorState = refreshAndLockForRead(repoUrl, tagRef);
+        try (Git git = Git.open(mirrorState.directory)) {
+            ObjectId commitId = git.getRepository().resolve(tagRef + "^{commit}");
+            if (Objects.isNull(commitId)) {
+                throw new GitRepoCloneException(
+                        String.format("Tag %s not found in GIT repo %s.", tagRef, repoUrl));
+            }
+            log.info("Resolved {} of GIT repo {} to commit {}.", tagRef, repoUrl, commitId.name());
+            return commitId.name();
+        } catch (IOException e) {
+            String errorMsg =
+                    String.format(
+                            "Resolve %s of GIT repo %s error:%s", tagRef, repoUrl, e.getMessage());
+            log.error(errorMsg);
+            throw new GitRepoCloneException(errorMsg);
+        } finally {
+            unlockRead(mirrorState);
+        }
+    }
+
+    /**
+     * Refresh the ref in the mirror unless it is fresh, and keep the mirror locked for reading,
+     * so that it is not deleted between the refresh and the read. The caller must release the
+     * read lock with {@link #unlockRead}.
+     */
+    private MirrorState refreshAndLockForRead(String repoUrl, String branchRef) {
+        MirrorState mirrorState = lockForRead(repoUrl);
+        try {
+            fetchUnlessUpToDate(
+                    mirrorState,
+                    () -> isFresh(mirrorState, branchRef),
+                    () -> {
+                        fetchIntoMirror(mirrorState, repoUrl, branchRef, branchRef);
+                        mirrorState.lastFetchedTimes.put(branchRef, Instant.now());
+                    });
+        } catch (RuntimeException e) {
+            unlockRead(mirrorState);
+            throw e;
+        }
+        return mirrorState;
+    }
+
+    /**
+     * Fetch the commit into the mirror unless the mirror contains it, and keep the mirror locked
+     * for reading. The caller must release the read lock with {@link #unlockRead}.
+     */
+    private MirrorState fetchCommitAndLockForRead(String repoUrl, String commitId) {
+        MirrorState mirrorState = lockForRead(repoUrl);
+        try {
+            fetchUnlessUpToDate(
+                    mirrorState,
+                    () -> hasCommit(mirrorState.directory, commitId),
+                    () ->
+                            fetchIntoMirror(
+                                    mirrorState,
+                                    repoUrl,
+                                    commitId,
+                                    PINNED_COMMITS_REF + commitId));
+        } catch (RuntimeException e) {
+            unlockRead(mirrorState);
+            throw e;
+        }
+        return mirrorState;
+    }
+
+    /**
+     * Run the fetch unless the mirror is up to date. Fetches into one mirror run one at a time,
+     * as each fetch rewrites the shallow file of the mirror, but reads of refs which are up to
+     * date don't wait for them. The check is repeated once it is the turn of the fetch, so that
+     * requests which waited for a fetch of the same ref don't fetch it again.
+     */
+    private void fetchUnlessUpToDate(
+            MirrorState mirrorState, BooleanSupplier isUpToDate, Runnable fetch) {
+        if (isUpToDate.getAsBoolean()) {
+            return;
+        }
+        mirrorState.fetchLock.lock();
+        try {
+            if (!isUpToDate.getAsBoolean()) {
+                fetch.run();
+            }
+        } finally {
+            mirrorState.fetchLock.unlock();
+        }
+    }
+
+    /**
+     * Lock the mirror of the repo for reading. A mirror removed while waiting for the lock is
+     * replaced by a new one.
+     */
+    private MirrorState lockForRead(String repoUrl) {
+        String mirrorKey = getMirrorKey(repoUrl);
+        while (true) {
+            MirrorState mirrorState =
+                    mirrorStates.computeIfAbsent(
+                            mirrorKey, key -> new MirrorState(getMirrorPath(key), Instant.now()));
+            mirrorState.lock.readLock().lock();
+            if (!mirrorState.isRemoved) {
+                mirrorState.lastUsedTime = Instant.now();
+                return mirrorState;
+            }
+            mirrorState.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Release the read lock of the mirror. A mirror whose fetch failed is deleted once no other
+     * request reads it, and is created again by the next request.
+     */
+    private void unlockRead(MirrorState mirrorState) {
+        mirrorState.lock.readLock().unlock();
+        if (!mirrorState.isBroken) {
+            return;
+        }
+        mirrorState.lock.writeLock().lock();
+        try {
+            if (!mirrorState.isRemoved) {
+                log.warn(
+                        "Deleting GIT repo mirror {} as it can't be used.",
+                        mirrorState.directory.getAbsolutePath());
+                removeMirror(mirrorState);
+            }
+        } finally {
+            mirrorState.lock.writeLock().unlock();
+        }
+    }
+
+    /** Remove the mirror from the states and delete it. The write lock of the mirror is held. */
+    private void removeMirror(MirrorState mirrorState) {
+        mirrorState.isRemoved = true;
+        mirrorStates.remove(mirrorState.directory.getName(), mirrorState);
+        deleteMirror(mirrorState.directory);
+    }
+
+    /** Add the mirrors left in the mirror directory by earlier runs, to be removed when idle. */
+    private void addMirrorsOfEarlierRuns() {
+        File[] mirrors =
+                getMirrorParentDirectory()
+                        .listFiles(
+                                file ->
+                                        file.isDirectory()
+                                                && file.getName()
+                                                        .endsWith(MIRROR_DIRECTORY_SUFFIX));
+        if (Objects.isNull(mirrors)) {
+            return;
+        }
+        for (File mirror : mirrors) {
+            mirrorStates.computeIfAbsent(
+                    mirror.getName(),
+                    key -> new MirrorState(mirror, Instant.ofEpochMilli(mirror.lastModified())));
+        }
+    }
+
+    private boolean hasCommit(File mirror, String commitId) {
+        if (!new File(mirror, Constants.HEAD).exists()) {
+            return false;
+        }
+        try (Git git = Git.open(mirror)) {
+            return git.getRepository().getObjectDatabase().has(ObjectId.fromString(commitId));
+        } catch (IOException e) {
+            log.warn("Check commit {} in mirror {} error:{}", commitId, mirror, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * A request is a hit when the scripts can be exported without fetching on the request path,
+     * because the ref was fetched recently by another request or by the background prefetch.
+     */
+    private void recordRequest(MirrorRef mirrorRef) {
+        requestCounts.computeIfAbsent(mirrorRef, ref -> new AtomicLong()).incrementAndGet();
+        MirrorState mirrorState = mirrorStates.get(getMirrorKey(mirrorRef.repoUrl()));
+        boolean isHit =
+                Objects.nonNull(mirrorState) && isFresh(mirrorState, mirrorRef.branchRef());
+        meterRegistry.counter(MIRROR_REQUESTS_METRIC, "result", isHit ? "hit" : "miss").increment();
+    }
+
+    private boolean isFresh(MirrorState mirrorState, String branchRef) {
+        Instant lastFetched = mirrorState.lastFetchedTimes.get(branchRef);
+        return Objects.nonNull(lastFetched)
+                && Duration.between(lastFetched, Instant.now()).getSeconds()
+                        < minRefreshIntervalSeconds
+                && mirrorState.directory.exists();
+    }
+
+    /**
+     * Fetch the source ref into the destination ref of the mirror. The fetch lock of the mirror
+     * is held. A mirror which fails with an I/O error is marked to be deleted.
+     */
+    private void fetchIntoMirror(
+            MirrorState mirrorState, String repoUrl, String source, String destination) {
+        long startTime = System.currentTimeMillis();
+        try (Git git = openOrInitMirror(mirrorState.directory)) {
+            git.fetch()
+                    .setRemote(repoUrl)
+                    .setRefSpecs(new RefSpec("+" + source + ":" + destination))
+                    .setTagOpt(TagOpt.NO_TAGS)
+                    .setDepth(1)
+                    .setTimeout(fetchTimeoutSeconds)
+                    .setProgressMonitor(null)
+                    .call();
+            log.info(
+                    "Fetched {} of GIT repo {} into mirror in {} ms.",
+                    source,
+                    repoUrl,
+                    System.currentTimeMillis() - startTime);
+        } catch (GitAPIException | IOException e) {
+            String errorMsg =
+                    String.format(
+                            "Fetch scripts from GIT repo %s error:%s", repoUrl, e.getMessage());
+            log.error(errorMsg);
+            if (e instanceof IOException) {
+                mirrorState.isBroken = true;
+            }
+            throw new GitRepoCloneException(errorMsg);
+        }
+    }
+
+    private Git openOrInitMirror(File mirror) throws IOException, GitAPIException {
+        if (new File(mirror, Constants.HEAD).exists()) {
+            return Git.open(mirror);
+        }
+        log.info("Creating GIT repo mirror in {}.", mirror.getAbsolutePath());
+        return Git.init().setBare(true).setDirectory(mirror).call();
+    }
+
+    /** Write all files of the commit below the export path to the same location in workspace. */
+    private void exportTree(
+            Repository repository, ObjectId commitId, String exportPath, File workspace)
+            throws IOException {
+        try (RevWalk revWalk = new RevWalk(repository);
+                TreeWalk treeWalk = new TreeWalk(repository)) {
+            RevCommit commit = revWalk.parseCommit(commitId);
+            treeWalk.addTree(commit.getTree());
+            treeWalk.setRecursive(true);
+            if (StringUtils.isNotBlank(exportPath)) {
+                treeWalk.setFilter(PathFilter.create(exportPath));
+            }
+            while (treeWalk.next()) {
+                FileMode fileMode = treeWalk.getFileMode(0);
+                if (fileMode != FileMode.REGULAR_FILE && fileMode != FileMode.EXECUTABLE_FILE) {
+                    log.warn(
+                            "Skipped exporting {} with file mode {}.",
+                            treeWalk.getPathString(),
+                            fileMode);
+                    continue;
+                }
+                File file = new File(workspace, treeWalk.getPathString());
+                Files.createDirectories(file.getParentFile().toPath());
+                try (OutputStream outputStream = Files.newOutputStream(file.toPath())) {
+                    repository.open(treeWalk.getObjectId(0)).copyTo(outputStream);
+                }
+            }
+        }
+    }
+
+    private String getBranchRef(String branch) {
+        if (branch.startsWith(Constants.R_REFS)) {
+            return branch;
+        }
+        return Constants.R_HEADS + branch;
+    }
+
+    private File getMirrorParentDirectory() {
+        return StringUtils.isNotBlank(mirrorDirectory)
+                ? new File(mirrorDirectory)
+                : Paths.get(System.getProperty("java.io.tmpdir"), MIRROR_DIRECTORY_NAME).toFile();
+    }
+
+    private File getMirrorPath(String mirrorKey) {
+        return new File(getMirrorParentDirectory(), mirrorKey);
+    }
+
+    private String getMirrorKey(String repoUrl) {
+        return getRepoUrlHash(repoUrl) + MIRROR_DIRECTORY_SUFFIX;
+    }
+
+    private String getRepoUrlHash(String repoUrl) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(repoUrl.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void deleteMirror(File mirror) {
+        Path path = mirror.toPath();
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> pathStream = Files.walk(path)) {
+            pathStream.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        } catch (IOException e) {
+            log.error("Delete GIT repo mirror {} error", mirror.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Ref of a GIT repo served from the mirror.
+     *
+     * @param repoUrl url of the GIT repo.
+     * @param branchRef full name of the ref.
+     */
+    public record MirrorRef(String repoUrl, String branchRef) {}
+
+    private record UsedMirror(MirrorState mirrorState, Instant lastUsedTime) {}
+
+    /**
+     * Locks and timestamps of one mirror. The mirror is read and fetched into with the read lock,
+     * and deleted with the write lock. Fetches into the mirror hold the fetch lock.
+     */
+    private static class MirrorState {
+
+        private final File directory;
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final ReentrantLock fetchLock = new ReentrantLock();
+        private final Map<String, Instant> lastFetchedTimes = new ConcurrentHashMap<>();
+        private volatile Instant lastUsedTime;
+        private volatile boolean isBroken;
+        // only changed with the write lock held.
+        private boolean isRemoved;
+
+        MirrorState(File directory, Instant lastUsedTime) {
+            this.directory = directory;
+            this.lastUsedTime = lastUsedTime;
+        }
+    }
+}
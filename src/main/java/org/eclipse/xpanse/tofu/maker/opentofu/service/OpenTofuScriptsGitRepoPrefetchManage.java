@@ -0,0 +1,145 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.opentofu.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.xpanse.tofu.maker.opentofu.service.OpenTofuScriptsGitRepoMirrorManage.MirrorRef;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bean to keep the mirrors of the most requested GIT repo branches warm. The branches are
+ * refreshed in the background, so that the first request after a push doesn't have to wait for
+ * the fetch. The interval plus the jitter must stay below the minimum refresh interval of the
+ * mirrors, otherwise the prefetched branches are stale again when they are requested.
+ */
+@Slf4j
+@Component
+public class OpenTofuScriptsGitRepoPrefetchManage {
+
+    private static final String PREFETCH_METRIC = "tofu.maker.git.mirror.prefetches";
+    private static final String STALENESS_METRIC = "tofu.maker.git.mirror.staleness.seconds";
+
+    @Value("${tofu.maker.git.mirror.enabled:true}")
+    private boolean isMirrorEnabled;
+
+    @Value("${tofu.maker.git.prefetch.enabled:true}")
+    private boolean isPrefetchEnabled;
+
+    @Value("${tofu.maker.git.prefetch.top.count:10}")
+    private int topCount;
+
+    @Value("${tofu.maker.git.prefetch.max.concurrency:2}")
+    private int maxConcurrency;
+
+    @Value("${tofu.maker.git.prefetch.interval.seconds:15}")
+    private long intervalSeconds;
+
+    @Value("${tofu.maker.git.prefetch.max.jitter.seconds:5}")
+    private long maxJitterSeconds;
+
+    @Value("${tofu.maker.git.mirror.min.refresh.interval.seconds:30}")
+    private long minRefreshIntervalSeconds;
+
+    @Resource private OpenTofuScriptsGitRepoMirrorManage mirrorManage;
+    @Resource private MeterRegistry meterRegistry;
+
+    /**
+     * Register the gauge for the staleness of the most requested branches and check that the
+     * prefetched branches stay fresh between two prefetches.
+     */
+    @PostConstruct
+    public void registerMetrics() {
+        if (isMirrorEnabled
+                && isPrefetchEnabled
+                && intervalSeconds + maxJitterSeconds >= minRefreshIntervalSeconds) {
+            log.warn(
+                    "GIT prefetch interval {}s plus jitter {}s is not below the mirror refresh"
+                            + " interval {}s. Requests will fetch the prefetched branches again.",
+                    intervalSeconds,
+                    maxJitterSeconds,
+                    minRefreshIntervalSeconds);
+        }
+        Gauge.builder(STALENESS_METRIC, this, OpenTofuScriptsGitRepoPrefetchManage::getStaleness)
+                .description("Age of the oldest fetch among the most requested GIT branches.")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Refresh the mirrors of the most requested branches. At most the configured number of fetches
+     * run at the same time and each one is delayed by a random jitter, so that many nodes don't
+     * hit the GIT server at the same moment.
+     */
+    @Scheduled(
+            initialDelayString = "${tofu.maker.git.prefetch.interval.seconds:15}",
+            fixedDelayString = "${tofu.maker.git.prefetch.interval.seconds:15}",
+            timeUnit = TimeUnit.SECONDS)
+    public void prefetchMostRequestedRefs() {
+        if (!isMirrorEnabled || !isPrefetchEnabled) {
+            return;
+        }
+        List<MirrorRef> mirrorRefs = mirrorManage.getMostRequestedRefs(topCount);
+        mirrorManage.decayRequestCounts();
+        if (mirrorRefs.isEmpty()) {
+            return;
+        }
+        log.debug("Prefetching {} most requested GIT repo branches.", mirrorRefs.size());
+        Semaphore permits = new Semaphore(Math.max(1, maxConcurrency));
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            mirrorRefs.forEach(mirrorRef -> executor.execute(() -> prefetch(mirrorRef, permits)));
+        }
+    }
+
+    private void prefetch(MirrorRef mirrorRef, Semaphore permits) {
+        try {
+            if (maxJitterSeconds > 0) {
+                Thread.sleep(ThreadLocalRandom.current().nextLong(maxJitterSeconds * 1000 + 1));
+            }
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            mirrorManage.refreshMirror(mirrorRef.repoUrl(), mirrorRef.branchRef());
+            meterRegistry.counter(PREFETCH_METRIC, "result", "success").increment();
+        } catch (Exception e) {
+            log.warn(
+                    "Prefetch {} of GIT repo {} failed: {}",
+                    mirrorRef.branchRef(),
+                    mirrorRef.repoUrl(),
+                    e.getMessage());
+            meterRegistry.counter(PREFETCH_METRIC, "result", "failure").increment();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private double getStaleness() {
+        Instant now = Instant.now();
+        return mirrorManage.getMostRequestedRefs(topCount).stream()
+                .map(mirrorManage::getLastFetchedTime)
+                .filter(Objects::nonNull)
+                .mapToLong(lastFetched -> Duration.between(lastFetched, now).getSeconds())
+                .max()
+                .orElse(0);
+    }
+}
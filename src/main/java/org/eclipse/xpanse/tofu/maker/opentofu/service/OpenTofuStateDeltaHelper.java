@@ -0,0 +1,239 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.opentofu.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bean to calculate the difference between two OpenTofu states as a RFC 6902 JSON patch.
+ *
+ * <p>The patch always starts with 'test' operations on the lineage and serial of the original
+ * state, so that a client can only apply it to exactly the state that was sent in the request.
+ */
+@Slf4j
+@Component
+public class OpenTofuStateDeltaHelper {
+
+    private static final String LINEAGE_FIELD = "lineage";
+    private static final String SERIAL_FIELD = "serial";
+    private static final List<String> RESOURCE_IDENTITY_FIELDS =
+            List.of("module", "mode", "type", "name");
+    private static final String INSTANCE_IDENTITY_FIELD = "index_key";
+    private static final String OPERATION_FIELD = "op";
+    private static final String PATH_FIELD = "path";
+    private static final String VALUE_FIELD = "value";
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * Calculate the JSON patch between the state sent in the request and the state file created
+     * by the OpenTofu execution.
+     *
+     * @param originalState state sent in the request.
+     * @param newStateFile state file in the task workspace.
+     * @return JSON patch as string, or null when the patch can't be applied safely by the client.
+     */
+    public String getStatePatch(String originalState, File newStateFile) {
+        if (StringUtils.isBlank(originalState) || !newStateFile.exists()) {
+            log.warn("Skipped calculating state delta as one of the states is missing.");
+            return null;
+        }
+        try {
+            JsonNode originalNode = OBJECT_MAPPER.readTree(originalState);
+            JsonNode newNode = OBJECT_MAPPER.readTree(newStateFile);
+            if (!isPatchApplicable(originalNode, newNode)) {
+                return null;
+            }
+            ArrayNode patch = JsonNodeFactory.instance.arrayNode();
+            addTestOperation(patch, LINEAGE_FIELD, originalNode.get(LINEAGE_FIELD));
+            addTestOperation(patch, SERIAL_FIELD, originalNode.get(SERIAL_FIELD));
+            diff("", originalNode, newNode, patch);
+            return OBJECT_MAPPER.writeValueAsString(patch);
+        } catch (JsonProcessingException e) {
+            log.error("Parse state for calculating state delta failed.", e);
+        } catch (IOException e) {
+            log.error("Read state file for calculating state delta failed.", e);
+        }
+        return null;
+    }
+
+    /**
+     * The patch is only returned when both states belong to the same lineage and the new state is
+     * not older than the original one. Otherwise, the client must receive the full state.
+     */
+    private boolean isPatchApplicable(JsonNode originalNode, JsonNode newNode) {
+        if (!originalNode.isObject() || !newNode.isObject()) {
+            log.warn("Skipped calculating state delta as the state is not a JSON object.");
+            return false;
+        }
+        JsonNode originalLineage = originalNode.get(LINEAGE_FIELD);
+        JsonNode originalSerial = originalNode.get(SERIAL_FIELD);
+        if (Objects.isNull(originalLineage) || Objects.isNull(originalSerial)) {
+            log.warn("Skipped calculating state delta as the original state has no lineage.");
+            return false;
+        }
+        if (!Objects.equals(originalLineage, newNode.get(LINEAGE_FIELD))) {
+            log.warn("Skipped calculating state delta as the lineage of the state changed.");
+            return false;
+        }
+        JsonNode newSerial = newNode.get(SERIAL_FIELD);
+        if (Objects.isNull(newSerial) || newSerial.asLong() < originalSerial.asLong()) {
+            log.warn("Skipped calculating state delta as the serial of the state is older.");
+            return false;
+        }
+        return true;
+    }
+
+    private void diff(String path, JsonNode source, JsonNode target, ArrayNode patch) {
+        if (source.equals(target)) {
+            return;
+        }
+        if (source.isObject() && target.isObject()) {
+            diffObjects(path, (ObjectNode) source, (ObjectNode) target, patch);
+        } else if (source.isArray() && target.isArray()) {
+            diffArrays(path, (ArrayNode) source, (ArrayNode) target, patch);
+        } else {
+            addOperation(patch, "replace", path, target);
+        }
+    }
+
+    private void diffObjects(String path, ObjectNode source, ObjectNode target, ArrayNode patch) {
+        for (Map.Entry<String, JsonNode> field : source.properties()) {
+            if (!target.has(field.getKey())) {
+                addOperation(patch, "remove", path + "/" + escape(field.getKey()), null);
+            }
+        }
+        for (Map.Entry<String, JsonNode> field : target.properties()) {
+            String fieldPath = path + "/" + escape(field.getKey());
+            JsonNode sourceValue = source.get(field.getKey());
+            if (Objects.isNull(sourceValue)) {
+                addOperation(patch, "add", fieldPath, field.getValue());
+            } else {
+                diff(fieldPath, sourceValue, field.getValue(), patch);
+            }
+        }
+    }
+
+    /**
+     * Arrays of resources and resource instances are matched by their identity, so that adding
+     * or removing one resource results in a single operation instead of shifting every following
+     * element. All other arrays are compared by position.
+     */
+    private void diffArrays(String path, ArrayNode source, ArrayNode target, ArrayNode patch) {
+        List<String> sourceKeys = getIdentityKeys(source);
+        List<String> targetKeys = getIdentityKeys(target);
+        if (Objects.nonNull(sourceKeys) && Objects.nonNull(targetKeys)) {
+            if (diffArraysByIdentity(path, source, target, sourceKeys, targetKeys, patch)) {
+                return;
+            }
+        }
+        int commonSize = Math.min(source.size(), target.size());
+        for (int i = 0; i < commonSize; i++) {
+            diff(path + "/" + i, source.get(i), target.get(i), patch);
+        }
+        for (int i = source.size() - 1; i >= commonSize; i--) {
+            addOperation(patch, "remove", path + "/" + i, null);
+        }
+        for (int i = commonSize; i < target.size(); i++) {
+            addOperation(patch, "add", path + "/" + i, target.get(i));
+        }
+    }
+
+    private boolean diffArraysByIdentity(
+            String path,
+            ArrayNode source,
+            ArrayNode target,
+            List<String> sourceKeys,
+            List<String> targetKeys,
+            ArrayNode patch) {
+        List<String> keptSourceKeys = sourceKeys.stream().filter(targetKeys::contains).toList();
+        List<String> keptTargetKeys = targetKeys.stream().filter(sourceKeys::contains).toList();
+        if (!keptSourceKeys.equals(keptTargetKeys)) {
+            // elements are reordered, fall back to comparing by position.
+            return false;
+        }
+        ArrayNode operations = JsonNodeFactory.instance.arrayNode();
+        for (int i = sourceKeys.size() - 1; i >= 0; i--) {
+            if (!targetKeys.contains(sourceKeys.get(i))) {
+                addOperation(operations, "remove", path + "/" + i, null);
+            }
+        }
+        List<String> currentKeys = new ArrayList<>(keptSourceKeys);
+        for (int i = 0; i < targetKeys.size(); i++) {
+            String targetKey = targetKeys.get(i);
+            if (i < currentKeys.size() && currentKeys.get(i).equals(targetKey)) {
+                diff(
+                        path + "/" + i,
+                        source.get(sourceKeys.indexOf(targetKey)),
+                        target.get(i),
+                        operations);
+            } else {
+                currentKeys.add(i, targetKey);
+                addOperation(operations, "add", path + "/" + i, target.get(i));
+            }
+        }
+        patch.addAll(operations);
+        return true;
+    }
+
+    private List<String> getIdentityKeys(ArrayNode array) {
+        List<String> keys = new ArrayList<>(array.size());
+        for (JsonNode element : array) {
+            if (!element.isObject()) {
+                return null;
+            }
+            String key = getIdentityKey(element);
+            if (Objects.isNull(key) || keys.contains(key)) {
+                return null;
+            }
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    private String getIdentityKey(JsonNode element) {
+        if (element.has("type") && element.has("name") && element.has("instances")) {
+            StringBuilder key = new StringBuilder();
+            RESOURCE_IDENTITY_FIELDS.forEach(
+                    field -> key.append(element.path(field).asText()).append('|'));
+            return key.toString();
+        }
+        if (element.has("attributes") || element.has("sensitive_attributes")) {
+            return element.path(INSTANCE_IDENTITY_FIELD).toString();
+        }
+        return null;
+    }
+
+    private void addTestOperation(ArrayNode patch, String field, JsonNode value) {
+        addOperation(patch, "test", "/" + field, value);
+    }
+
+    private void addOperation(ArrayNode patch, String operation, String path, JsonNode value) {
+        ObjectNode operationNode = patch.addObject();
+        operationNode.put(OPERATION_FIELD, operation);
+        operationNode.put(PATH_FIELD, path);
+        if (Objects.nonNull(value)) {
+            operationNode.set(VALUE_FIELD, value);
+        }
+    }
+
+    private String escape(String field) {
+        return field.replace("~", "~0").replace("/", "~1");
+    }
+}
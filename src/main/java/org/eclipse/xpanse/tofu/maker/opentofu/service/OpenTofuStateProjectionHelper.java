@@ -0,0 +1,166 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.opentofu.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.xpanse.tofu.maker.models.enums.StateProjection;
+import org.eclipse.xpanse.tofu.maker.models.response.OpenTofuResult;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bean to extract only the requested parts of an OpenTofu state file. The state file is read with
+ * the Jackson streaming parser and all parts which are not requested are skipped without being
+ * loaded into memory.
+ */
+@Slf4j
+@Component
+public class OpenTofuStateProjectionHelper {
+
+    private static final String OUTPUTS_FIELD = "outputs";
+    private static final String RESOURCES_FIELD = "resources";
+    private static final String VALUE_FIELD = "value";
+    private static final String DATA_MODE = "data";
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * Set the requested parts of the state file to the OpenTofu result.
+     *
+     * @param tofuResult result of the OpenTofu request.
+     * @param stateFile state file in the task workspace.
+     * @param projections requested parts of the state.
+     */
+    public void setStateProjectionsToResult(
+            OpenTofuResult tofuResult, File stateFile, List<StateProjection> projections) {
+        if (!stateFile.exists()) {
+            log.warn("Skipped extracting state projections as the state file is missing.");
+            return;
+        }
+        boolean isOutputsRequired = projections.contains(StateProjection.OUTPUTS);
+        boolean isAddressesRequired = projections.contains(StateProjection.RESOURCE_ADDRESSES);
+        Map<String, Object> outputs = new LinkedHashMap<>();
+        List<String> resourceAddresses = new ArrayList<>();
+        try (JsonParser parser = OBJECT_MAPPER.createParser(stateFile)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                log.warn("Skipped extracting state projections as the state is not an object.");
+                return;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken valueToken = parser.nextToken();
+                if (isOutputsRequired
+                        && OUTPUTS_FIELD.equals(field)
+                        && valueToken == JsonToken.START_OBJECT) {
+                    readOutputs(parser, outputs);
+                } else if (isAddressesRequired
+                        && RESOURCES_FIELD.equals(field)
+                        && valueToken == JsonToken.START_ARRAY) {
+                    readResourceAddresses(parser, resourceAddresses);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            log.error("Read state file for extracting state projections failed.", e);
+            return;
+        }
+        if (isOutputsRequired) {
+            tofuResult.setStateOutputs(outputs);
+        }
+        if (isAddressesRequired) {
+            tofuResult.setStateResourceAddresses(resourceAddresses);
+        }
+    }
+
+    private void readOutputs(JsonParser parser, Map<String, Object> outputs) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String outputName = parser.currentName();
+            parser.nextToken();
+            JsonNode output = parser.readValueAsTree();
+            JsonNode value = Objects.nonNull(output) ? output.get(VALUE_FIELD) : null;
+            outputs.put(
+                    outputName,
+                    Objects.nonNull(value) ? OBJECT_MAPPER.treeToValue(value, Object.class) : null);
+        }
+    }
+
+    private void readResourceAddresses(JsonParser parser, List<String> resourceAddresses)
+            throws IOException {
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String module = null;
+            String mode = null;
+            String type = null;
+            String name = null;
+            List<String> indexKeys = new ArrayList<>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken valueToken = parser.nextToken();
+                switch (field) {
+                    case "module" -> module = parser.getValueAsString();
+                    case "mode" -> mode = parser.getValueAsString();
+                    case "type" -> type = parser.getValueAsString();
+                    case "name" -> name = parser.getValueAsString();
+                    case "instances" -> {
+                        if (valueToken == JsonToken.START_ARRAY) {
+                            readInstanceIndexKeys(parser, indexKeys);
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+            String resourceAddress = getResourceAddress(module, mode, type, name);
+            if (indexKeys.isEmpty()) {
+                resourceAddresses.add(resourceAddress);
+            } else {
+                indexKeys.forEach(indexKey -> resourceAddresses.add(resourceAddress + indexKey));
+            }
+        }
+    }
+
+    private void readInstanceIndexKeys(JsonParser parser, List<String> indexKeys)
+            throws IOException {
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String indexKey = "";
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken valueToken = parser.nextToken();
+                if ("index_key".equals(field)) {
+                    indexKey =
+                            valueToken == JsonToken.VALUE_STRING
+                                    ? "[\"" + parser.getText() + "\"]"
+                                    : "[" + parser.getText() + "]";
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            indexKeys.add(indexKey);
+        }
+    }
+
+    private String getResourceAddress(String module, String mode, String type, String name) {
+        StringBuilder address = new StringBuilder();
+        if (StringUtils.isNotBlank(module)) {
+            address.append(module).append('.');
+        }
+        if (DATA_MODE.equals(mode)) {
+            address.append(DATA_MODE).append('.');
+        }
+        return address.append(type).append('.').append(name).toString();
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.opentofu.service;
+
+import static org.eclipse.xpanse.tofu.maker.logging.CustomRequestIdGenerator.REQUEST_ID;
+
+import jakarta.annotation.Resource;
+import java.io.File;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.xpanse.tofu.maker.async.OpenTofuTaskJournal;
+import org.eclipse.xpanse.tofu.maker.async.OpenTofuTaskJournal.RecoveredTask;
+import org.eclipse.xpanse.tofu.maker.async.TaskAdmissionController;
+import org.eclipse.xpanse.tofu.maker.models.request.directory.OpenTofuAsyncRequestWithScriptsDirectory;
+import org.slf4j.MDC;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Recovers the async tasks which were not completed before the last restart. Tasks which were not
+ * started yet are scheduled again. Tasks which were already running are failed, as OpenTofu can't
+ * resume an interrupted command safely, and the caller is notified with the state left behind.
+ */
+@Slf4j
+@Component
+public class OpenTofuTaskRecoveryManage {
+
+    private static final String RECOVERY_SOURCE = "journal";
+
+    @Resource private OpenTofuTaskJournal taskJournal;
+    @Resource private TaskAdmissionController admissionController;
+    @Resource private OpenTofuRequestService requestService;
+    @Resource private OpenTofuScriptsDirectoryService scriptsDirectoryService;
+
+    /** Recover the unfinished tasks once the application is ready to run them. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverUnfinishedTasks() {
+        for (RecoveredTask recoveredTask : taskJournal.takeRecoveredTasks()) {
+            OpenTofuAsyncRequestWithScriptsDirectory request = recoveredTask.request();
+            MDC.put(REQUEST_ID, request.getRequestId().toString());
+            try {
+                recoverTask(request, recoveredTask.isStarted());
+            } catch (RuntimeException e) {
+                log.error("Recover task {} failed.", request.getRequestId(), e);
+            } finally {
+                MDC.remove(REQUEST_ID);
+            }
+        }
+    }
+
+    private void recoverTask(OpenTofuAsyncRequestWithScriptsDirectory request, boolean isStarted) {
+        if (!isStarted
+                && new File(request.getScriptsDirectory()).exists()
+                && admissionController.tryAdmit(request.getRequestId(), RECOVERY_SOURCE)) {
+            log.info("Rescheduling task {} accepted before restart.", request.getRequestId());
+            try {
+                requestService.scheduleRecoveredTask(request);
+                return;
+            } catch (RuntimeException e) {
+                admissionController.completed(request.getRequestId());
+                log.error("Reschedule task {} failed.", request.getRequestId(), e);
+            }
+        }
+        log.warn("Failing task {} interrupted by restart.", request.getRequestId());
+        scriptsDirectoryService.failInterruptedTask(request);
+    }
+}
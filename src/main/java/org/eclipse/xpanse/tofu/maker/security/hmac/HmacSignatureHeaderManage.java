@@ -5,16 +5,20 @@
 
 package org.eclipse.xpanse.tofu.maker.security.hmac;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.Map;
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.HmacAlgorithms;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -25,6 +29,9 @@ import org.springframework.stereotype.Component;
  * Class to generate all required HMAC related HTTP headers. HMAC Signature must in the format -
  * x-signature: algorithm=HmacSHA256;headers=x-nonce-signature
  * x-timestamp-signature;signature=d4fb456bc7621ed1c8099e8a1136997d6ad9b8613fc79a49b39833d4cb36080a
+ *
+ * <p>Each thread keeps a Mac instance initialized with the key, and the payload is fed to it as
+ * it is written, so signing a payload allocates little more than the headers.
  */
 @Slf4j
 @Component
@@ -37,8 +44,13 @@ public class HmacSignatureHeaderManage {
     private static final String NONCE_SIGNATURE_HEADER = "x-nonce-signature";
     private static final String TIMESTAMP_SIGNATURE_HEADER = "x-timestamp-signature";
     private static final String MAIN_SIGNATURE_HEADER = "x-signature";
-    private final String hmacSecretKey;
+    private static final int NONCE_LENGTH = 16;
+    private static final HexFormat HEX_FORMAT = HexFormat.of();
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final SecretKeySpec secretKeySpec;
     private final String hmacAlgorithm;
+    private final String signatureHeaderPrefix;
+    private final ThreadLocal<Mac> macs;
 
     /** Constructor for HmacSignatureHeaderManage. */
     @Autowired
@@ -47,11 +59,20 @@ public class HmacSignatureHeaderManage {
             @Value("${tofu.maker.webhook.hmac.request.signing.algorithm}") String hmacAlgorithm)
             throws InvalidAlgorithmParameterException {
         validateAlgorithmName(hmacAlgorithm);
-        this.hmacSecretKey = hmacSecretKey;
         this.hmacAlgorithm = hmacAlgorithm;
         if (hmacSecretKey.isBlank()) {
             throw new IllegalArgumentException("Missing mandatory hmac secret key");
         }
+        this.secretKeySpec = new SecretKeySpec(hmacSecretKey.getBytes(), hmacAlgorithm);
+        this.signatureHeaderPrefix =
+                "algorithm="
+                        + hmacAlgorithm
+                        + ";headers="
+                        + NONCE_SIGNATURE_HEADER
+                        + " "
+                        + TIMESTAMP_SIGNATURE_HEADER
+                        + ";signature=";
+        this.macs = ThreadLocal.withInitial(this::newMac);
     }
 
     /**
@@ -62,27 +83,51 @@ public class HmacSignatureHeaderManage {
      * @return HMAC HTTP Headers.
      */
     public Map<String, String> createHmacSignatureHeader(String webhookUrl, String payload) {
+        try {
+            return createHmacSignatureHeader(
+                    webhookUrl, output -> output.write(payload.getBytes(StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Generates the HMAC related HTTP headers map for a payload which is written by the writer.
+     * The signature is updated with the bytes as they are written, so the payload is never held
+     * in memory as a whole.
+     *
+     * @param webhookUrl URL to which the application wants to send the webhook request.
+     * @param payloadWriter writes the JSON payload.
+     * @return HMAC HTTP Headers.
+     * @throws IOException if the payload writer fails.
+     */
+    public Map<String, String> createHmacSignatureHeader(
+            String webhookUrl, PayloadWriter payloadWriter) throws IOException {
+        Mac mac = macs.get();
+        // a previous signing may have failed half way.
+        mac.reset();
+        String nonce = getRandomNonce();
+        String currentTimeStamp = Long.toString(System.currentTimeMillis());
+        mac.update(
+                getSignatureValue(nonce, currentTimeStamp, webhookUrl, "")
+                        .getBytes(StandardCharsets.UTF_8));
+        payloadWriter.writeTo(new MacOutputStream(mac));
+        byte[] hmacBytes = mac.doFinal();
+        Map<String, String> headers = HashMap.newHashMap(3);
+        headers.put(NONCE_SIGNATURE_HEADER, nonce);
+        headers.put(TIMESTAMP_SIGNATURE_HEADER, currentTimeStamp);
+        headers.put(MAIN_SIGNATURE_HEADER, signatureHeaderPrefix + HEX_FORMAT.formatHex(hmacBytes));
+        return headers;
+    }
+
+    private Mac newMac() {
         try {
             Mac mac = Mac.getInstance(hmacAlgorithm);
-            SecretKeySpec secretKeySpec =
-                    new SecretKeySpec(hmacSecretKey.getBytes(), hmacAlgorithm);
             mac.init(secretKeySpec);
-            String nonce = getRandomNonce();
-            String currentTimeStamp = Long.toString(System.currentTimeMillis());
-            byte[] hmacBytes =
-                    mac.doFinal(
-                            getSignatureValue(nonce, currentTimeStamp, webhookUrl, payload)
-                                    .getBytes());
-            Map<String, String> headers = new HashMap<>();
-            headers.put(NONCE_SIGNATURE_HEADER, nonce);
-            headers.put(TIMESTAMP_SIGNATURE_HEADER, currentTimeStamp);
-            headers.put(
-                    MAIN_SIGNATURE_HEADER,
-                    constructSignatureHeader(Hex.encodeHexString(hmacBytes)));
-            return headers;
+            return mac;
         } catch (NoSuchAlgorithmException | InvalidKeyException e) {
             log.error("Failed generating key", e);
-            throw new RuntimeException();
+            throw new IllegalStateException("Failed to initialize " + hmacAlgorithm, e);
         }
     }
 
@@ -98,24 +143,9 @@ public class HmacSignatureHeaderManage {
     }
 
     private String getRandomNonce() {
-        byte[] nonce = new byte[16];
-        SecureRandom secureRandom = new SecureRandom();
+        byte[] nonce = new byte[NONCE_LENGTH];
         secureRandom.nextBytes(nonce);
-        return bytesToHex(nonce);
-    }
-
-    private String bytesToHex(byte[] bytes) {
-        StringBuilder result = new StringBuilder();
-        for (byte b : bytes) {
-            result.append(String.format("%02x", b));
-        }
-        return result.toString();
-    }
-
-    private String constructSignatureHeader(String generatedKey) {
-        return String.format(
-                "algorithm=%s;headers=%s %s;signature=%s",
-                hmacAlgorithm, NONCE_SIGNATURE_HEADER, TIMESTAMP_SIGNATURE_HEADER, generatedKey);
+        return HEX_FORMAT.formatHex(nonce);
     }
 
     private void validateAlgorithmName(String algorithmName)
@@ -127,4 +157,37 @@ public class HmacSignatureHeaderManage {
         }
         throw new InvalidAlgorithmParameterException("Invalid HMAC algorithm: " + algorithmName);
     }
+
+    /** Writes a payload to be signed. */
+    @FunctionalInterface
+    public interface PayloadWriter {
+
+        /**
+         * Write the payload to the output.
+         *
+         * @param output output to write to.
+         * @throws IOException if writing fails.
+         */
+        void writeTo(OutputStream output) throws IOException;
+    }
+
+    /** Output stream which updates the Mac with the bytes written. */
+    private static final class MacOutputStream extends OutputStream {
+
+        private final Mac mac;
+
+        private MacOutputStream(Mac mac) {
+            this.mac = mac;
+        }
+
+        @Override
+        public void write(int b) {
+            mac.update((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            mac.update(b, off, len);
+        }
+    }
 }
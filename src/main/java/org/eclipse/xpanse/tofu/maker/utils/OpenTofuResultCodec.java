@@ -0,0 +1,199 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.utils;
+
+import com.github.luben.zstd.Zstd;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.xpanse.tofu.maker.models.exceptions.UnsupportedEnumValueException;
+
+/**
+ * Compression codecs of the serialized results. The id of the codec is stored in the header of
+ * each serialized result, so that results stay readable when another codec is configured. The
+ * LZ4 codec falls back to a pure Java implementation where the native library is not available,
+ * while ZSTD always needs the native library.
+ */
+public enum OpenTofuResultCodec {
+    NONE("none", (byte) 0) {
+        @Override
+        byte[] encode(byte[] data, byte[] header) {
+            byte[] encoded = Arrays.copyOf(header, header.length + data.length);
+            System.arraycopy(data, 0, encoded, header.length, data.length);
+            return encoded;
+        }
+
+        @Override
+        byte[] decode(byte[] encoded, int offset, int rawLength) {
+            return Arrays.copyOfRange(encoded, offset, offset + rawLength);
+        }
+    },
+
+    GZIP("gzip", (byte) 1) {
+        @Override
+        byte[] encode(byte[] data, byte[] header) {
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream(data.length / 4 + 64);
+            encoded.writeBytes(header);
+            try (GZIPOutputStream output = new GZIPOutputStream(encoded, BUFFER_SIZE)) {
+                output.write(data);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return encoded.toByteArray();
+        }
+
+        @Override
+        byte[] decode(byte[] encoded, int offset, int rawLength) {
+            try (InputStream input =
+                    new GZIPInputStream(
+                            new ByteArrayInputStream(encoded, offset, encoded.length - offset),
+                            BUFFER_SIZE)) {
+                byte[] data = input.readNBytes(rawLength);
+                if (data.length != rawLength) {
+                    throw new IllegalStateException("GZIP decompression failed.");
+                }
+                return data;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    },
+
+    ZSTD("zstd", (byte) 2) {
+        @Override
+        byte[] encode(byte[] data, byte[] header) {
+            byte[] encoded = new byte[header.length + (int) Zstd.compressBound(data.length)];
+            System.arraycopy(header, 0, encoded, 0, header.length);
+            long length =
+                    Zstd.compressByteArray(
+                            encoded,
+                            header.length,
+                            encoded.length - header.length,
+                            data,
+                            0,
+                            data.length,
+                            Zstd.defaultCompressionLevel());
+            if (Zstd.isError(length)) {
+                throw new IllegalStateException(
+                        "ZSTD compression failed. " + Zstd.getErrorName(length));
+            }
+            return Arrays.copyOf(encoded, header.length + (int) length);
+        }
+
+        @Override
+        byte[] decode(byte[] encoded, int offset, int rawLength) {
+            byte[] data = new byte[rawLength];
+            long length =
+                    Zstd.decompressByteArray(
+                            data, 0, rawLength, encoded, offset, encoded.length - offset);
+            if (Zstd.isError(length) || length != rawLength) {
+                throw new IllegalStateException("ZSTD decompression failed.");
+            }
+            return data;
+        }
+    },
+
+    LZ4("lz4", (byte) 3) {
+        @Override
+        byte[] encode(byte[] data, byte[] header) {
+            LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+            byte[] encoded =
+                    new byte[header.length + compressor.maxCompressedLength(data.length)];
+            System.arraycopy(header, 0, encoded, 0, header.length);
+            int length =
+                    compressor.compress(
+                            data,
+                            0,
+                            data.length,
+                            encoded,
+                            header.length,
+                            encoded.length - header.length);
+            return Arrays.copyOf(encoded, header.length + length);
+        }
+
+        @Override
+        byte[] decode(byte[] encoded, int offset, int rawLength) {
+            // the pure Java safe decompressor never reads or writes outside the arrays.
+            LZ4SafeDecompressor decompressor = LZ4Factory.safeInstance().safeDecompressor();
+            byte[] data = new byte[rawLength];
+            int length =
+                    decompressor.decompress(
+                            encoded, offset, encoded.length - offset, data, 0, rawLength);
+            if (length != rawLength) {
+                throw new IllegalStateException("LZ4 decompression failed.");
+            }
+            return data;
+        }
+    };
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String codec;
+    private final byte id;
+
+    OpenTofuResultCodec(String codec, byte id) {
+        this.codec = codec;
+        this.id = id;
+    }
+
+    /**
+     * Compress the data.
+     *
+     * @param data data to compress.
+     * @param header header to write before the compressed data.
+     * @return header followed by the compressed data.
+     */
+    abstract byte[] encode(byte[] data, byte[] header);
+
+    /**
+     * Decompress the data.
+     *
+     * @param encoded array with the compressed data.
+     * @param offset offset of the compressed data in the array.
+     * @param rawLength length of the data before compression.
+     * @return data.
+     */
+    abstract byte[] decode(byte[] encoded, int offset, int rawLength);
+
+    byte getId() {
+        return id;
+    }
+
+    /** Convert string to OpenTofuResultCodec. */
+    public static OpenTofuResultCodec getByValue(String value) {
+        for (OpenTofuResultCodec resultCodec : values()) {
+            if (StringUtils.equalsIgnoreCase(resultCodec.codec, value)) {
+                return resultCodec;
+            }
+        }
+        throw new UnsupportedEnumValueException(
+                String.format("OpenTofuResultCodec value %s is not supported.", value));
+    }
+
+    /** Get the codec with the id stored in the header of a serialized result. */
+    static OpenTofuResultCodec getById(byte id) {
+        for (OpenTofuResultCodec resultCodec : values()) {
+            if (resultCodec.id == id) {
+                return resultCodec;
+            }
+        }
+        throw new IllegalStateException("Unknown result codec id " + id);
+    }
+
+    /** Name of the codec in the configuration. */
+    public String toValue() {
+        return this.codec;
+    }
+}
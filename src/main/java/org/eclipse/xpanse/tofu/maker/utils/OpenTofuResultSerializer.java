@@ -5,22 +5,51 @@
 
 package org.eclipse.xpanse.tofu.maker.utils;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import org.eclipse.serializer.Serializer;
 import org.eclipse.serializer.SerializerFoundation;
 import org.eclipse.xpanse.tofu.maker.models.response.OpenTofuResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-/** class to manage OpenTofuResult serialization and deserialization using eclipse-serializer. */
+/**
+ * class to manage OpenTofuResult serialization and deserialization using eclipse-serializer. The
+ * serialized result is compressed with the configured codec and starts with a header with the
+ * codec and the length before compression. Data without the header, written before the codecs
+ * were introduced, is read as it is.
+ */
 @Component
 public class OpenTofuResultSerializer {
 
+    private static final byte[] FORMAT_MAGIC = {(byte) 0xC0, (byte) 0xDE, 'T', 'R'};
+    // magic, codec id and length of the data before compression.
+    private static final int HEADER_SIZE = FORMAT_MAGIC.length + 1 + Integer.BYTES;
+
     private final Serializer<byte[]> serializer;
+    private final OpenTofuResultCodec codec;
 
-    /** Constructor to initialize the Serializer with OpenTofuResult class registered. */
-    public OpenTofuResultSerializer() {
+    /**
+     * Constructor to initialize the Serializer with OpenTofuResult class registered.
+     *
+     * @param codec value of `tofu.maker.result.codec` property.
+     */
+    @Autowired
+    public OpenTofuResultSerializer(@Value("${tofu.maker.result.codec:none}") String codec) {
+        this(OpenTofuResultCodec.getByValue(codec));
+    }
+
+    /**
+     * Constructor to initialize the Serializer with OpenTofuResult class registered.
+     *
+     * @param codec codec to compress the serialized results with.
+     */
+    public OpenTofuResultSerializer(OpenTofuResultCodec codec) {
         final SerializerFoundation<?> foundation =
                 SerializerFoundation.New().registerEntityTypes(OpenTofuResult.class);
         this.serializer = Serializer.Bytes(foundation);
+        this.codec = codec;
     }
 
     /**
@@ -30,7 +59,13 @@ public class OpenTofuResultSerializer {
      * @return byte[].
      */
     public byte[] serialize(OpenTofuResult result) {
-        return serializer.serialize(result);
+        byte[] data = serializer.serialize(result);
+        ByteBuffer header =
+                ByteBuffer.allocate(HEADER_SIZE)
+                        .put(FORMAT_MAGIC)
+                        .put(codec.getId())
+                        .putInt(data.length);
+        return codec.encode(data, header.array());
     }
 
     /**
@@ -40,6 +75,29 @@ public class OpenTofuResultSerializer {
      * @return OpenTofuResult.
      */
     public OpenTofuResult deserialize(byte[] data) {
-        return serializer.deserialize(data);
+        if (!hasHeader(data)) {
+            return serializer.deserialize(data);
+        }
+        OpenTofuResultCodec dataCodec = OpenTofuResultCodec.getById(data[FORMAT_MAGIC.length]);
+        return serializer.deserialize(dataCodec.decode(data, HEADER_SIZE, getSerializedSize(data)));
+    }
+
+    /**
+     * Get the size of the serialized result before compression.
+     *
+     * @param data byte[].
+     * @return size in bytes.
+     */
+    public int getSerializedSize(byte[] data) {
+        if (!hasHeader(data)) {
+            return data.length;
+        }
+        return ByteBuffer.wrap(data, FORMAT_MAGIC.length + 1, Integer.BYTES).getInt();
+    }
+
+    private boolean hasHeader(byte[] data) {
+        return data.length >= HEADER_SIZE
+                && Arrays.equals(
+                        data, 0, FORMAT_MAGIC.length, FORMAT_MAGIC, 0, FORMAT_MAGIC.length);
     }
 }
@@ -0,0 +1,140 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.webhook;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Body publisher which serializes the body with streaming Jackson while the request is sent, so
+ * the serialized body is never held in memory as a whole. The body is written on a virtual thread
+ * into chunks, which are handed over to the connection with back pressure. At most a few chunks
+ * are buffered per request. Each subscription writes the body again.
+ */
+final class StreamingJsonBodyPublisher implements HttpRequest.BodyPublisher {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int MAX_BUFFERED_CHUNKS = 4;
+    private static final Executor DELIVERY_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final ObjectMapper objectMapper;
+    private final Object body;
+    private final boolean isGzip;
+
+    StreamingJsonBodyPublisher(ObjectMapper objectMapper, Object body, boolean isGzip) {
+        this.objectMapper = objectMapper;
+        this.body = body;
+        this.isGzip = isGzip;
+    }
+
+    @Override
+    public long contentLength() {
+        return -1;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        SubmissionPublisher<ByteBuffer> publisher =
+                new SubmissionPublisher<>(DELIVERY_EXECUTOR, MAX_BUFFERED_CHUNKS);
+        publisher.subscribe(subscriber);
+        Thread.ofVirtual().name("tofu-webhook-body").start(() -> writeBody(publisher));
+    }
+
+    /**
+     * Write the body and complete the publisher. The output is not closed on failure, so that
+     * the request fails instead of sending a truncated body.
+     */
+    private void writeBody(SubmissionPublisher<ByteBuffer> publisher) {
+        try {
+            writeTo(new ChunkOutputStream(publisher));
+        } catch (IOException | RuntimeException e) {
+            publisher.closeExceptionally(e);
+        }
+    }
+
+    /**
+     * Write the bytes of the body as they are sent, compressed when gzip is used, and close the
+     * output. The same body always gives the same bytes, so they can be signed before sending.
+     *
+     * @param target output to write the body to.
+     * @throws IOException if writing the body fails.
+     */
+    void writeTo(OutputStream target) throws IOException {
+        OutputStream output = isGzip ? new GZIPOutputStream(target, CHUNK_SIZE) : target;
+        objectMapper
+                .writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .writeValue(output, body);
+        output.close();
+    }
+
+    /** Output stream which publishes the bytes written in chunks. */
+    private static final class ChunkOutputStream extends OutputStream {
+
+        private final SubmissionPublisher<ByteBuffer> publisher;
+        private byte[] chunk = new byte[CHUNK_SIZE];
+        private int count;
+        private boolean isClosed;
+
+        private ChunkOutputStream(SubmissionPublisher<ByteBuffer> publisher) {
+            this.publisher = publisher;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == chunk.length) {
+                publishChunk();
+            }
+            chunk[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == chunk.length) {
+                    publishChunk();
+                }
+                int length = Math.min(len, chunk.length - count);
+                System.arraycopy(b, off, chunk, count, length);
+                count += length;
+                off += length;
+                len -= length;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (isClosed) {
+                return;
+            }
+            isClosed = true;
+            publishChunk();
+            publisher.close();
+        }
+
+        /** Publish the chunk, waiting while the connection is behind. */
+        private void publishChunk() throws IOException {
+            if (count == 0) {
+                return;
+            }
+            if (publisher.getNumberOfSubscribers() == 0) {
+                throw new IOException("Webhook request was cancelled.");
+            }
+            publisher.submit(ByteBuffer.wrap(chunk, 0, count));
+            chunk = new byte[CHUNK_SIZE];
+            count = 0;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.webhook;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.xpanse.tofu.maker.models.enums.WebhookContentEncoding;
+import org.eclipse.xpanse.tofu.maker.models.exceptions.WebhookDeliveryException;
+import org.eclipse.xpanse.tofu.maker.security.hmac.HmacSignatureHeaderManage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+/**
+ * Non-blocking HTTP client for webhook callbacks. All hosts share one HTTP client with its pool
+ * of keep-alive connections, and each host gets a limit of requests in flight; requests over the
+ * limit wait in a queue without holding a thread. The limit of a host is dropped when it has no
+ * requests left, so that hosts called once don't stay in memory. Bodies are streamed as JSON,
+ * gzip compressed when the webhook asks for it. Requests are signed with HMAC headers when
+ * request signing is enabled; the signature covers the body bytes as sent, i.e. the compressed
+ * bytes when gzip is used.
+ */
+@Slf4j
+@Component
+public class WebhookClient {
+
+    private static final String KEEP_ALIVE_TIMEOUT_PROPERTY = "jdk.httpclient.keepalive.timeout";
+    private static final String CONNECTION_POOL_SIZE_PROPERTY = "jdk.httpclient.connectionPoolSize";
+
+    private final Map<String, HostPool> hostPools = new ConcurrentHashMap<>();
+    private final HttpClient client;
+    private final Set<String> gzipRejectedUrls = ConcurrentHashMap.newKeySet();
+    private final ObjectMapper objectMapper;
+    private final HmacSignatureHeaderManage hmacSignatureHeaderManage;
+    private final Duration connectTimeout;
+    private final Duration requestTimeout;
+    private final int maxConnectionsPerHost;
+
+    /**
+     * Constructor for the WebhookClient bean. The keep-alive timeout and the number of idle
+     * connections kept per host are JVM wide settings of the JDK HTTP client, so they are only
+     * applied when not given as system properties already.
+     *
+     * @param objectMapper mapper to serialize the request bodies.
+     * @param hmacSignatureHeaderManage creates the signature headers, null when disabled.
+     * @param connectTimeoutMillis value of `tofu.maker.webhook.connect.timeout.millis` property.
+     * @param requestTimeoutMillis value of `tofu.maker.webhook.request.timeout.millis` property.
+     *     It limits the whole exchange, from sending the first byte of the body until the
+     *     response is received, so it must allow for uploading the largest results.
+     * @param maxConnectionsPerHost value of `tofu.maker.webhook.max.connections.per.host`.
+     * @param idleConnectionsPerHost value of `tofu.maker.webhook.idle.connections.per.host`.
+     * @param keepAliveSeconds value of `tofu.maker.webhook.keepalive.timeout.seconds` property.
+     */
+    @Autowired
+    public WebhookClient(
+            ObjectMapper objectMapper,
+            @Autowired(required = false) HmacSignatureHeaderManage hmacSignatureHeaderManage,
+            @Value("${tofu.maker.webhook.connect.timeout.millis:15000}") long connectTimeoutMillis,
+            @Value("${tofu.maker.webhook.request.timeout.millis:300000}") long requestTimeoutMillis,
+            @Value("${tofu.maker.webhook.max.connections.per.host:20}") int maxConnectionsPerHost,
+            @Value("${tofu.maker.webhook.idle.connections.per.host:10}")
+                    int idleConnectionsPerHost,
+            @Value("${tofu.maker.webhook.keepalive.timeout.seconds:60}") long keepAliveSeconds) {
+        this.objectMapper = objectMapper;
+        this.hmacSignatureHeaderManage = hmacSignatureHeaderManage;
+        this.connectTimeout = Duration.ofMillis(connectTimeoutMillis);
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMillis);
+        this.maxConnectionsPerHost = Math.max(1, maxConnectionsPerHost);
+        setDefaultSystemProperty(KEEP_ALIVE_TIMEOUT_PROPERTY, String.valueOf(keepAliveSeconds));
+        setDefaultSystemProperty(
+                CONNECTION_POOL_SIZE_PROPERTY, String.valueOf(idleConnectionsPerHost));
+        this.client =
+                HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_1_1)
+                        .connectTimeout(connectTimeout)
+                        .followRedirects(HttpClient.Redirect.NEVER)
+                        .build();
+    }
+
+    /**
+     * Post the body as JSON to the webhook url. The body is serialized while it is sent, and once
+     * more before when the request is signed, so that it is never held in memory as a whole. A
+     * gzip body rejected with 400 or 415 is sent once more uncompressed, and later bodies to the
+     * same url are not compressed.
+     *
+     * @param url url of the webhook.
+     * @param contentEncoding requested content encoding of the body, null for identity.
+     * @param body body of the request.
+     * @return future completed when the webhook responded with a 2xx status, or completed
+     *     exceptionally when the request could not be sent or was not accepted.
+     */
+    public CompletableFuture<Void> post(
+            String url, WebhookContentEncoding contentEncoding, Object body) {
+        URI uri;
+        try {
+            uri = URI.create(url);
+            // fail early on urls which are not absolute, as they are signed per request.
+            uri.toURL();
+        } catch (IOException | RuntimeException e) {
+            return CompletableFuture.failedFuture(
+                    new WebhookDeliveryException("Failed to create request to " + url, e));
+        }
+        boolean isGzip =
+                WebhookContentEncoding.GZIP == contentEncoding && !gzipRejectedUrls.contains(url);
+        long startTime = System.currentTimeMillis();
+        String host = uri.getScheme() + "://" + uri.getAuthority();
+        HostPool hostPool = acquireHostPool(host);
+        return send(hostPool, uri, body, isGzip)
+                .thenCompose(
+                        response -> {
+                            if (isGzip && isGzipRejected(response.statusCode())) {
+                                log.info(
+                                        "Webhook {} rejected gzip with {}, sending uncompressed.",
+                                        url,
+                                        response.statusCode());
+                                gzipRejectedUrls.add(url);
+                                return send(hostPool, uri, body, false);
+                            }
+                            return CompletableFuture.completedFuture(response);
+                        })
+                .thenAccept(
+                        response -> {
+                            log.info(
+                                    "Response: {} Duration: {}ms {}",
+                                    response.statusCode(),
+                                    System.currentTimeMillis() - startTime,
+                                    response.body());
+                            if (response.statusCode() < 200 || response.statusCode() >= 300) {
+                                throw new WebhookDeliveryException(
+                                        "Webhook " + url + " returned " + response.statusCode());
+                            }
+                        })
+                .whenComplete((result, e) -> releaseHostPool(host));
+    }
+
+    private CompletableFuture<HttpResponse<String>> send(
+            HostPool hostPool, URI uri, Object body, boolean isGzip) {
+        StreamingJsonBodyPublisher bodyPublisher =
+                new StreamingJsonBodyPublisher(objectMapper, body, isGzip);
+        Map<String, String> signatureHeaders;
+        try {
+            signatureHeaders =
+                    Objects.nonNull(hmacSignatureHeaderManage)
+                            ? hmacSignatureHeaderManage.createHmacSignatureHeader(
+                                    uri.toURL().toString(), bodyPublisher::writeTo)
+                            : Map.of();
+        } catch (IOException | RuntimeException e) {
+            return CompletableFuture.failedFuture(
+                    new WebhookDeliveryException("Failed to create request to " + uri, e));
+        }
+        HttpRequest.Builder builder =
+                HttpRequest.newBuilder(uri)
+                        .timeout(requestTimeout)
+                        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .POST(bodyPublisher);
+        if (isGzip) {
+            builder.header(HttpHeaders.CONTENT_ENCODING, WebhookContentEncoding.GZIP.toValue());
+        }
+        signatureHeaders.forEach(builder::header);
+        log.info("Request: POST {} gzip:{}", uri, isGzip);
+        return hostPool.send(builder.build());
+    }
+
+    /**
+     * Webhooks which don't support gzip answer either 415, or 400 when they fail to parse the
+     * compressed body as JSON.
+     */
+    private static boolean isGzipRejected(int statusCode) {
+        return statusCode == HttpStatus.UNSUPPORTED_MEDIA_TYPE.value()
+                || statusCode == HttpStatus.BAD_REQUEST.value();
+    }
+
+    /** Get the pool of the host, counting the request so that the pool is not dropped. */
+    private HostPool acquireHostPool(String host) {
+        return hostPools.compute(
+                host,
+                (key, existing) -> {
+                    HostPool hostPool =
+                            Objects.nonNull(existing)
+                                    ? existing
+                                    : new HostPool(client, maxConnectionsPerHost);
+                    hostPool.requests++;
+                    return hostPool;
+                });
+    }
+
+    /** Drop the pool of the host when its last request completed. */
+    private void releaseHostPool(String host) {
+        hostPools.computeIfPresent(
+                host, (key, hostPool) -> --hostPool.requests > 0 ? hostPool : null);
+    }
+
+    /**
+     * Get the number of hosts with requests in flight or queued.
+     *
+     * @return number of hosts.
+     */
+    int getActiveHosts() {
+        return hostPools.size();
+    }
+
+    private static void setDefaultSystemProperty(String name, String value) {
+        if (Objects.isNull(System.getProperty(name))) {
+            System.setProperty(name, value);
+        }
+    }
+
+    /**
+     * Requests in flight to a host. Requests over the limit are queued and sent when a request in
+     * flight completes. Each request added is followed by a drain, and each completed request
+     * releases its permit before it drains, so no queued request is left behind.
+     */
+    private static final class HostPool {
+
+        private final HttpClient client;
+        private final Semaphore permits;
+        private final Queue<Runnable> pendingRequests = new ConcurrentLinkedQueue<>();
+        // posts using the pool, only changed while computing the entry of the pool.
+        private int requests;
+
+        private HostPool(HttpClient client, int maxConnections) {
+            this.client = client;
+            this.permits = new Semaphore(maxConnections);
+        }
+
+        private CompletableFuture<HttpResponse<String>> send(HttpRequest request) {
+            CompletableFuture<HttpResponse<String>> future = new CompletableFuture<>();
+            pendingRequests.add(() -> sendPendingRequest(request, future));
+            drain();
+            return future;
+        }
+
+        private void sendPendingRequest(
+                HttpRequest request, CompletableFuture<HttpResponse<String>> future) {
+            try {
+                client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                        .whenComplete(
+                                (response, e) -> {
+                                    permits.release();
+                                    drain();
+                                    if (Objects.nonNull(e)) {
+                                        future.completeExceptionally(e);
+                                    } else {
+                                        future.complete(response);
+                                    }
+                                });
+            } catch (RuntimeException e) {
+                permits.release();
+                future.completeExceptionally(e);
+            }
+        }
+
+        private void drain() {
+            while (!pendingRequests.isEmpty() && permits.tryAcquire()) {
+                Runnable pendingRequest = pendingRequests.poll();
+                if (Objects.isNull(pendingRequest)) {
+                    permits.release();
+                } else {
+                    pendingRequest.run();
+                }
+            }
+        }
+    }
+}
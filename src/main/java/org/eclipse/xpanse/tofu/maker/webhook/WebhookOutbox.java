@@ -0,0 +1,578 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * SPDX-FileCopyrightText: Huawei Inc.
+ */
+
+package org.eclipse.xpanse.tofu.maker.webhook;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.xpanse.tofu.maker.models.enums.WebhookCallbackMode;
+import org.eclipse.xpanse.tofu.maker.models.enums.WebhookContentEncoding;
+import org.eclipse.xpanse.tofu.maker.models.request.webhook.WebhookConfig;
+import org.eclipse.xpanse.tofu.maker.models.response.OpenTofuResult;
+import org.eclipse.xpanse.tofu.maker.models.response.OpenTofuResultNotification;
+import org.eclipse.xpanse.tofu.maker.opentofu.service.OpenTofuResultPersistenceManage;
+import org.eclipse.xpanse.tofu.maker.utils.OpenTofuResultSerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Durable outbox of the result callbacks. A result is written to the outbox directory before it
+ * is sent, and removed when the webhook accepted it. Failed deliveries are retried with
+ * exponential backoff and jitter. Each webhook host has a circuit breaker, which stops sending
+ * to the host for a while after consecutive failures and then lets a single trial through.
+ * Deliveries still failing after the last attempt are moved to the result store, from where the
+ * result can be fetched by the caller. Deliveries left in the outbox by a restart are resumed.
+ * Webhooks asking for notifications get a summary of the result, while the full result stays in
+ * the result store. Webhooks asking for batched callbacks get the results finishing close
+ * together in one JSON array, sent when the linger time is over or the batch is full. All attempts
+ * are scheduled on a single outbox thread, while the posts are started on virtual threads, so that
+ * signing and serializing a large result doesn't hold up the attempts of other deliveries.
+ */
+@Slf4j
+@Component
+public class WebhookOutbox {
+
+    private static final String OUTBOX_DIRECTORY_NAME = "tofu-maker-webhook-outbox";
+    private static final String DELIVERY_FILE_SUFFIX = ".delivery";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    private final Map<UUID, Delivery> deliveries = new ConcurrentHashMap<>();
+    private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    // only accessed by the retry scheduler thread
+    private final Map<BatchKey, Batch> batches = new HashMap<>();
+    private ScheduledExecutorService retryScheduler;
+    private ExecutorService sendExecutor;
+    private Path outboxDirectory;
+    private Timer deliveryLatencyTimer;
+    private Timer successfulAttemptTimer;
+    private Timer failedAttemptTimer;
+    private Counter retryCounter;
+    private Counter exhaustedCounter;
+    private DistributionSummary batchSizeSummary;
+
+    @Resource private WebhookClient webhookClient;
+    @Resource private OpenTofuResultSerializer resultSerializer;
+    @Resource private OpenTofuResultPersistenceManage resultPersistenceManage;
+    @Resource private MeterRegistry meterRegistry;
+    @Resource private ObjectMapper objectMapper;
+
+    @Value("${tofu.maker.webhook.outbox.directory:}")
+    private String directory;
+
+    @Value("${tofu.maker.webhook.retry.max.attempts:10}")
+    private int maxAttempts;
+
+    @Value("${tofu.maker.webhook.retry.initial.backoff.millis:1000}")
+    private long initialBackoffMillis;
+
+    @Value("${tofu.maker.webhook.retry.max.backoff.millis:60000}")
+    private long maxBackoffMillis;
+
+    @Value("${tofu.maker.webhook.circuit.failure.threshold:5}")
+    private int circuitFailureThreshold;
+
+    @Value("${tofu.maker.webhook.circuit.open.seconds:30}")
+    private long circuitOpenSeconds;
+
+    @Value("${tofu.maker.webhook.batch.linger.millis:200}")
+    private long batchLingerMillis;
+
+    @Value("${tofu.maker.webhook.batch.max.size:100}")
+    private int batchMaxSize;
+
+    /** Register the metrics and resume the deliveries left in the outbox. */
+    @PostConstruct
+    public void open() {
+        deliveryLatencyTimer =
+                Timer.builder("tofu.maker.webhook.delivery.latency")
+                        .description("Time from finishing a task to delivering its result.")
+                        .register(meterRegistry);
+        successfulAttemptTimer = getAttemptTimer("success");
+        failedAttemptTimer = getAttemptTimer("failure");
+        retryCounter =
+                Counter.builder("tofu.maker.webhook.retries")
+                        .description("Retried result callbacks.")
+                        .register(meterRegistry);
+        exhaustedCounter =
+                Counter.builder("tofu.maker.webhook.exhausted")
+                        .description("Result callbacks moved to the result store.")
+                        .register(meterRegistry);
+        batchSizeSummary =
+                DistributionSummary.builder("tofu.maker.webhook.batch.size")
+                        .description("Results sent in one batched callback.")
+                        .register(meterRegistry);
+        Gauge.builder("tofu.maker.webhook.outbox.size", deliveries, Map::size)
+                .description("Result callbacks waiting for delivery.")
+                .register(meterRegistry);
+        retryScheduler =
+                Executors.newSingleThreadScheduledExecutor(
+                        Thread.ofPlatform().name("tofu-webhook-outbox").daemon().factory());
+        sendExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        outboxDirectory =
+                StringUtils.isNotBlank(directory)
+                        ? Paths.get(directory)
+                        : Paths.get(System.getProperty("java.io.tmpdir"), OUTBOX_DIRECTORY_NAME);
+        try {
+            Files.createDirectories(outboxDirectory);
+            resumeDeliveries();
+        } catch (IOException e) {
+            log.error("Open webhook outbox {} failed.", outboxDirectory, e);
+        }
+    }
+
+    /** Stop the retries. Undelivered results stay in the outbox for the next start. */
+    @PreDestroy
+    public void close() {
+        retryScheduler.shutdownNow();
+        sendExecutor.shutdownNow();
+    }
+
+    /**
+     * Write the result to the outbox and send it to the webhook. When the webhook asks for
+     * notifications, the full result is stored to be fetched and only the notification is sent.
+     *
+     * @param webhookConfig config of the webhook.
+     * @param result result of the task.
+     */
+    public void enqueue(WebhookConfig webhookConfig, OpenTofuResult result) {
+        UUID requestId = result.getRequestId();
+        WebhookContentEncoding contentEncoding =
+                Objects.nonNull(webhookConfig.getContentEncoding())
+                        ? webhookConfig.getContentEncoding()
+                        : WebhookContentEncoding.IDENTITY;
+        Object body = result;
+        if (WebhookCallbackMode.NOTIFICATION == webhookConfig.getCallbackMode()) {
+            try {
+                body = resultPersistenceManage.storeOpenTofuResultContent(result);
+            } catch (IOException e) {
+                log.error("Store result {} failed, sending the full result.", requestId, e);
+            }
+        }
+        Delivery delivery =
+                new Delivery(
+                        requestId,
+                        webhookConfig.getUrl(),
+                        contentEncoding,
+                        Boolean.TRUE.equals(webhookConfig.getIsBatched()),
+                        body,
+                        System.currentTimeMillis(),
+                        0);
+        try {
+            writeDelivery(delivery);
+        } catch (IOException e) {
+            log.error("Write result {} to webhook outbox failed.", requestId, e);
+        }
+        deliveries.put(requestId, delivery);
+        retryScheduler.execute(() -> attempt(delivery));
+    }
+
+    /**
+     * Take the result out of the outbox, e.g. when the caller fetches it itself. No further
+     * attempts are made to deliver it.
+     *
+     * @param requestId id of the request.
+     * @return result waiting for delivery, or null when there is none or only a notification.
+     */
+    public OpenTofuResult claim(UUID requestId) {
+        Delivery delivery = deliveries.remove(requestId);
+        if (Objects.isNull(delivery)) {
+            return null;
+        }
+        deleteDelivery(requestId);
+        return delivery.body() instanceof OpenTofuResult result ? result : null;
+    }
+
+    /**
+     * Get the result waiting for delivery without taking it out of the outbox.
+     *
+     * @param requestId id of the request.
+     * @return result waiting for delivery, or null when there is none or only a notification.
+     */
+    public OpenTofuResult peek(UUID requestId) {
+        Delivery delivery = deliveries.get(requestId);
+        return Objects.nonNull(delivery) && delivery.body() instanceof OpenTofuResult result
+                ? result
+                : null;
+    }
+
+    private void attempt(Delivery delivery) {
+        UUID requestId = delivery.requestId();
+        if (deliveries.get(requestId) != delivery) {
+            return;
+        }
+        CircuitBreaker circuitBreaker = getCircuitBreaker(delivery.url());
+        long blockedNanos = circuitBreaker.getBlockedNanos();
+        if (blockedNanos > 0) {
+            retryScheduler.schedule(() -> attempt(delivery), blockedNanos, TimeUnit.NANOSECONDS);
+            return;
+        }
+        if (delivery.isBatched()) {
+            addToBatch(delivery);
+        } else {
+            send(delivery.url(), delivery.contentEncoding(), delivery.body(), List.of(delivery));
+        }
+    }
+
+    /**
+     * Add the delivery to the open batch of its webhook. The first delivery of a batch schedules
+     * sending it after the linger time, and the batch is sent right away once it is full.
+     */
+    private void addToBatch(Delivery delivery) {
+        BatchKey key = new BatchKey(delivery.url(), delivery.contentEncoding());
+        Batch batch = batches.get(key);
+        if (Objects.isNull(batch)) {
+            Batch newBatch = new Batch(key);
+            batches.put(key, newBatch);
+            retryScheduler.schedule(
+                    () -> sendBatch(newBatch), batchLingerMillis, TimeUnit.MILLISECONDS);
+            batch = newBatch;
+        }
+        batch.deliveries.add(delivery);
+        if (batch.deliveries.size() >= batchMaxSize) {
+            sendBatch(batch);
+        }
+    }
+
+    /** Send the deliveries of the batch not claimed meanwhile as one array. */
+    private void sendBatch(Batch batch) {
+        if (!batches.remove(batch.key, batch)) {
+            return;
+        }
+        List<Delivery> pending =
+                batch.deliveries.stream()
+                        .filter(delivery -> deliveries.get(delivery.requestId()) == delivery)
+                        .toList();
+        if (pending.isEmpty()) {
+            return;
+        }
+        batchSizeSummary.record(pending.size());
+        List<Object> bodies = pending.stream().map(Delivery::body).toList();
+        send(batch.key.url(), batch.key.contentEncoding(), bodies, pending);
+    }
+
+    /** Post the body, and complete or retry each of the deliveries it carries. */
+    private void send(
+            String url,
+            WebhookContentEncoding contentEncoding,
+            Object body,
+            List<Delivery> sentDeliveries) {
+        CircuitBreaker circuitBreaker = getCircuitBreaker(url);
+        long startTime = System.nanoTime();
+        CompletableFuture.supplyAsync(
+                        () -> webhookClient.post(url, contentEncoding, body), sendExecutor)
+                .thenCompose(Function.identity())
+                .whenComplete(
+                        (ignored, e) -> {
+                            Duration duration = Duration.ofNanos(System.nanoTime() - startTime);
+                            if (Objects.isNull(e)) {
+                                successfulAttemptTimer.record(duration);
+                                circuitBreaker.succeeded();
+                                sentDeliveries.forEach(this::delivered);
+                            } else {
+                                failedAttemptTimer.record(duration);
+                                circuitBreaker.failed();
+                                sentDeliveries.forEach(delivery -> failed(delivery, e));
+                            }
+                        });
+    }
+
+    private CircuitBreaker getCircuitBreaker(String url) {
+        return circuitBreakers.computeIfAbsent(getHost(url), host -> new CircuitBreaker());
+    }
+
+    private void delivered(Delivery delivery) {
+        UUID requestId = delivery.requestId();
+        deliveryLatencyTimer.record(
+                Duration.ofMillis(System.currentTimeMillis() - delivery.enqueuedTime()));
+        if (deliveries.remove(requestId, delivery)) {
+            deleteDelivery(requestId);
+        }
+    }
+
+    private void failed(Delivery delivery, Throwable e) {
+        UUID requestId = delivery.requestId();
+        int attempts = delivery.attempts() + 1;
+        if (attempts >= maxAttempts) {
+            log.error(
+                    "Delivery of result {} failed after {} attempts, it is left in the result"
+                            + " store.",
+                    requestId,
+                    attempts,
+                    e);
+            if (deliveries.get(requestId) != delivery) {
+                return;
+            }
+            exhaustedCounter.increment();
+            if (delivery.body() instanceof OpenTofuResult result) {
+                try {
+                    resultPersistenceManage.persistOpenTofuResult(result);
+                } catch (IOException ex) {
+                    // the outbox file is the only durable copy of the result then. It stays
+                    // fetchable from the outbox and is delivered again after a restart.
+                    log.error(
+                            "Storing result {} failed, it is kept in the webhook outbox.",
+                            requestId,
+                            ex);
+                    return;
+                }
+            }
+            if (deliveries.remove(requestId, delivery)) {
+                deleteDelivery(requestId);
+            }
+            return;
+        }
+        Delivery retry = delivery.withAttempts(attempts);
+        if (!deliveries.replace(requestId, delivery, retry)) {
+            return;
+        }
+        try {
+            writeDelivery(retry);
+        } catch (IOException ex) {
+            log.warn("Update result {} in webhook outbox failed.", requestId, ex);
+        }
+        long backoffMillis = getBackoffMillis(attempts);
+        log.warn(
+                "Delivery of result {} failed, retry {} in {}ms. {}",
+                requestId,
+                attempts,
+                backoffMillis,
+                e.getMessage());
+        retryCounter.increment();
+        retryScheduler.schedule(() -> attempt(retry), backoffMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Exponential backoff with equal jitter, so that retries to the same host spread out. */
+    private long getBackoffMillis(int attempts) {
+        long backoff =
+                Math.min(
+                        maxBackoffMillis,
+                        initialBackoffMillis << Math.min(attempts - 1, Long.SIZE - 2));
+        long half = Math.max(1, backoff / 2);
+        return half + ThreadLocalRandom.current().nextLong(half);
+    }
+
+    private void resumeDeliveries() throws IOException {
+        try (DirectoryStream<Path> files =
+                Files.newDirectoryStream(outboxDirectory, "*" + DELIVERY_FILE_SUFFIX)) {
+            for (Path file : files) {
+                try {
+                    Delivery delivery = readDelivery(file);
+                    deliveries.put(delivery.requestId(), delivery);
+                    retryScheduler.execute(() -> attempt(delivery));
+                } catch (IOException | RuntimeException e) {
+                    log.error("Read webhook outbox file {} failed.", file, e);
+                }
+            }
+        }
+        if (!deliveries.isEmpty()) {
+            log.info("Resumed {} result callbacks from the webhook outbox.", deliveries.size());
+        }
+    }
+
+    /**
+     * Write the delivery to a temporary file and move it over the previous version. The body is
+     * written straight to the file, so that only its serialized copy is held in memory.
+     */
+    private void writeDelivery(Delivery delivery) throws IOException {
+        boolean isNotification = delivery.body() instanceof OpenTofuResultNotification;
+        byte[] body =
+                isNotification
+                        ? objectMapper.writeValueAsBytes(delivery.body())
+                        : resultSerializer.serialize((OpenTofuResult) delivery.body());
+        Path file = getDeliveryFile(delivery.requestId());
+        Path tempFile = file.resolveSibling(file.getFileName() + TEMP_FILE_SUFFIX);
+        try (FileChannel channel =
+                FileChannel.open(
+                        tempFile,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            // not closed, as that would close the channel before it is forced.
+            DataOutputStream output =
+                    new DataOutputStream(
+                            new BufferedOutputStream(Channels.newOutputStream(channel)));
+            output.writeUTF(delivery.requestId().toString());
+            output.writeUTF(delivery.url());
+            output.writeUTF(delivery.contentEncoding().name());
+            output.writeBoolean(delivery.isBatched());
+            output.writeLong(delivery.enqueuedTime());
+            output.writeInt(delivery.attempts());
+            output.writeBoolean(isNotification);
+            output.writeInt(body.length);
+            output.write(body);
+            output.flush();
+            channel.force(false);
+        }
+        Files.move(
+                tempFile,
+                file,
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Delivery readDelivery(Path file) throws IOException {
+        try (DataInputStream input = new DataInputStream(Files.newInputStream(file))) {
+            UUID requestId = UUID.fromString(input.readUTF());
+            String url = input.readUTF();
+            WebhookContentEncoding contentEncoding =
+                    WebhookContentEncoding.valueOf(input.readUTF());
+            boolean isBatched = input.readBoolean();
+            long enqueuedTime = input.readLong();
+            int attempts = input.readInt();
+            boolean isNotification = input.readBoolean();
+            byte[] body = input.readNBytes(input.readInt());
+            return new Delivery(
+                    requestId,
+                    url,
+                    contentEncoding,
+                    isBatched,
+                    isNotification
+                            ? objectMapper.readValue(body, OpenTofuResultNotification.class)
+                            : resultSerializer.deserialize(body),
+                    enqueuedTime,
+                    attempts);
+        }
+    }
+
+    private void deleteDelivery(UUID requestId) {
+        try {
+            Files.deleteIfExists(getDeliveryFile(requestId));
+        } catch (IOException e) {
+            log.warn("Delete result {} from webhook outbox failed.", requestId, e);
+        }
+    }
+
+    private Path getDeliveryFile(UUID requestId) {
+        return outboxDirectory.resolve(requestId + DELIVERY_FILE_SUFFIX);
+    }
+
+    private Timer getAttemptTimer(String outcome) {
+        return Timer.builder("tofu.maker.webhook.attempt")
+                .description("Duration of result callback attempts.")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static String getHost(String url) {
+        try {
+            URI uri = URI.create(url);
+            return uri.getScheme() + "://" + uri.getAuthority();
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+
+    /**
+     * Delivery of a callback.
+     *
+     * @param isBatched whether the delivery may be sent in a batch with others.
+     * @param body full result or notification sent to the webhook.
+     */
+    private record Delivery(
+            UUID requestId,
+            String url,
+            WebhookContentEncoding contentEncoding,
+            boolean isBatched,
+            Object body,
+            long enqueuedTime,
+            int attempts) {
+
+        private Delivery withAttempts(int newAttempts) {
+            return new Delivery(
+                    requestId, url, contentEncoding, isBatched, body, enqueuedTime, newAttempts);
+        }
+    }
+
+    /** Webhook and content encoding a batch is sent with. */
+    private record BatchKey(String url, WebhookContentEncoding contentEncoding) {}
+
+    /** Deliveries collected to be sent together. */
+    private static final class Batch {
+
+        private final BatchKey key;
+        private final List<Delivery> deliveries = new ArrayList<>();
+
+        private Batch(BatchKey key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Circuit breaker of a webhook host. It opens after consecutive failures and blocks the host
+     * until the open period is over. Then a single trial is let through, which closes the circuit
+     * on success or opens it again on failure.
+     */
+    private final class CircuitBreaker {
+
+        private int consecutiveFailures;
+        private long openUntilNanos;
+        private boolean isTrialInFlight;
+
+        private synchronized long getBlockedNanos() {
+            if (consecutiveFailures < circuitFailureThreshold) {
+                return 0;
+            }
+            long remainingNanos = openUntilNanos - System.nanoTime();
+            if (remainingNanos > 0) {
+                return remainingNanos;
+            }
+            if (isTrialInFlight) {
+                return TimeUnit.SECONDS.toNanos(circuitOpenSeconds);
+            }
+            isTrialInFlight = true;
+            return 0;
+        }
+
+        private synchronized void succeeded() {
+            consecutiveFailures = 0;
+            isTrialInFlight = false;
+        }
+
+        private synchronized void failed() {
+            consecutiveFailures++;
+            isTrialInFlight = false;
+            if (consecutiveFailures >= circuitFailureThreshold) {
+                openUntilNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(circuitOpenSeconds);
+            }
+        }
+    }
+}
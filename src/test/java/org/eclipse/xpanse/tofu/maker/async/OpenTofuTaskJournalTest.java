@@ -0,0 +1,135 @@
+package org.eclipse.xpanse.tofu.maker.async;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.UUID;
+import org.eclipse.xpanse.tofu.maker.models.enums.RequestType;
+import org.eclipse.xpanse.tofu.maker.models.request.directory.OpenTofuAsyncRequestWithScriptsDirectory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class OpenTofuTaskJournalTest {
+
+    @TempDir private Path workspace;
+
+    private OpenTofuTaskJournal journal;
+
+    @AfterEach
+    void tearDown() {
+        journal.close();
+    }
+
+    @Test
+    void testRecoversUnfinishedTasksAndSkipsTornRecord() throws Exception {
+        journal = newJournal(Long.MAX_VALUE);
+        OpenTofuAsyncRequestWithScriptsDirectory acceptedRequest = newRequest();
+        OpenTofuAsyncRequestWithScriptsDirectory startedRequest = newRequest();
+        OpenTofuAsyncRequestWithScriptsDirectory completedRequest = newRequest();
+        journal.accepted(acceptedRequest);
+        journal.accepted(startedRequest);
+        journal.started(startedRequest.getRequestId());
+        journal.accepted(completedRequest);
+        journal.completed(completedRequest.getRequestId());
+        journal.close();
+        // a crash while writing leaves an incomplete last record.
+        Files.writeString(
+                getJournalFile(), "{\"type\":\"ACCEPTED\",\"requ", StandardOpenOption.APPEND);
+
+        journal = newJournal(Long.MAX_VALUE);
+
+        List<OpenTofuTaskJournal.RecoveredTask> recoveredTasks = journal.takeRecoveredTasks();
+        assertEquals(2, recoveredTasks.size());
+        OpenTofuTaskJournal.RecoveredTask recoveredAccepted = recoveredTasks.get(0);
+        assertEquals(acceptedRequest.getRequestId(), recoveredAccepted.request().getRequestId());
+        assertFalse(recoveredAccepted.isStarted());
+        OpenTofuTaskJournal.RecoveredTask recoveredStarted = recoveredTasks.get(1);
+        assertEquals(startedRequest.getRequestId(), recoveredStarted.request().getRequestId());
+        assertTrue(recoveredStarted.isStarted());
+        assertTrue(journal.takeRecoveredTasks().isEmpty());
+        assertEquals(3, Files.readAllLines(getJournalFile()).size());
+    }
+
+    @Test
+    void testCompactsJournalAboveThreshold() throws Exception {
+        journal = newJournal(1);
+        OpenTofuAsyncRequestWithScriptsDirectory completedRequest = newRequest();
+        OpenTofuAsyncRequestWithScriptsDirectory unfinishedRequest = newRequest();
+        journal.accepted(completedRequest);
+        journal.completed(completedRequest.getRequestId());
+        journal.accepted(unfinishedRequest);
+        journal.close();
+
+        List<String> lines = Files.readAllLines(getJournalFile(), StandardCharsets.UTF_8);
+        assertEquals(1, lines.size());
+        assertTrue(lines.getFirst().contains(unfinishedRequest.getRequestId().toString()));
+        assertFalse(Files.exists(workspace.resolve("tasks.journal.compact")));
+    }
+
+    @Test
+    void testCloseWritesPendingRecords() throws Exception {
+        journal = newJournal(Long.MAX_VALUE);
+        OpenTofuAsyncRequestWithScriptsDirectory request = newRequest();
+        journal.accepted(request);
+        journal.started(request.getRequestId());
+        journal.close();
+
+        assertFalse(journal.isEnabled());
+        journal = newJournal(Long.MAX_VALUE);
+        List<OpenTofuTaskJournal.RecoveredTask> recoveredTasks = journal.takeRecoveredTasks();
+        assertEquals(1, recoveredTasks.size());
+        assertTrue(recoveredTasks.getFirst().isStarted());
+    }
+
+    @Test
+    void testJournalIsOnlyAccessibleByOwner() throws Exception {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        Files.setPosixFilePermissions(workspace, PosixFilePermissions.fromString("rwxr-xr-x"));
+        journal = newJournal(Long.MAX_VALUE);
+        journal.accepted(newRequest());
+
+        assertEquals(
+                PosixFilePermissions.fromString("rwx------"),
+                Files.getPosixFilePermissions(workspace));
+        assertEquals(
+                PosixFilePermissions.fromString("rw-------"),
+                Files.getPosixFilePermissions(getJournalFile()));
+    }
+
+    private OpenTofuTaskJournal newJournal(long compactThresholdBytes) {
+        OpenTofuTaskJournal taskJournal = new OpenTofuTaskJournal();
+        ReflectionTestUtils.setField(taskJournal, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(taskJournal, "isJournalEnabled", true);
+        ReflectionTestUtils.setField(taskJournal, "journalDirectory", workspace.toString());
+        ReflectionTestUtils.setField(taskJournal, "compactThresholdBytes", compactThresholdBytes);
+        ReflectionTestUtils.setField(taskJournal, "writeTimeoutMillis", 5000L);
+        taskJournal.open();
+        assertTrue(taskJournal.isEnabled());
+        return taskJournal;
+    }
+
+    private Path getJournalFile() {
+        return workspace.resolve("tasks.journal");
+    }
+
+    private OpenTofuAsyncRequestWithScriptsDirectory newRequest() {
+        OpenTofuAsyncRequestWithScriptsDirectory request =
+                new OpenTofuAsyncRequestWithScriptsDirectory();
+        request.setRequestId(UUID.randomUUID());
+        request.setRequestType(RequestType.DEPLOY);
+        request.setScriptsDirectory(workspace.resolve("scripts").toString());
+        return request;
+    }
+}
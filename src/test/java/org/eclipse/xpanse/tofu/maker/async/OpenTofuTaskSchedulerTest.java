@@ -0,0 +1,270 @@
+package org.eclipse.xpanse.tofu.maker.async;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.xpanse.tofu.maker.models.enums.RequestType;
+import org.eclipse.xpanse.tofu.maker.models.request.directory.OpenTofuAsyncRequestWithScriptsDirectory;
+import org.eclipse.xpanse.tofu.maker.models.request.webhook.WebhookConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class OpenTofuTaskSchedulerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService taskExecutor = Executors.newCachedThreadPool();
+    private final BlockingQueue<String> startedTasks = new LinkedBlockingQueue<>();
+
+    @TempDir private Path workspace;
+
+    private OpenTofuTaskScheduler taskScheduler;
+
+    @AfterEach
+    void tearDown() {
+        taskScheduler.stop();
+        taskExecutor.shutdownNow();
+    }
+
+    @Test
+    void testSaturatedProviderDoesNotBlockOtherProviders() throws Exception {
+        taskScheduler =
+                newTaskScheduler(2, new TaskKeyLimiter("provider:huaweicloud=1", meterRegistry));
+        CountDownLatch release = new CountDownLatch(1);
+        taskScheduler.schedule(
+                newRequest("huaweicloud"),
+                () -> {
+                    startedTasks.add("huaweicloud-1");
+                    await(release);
+                });
+        assertEquals("huaweicloud-1", startedTasks.poll(5, TimeUnit.SECONDS));
+
+        taskScheduler.schedule(newRequest("huaweicloud"), () -> startedTasks.add("huaweicloud-2"));
+        taskScheduler.schedule(newRequest("openstack"), () -> startedTasks.add("openstack-1"));
+
+        assertEquals("openstack-1", startedTasks.poll(5, TimeUnit.SECONDS));
+        assertNull(startedTasks.poll(200, TimeUnit.MILLISECONDS));
+        release.countDown();
+        assertEquals("huaweicloud-2", startedTasks.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testTenantsShareByWeight() throws Exception {
+        taskScheduler =
+                newTaskScheduler(
+                        taskExecutor,
+                        new TaskSlotLimiter(1, 0, meterRegistry),
+                        1,
+                        "a.example.com:2",
+                        300L);
+        CountDownLatch release = scheduleBlockingTask();
+
+        for (int i = 1; i <= 3; i++) {
+            String name = "b-" + i;
+            taskScheduler.schedule(
+                    newTenantRequest("b.example.com", RequestType.DEPLOY),
+                    () -> startedTasks.add(name));
+        }
+        for (int i = 1; i <= 3; i++) {
+            String name = "a-" + i;
+            taskScheduler.schedule(
+                    newTenantRequest("a.example.com", RequestType.DEPLOY),
+                    () -> startedTasks.add(name));
+        }
+        release.countDown();
+
+        assertEquals(List.of("a-1", "b-1", "a-2", "a-3", "b-2", "b-3"), pollStartedTasks(6));
+        @SuppressWarnings("unchecked")
+        Map<TaskPriority, Map<String, Double>> lastFinishTags =
+                (Map<TaskPriority, Map<String, Double>>)
+                        ReflectionTestUtils.getField(taskScheduler, "lastFinishTags");
+        assertTrue(lastFinishTags.values().stream().allMatch(Map::isEmpty));
+    }
+
+    @Test
+    void testHigherPriorityClassRunsFirst() throws Exception {
+        taskScheduler =
+                newTaskScheduler(
+                        taskExecutor, new TaskSlotLimiter(1, 0, meterRegistry), 1, "", 300L);
+        CountDownLatch release = scheduleBlockingTask();
+
+        taskScheduler.schedule(
+                newTenantRequest("a.example.com", RequestType.DEPLOY),
+                () -> startedTasks.add("deploy"));
+        taskScheduler.schedule(
+                newTenantRequest("a.example.com", RequestType.DESTROY),
+                () -> startedTasks.add("destroy"));
+        release.countDown();
+
+        assertEquals(List.of("destroy", "deploy"), pollStartedTasks(2));
+    }
+
+    @Test
+    void testAgedTaskRunsBeforeHigherPriorityClass() throws Exception {
+        taskScheduler =
+                newTaskScheduler(taskExecutor, new TaskSlotLimiter(1, 0, meterRegistry), 1, "", 0L);
+        CountDownLatch release = scheduleBlockingTask();
+
+        taskScheduler.schedule(
+                newTenantRequest("a.example.com", RequestType.DEPLOY),
+                () -> startedTasks.add("deploy"));
+        taskScheduler.schedule(
+                newTenantRequest("a.example.com", RequestType.DESTROY),
+                () -> startedTasks.add("destroy"));
+        TimeUnit.MILLISECONDS.sleep(10);
+        release.countDown();
+
+        assertEquals(List.of("deploy", "destroy"), pollStartedTasks(2));
+    }
+
+    @Test
+    void testDispatchFollowsSlotLimit() throws Exception {
+        TaskSlotLimiter taskSlotLimiter = new TaskSlotLimiter(1, 2, meterRegistry);
+        taskScheduler = newTaskScheduler(taskExecutor, taskSlotLimiter, 0, "", 300L);
+        CountDownLatch release = scheduleBlockingTask();
+
+        taskScheduler.schedule(
+                newTenantRequest("a.example.com", RequestType.DEPLOY),
+                () -> startedTasks.add("second"));
+        assertNull(startedTasks.poll(300, TimeUnit.MILLISECONDS));
+
+        taskSlotLimiter.setSlotLimit(2);
+        assertEquals("second", startedTasks.poll(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    @Test
+    void testDispatcherSurvivesExecutorFailure() throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+        Executor failingOnceExecutor =
+                command -> {
+                    if (executions.getAndIncrement() == 0) {
+                        throw new IllegalStateException("executor failure");
+                    }
+                    taskExecutor.execute(command);
+                };
+        taskScheduler =
+                newTaskScheduler(
+                        failingOnceExecutor, new TaskSlotLimiter(1, 0, meterRegistry), 1, "", 300L);
+
+        taskScheduler.schedule(
+                newTenantRequest("a.example.com", RequestType.DEPLOY),
+                () -> startedTasks.add("task"));
+
+        assertEquals("task", startedTasks.poll(5, TimeUnit.SECONDS));
+        assertEquals(2, executions.get());
+    }
+
+    private CountDownLatch scheduleBlockingTask() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        taskScheduler.schedule(
+                newTenantRequest("blocking.example.com", RequestType.DEPLOY),
+                () -> {
+                    startedTasks.add("blocking");
+                    await(release);
+                });
+        assertEquals("blocking", startedTasks.poll(5, TimeUnit.SECONDS));
+        return release;
+    }
+
+    private List<String> pollStartedTasks(int count) throws InterruptedException {
+        List<String> tasks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            tasks.add(startedTasks.poll(5, TimeUnit.SECONDS));
+        }
+        return tasks;
+    }
+
+    private OpenTofuTaskScheduler newTaskScheduler(int maxRunning, TaskKeyLimiter taskKeyLimiter) {
+        return newTaskScheduler(
+                taskExecutor,
+                new TaskSlotLimiter(maxRunning, 0, meterRegistry),
+                taskKeyLimiter,
+                maxRunning,
+                "",
+                300L);
+    }
+
+    private OpenTofuTaskScheduler newTaskScheduler(
+            Executor executor,
+            TaskSlotLimiter taskSlotLimiter,
+            int maxRunning,
+            String tenantWeights,
+            long agingSeconds) {
+        return newTaskScheduler(
+                executor,
+                taskSlotLimiter,
+                new TaskKeyLimiter("", meterRegistry),
+                maxRunning,
+                tenantWeights,
+                agingSeconds);
+    }
+
+    private OpenTofuTaskScheduler newTaskScheduler(
+            Executor executor,
+            TaskSlotLimiter taskSlotLimiter,
+            TaskKeyLimiter taskKeyLimiter,
+            int maxRunning,
+            String tenantWeights,
+            long agingSeconds) {
+        OpenTofuTaskScheduler scheduler = new OpenTofuTaskScheduler();
+        ReflectionTestUtils.setField(scheduler, "taskExecutor", executor);
+        ReflectionTestUtils.setField(scheduler, "taskSlotLimiter", taskSlotLimiter);
+        ReflectionTestUtils.setField(scheduler, "taskKeyLimiter", taskKeyLimiter);
+        ReflectionTestUtils.setField(scheduler, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(scheduler, "maxRunningTasks", maxRunning);
+        ReflectionTestUtils.setField(scheduler, "tenantWeightsConfig", tenantWeights);
+        ReflectionTestUtils.setField(scheduler, "agingSeconds", agingSeconds);
+        scheduler.start();
+        return scheduler;
+    }
+
+    private OpenTofuAsyncRequestWithScriptsDirectory newTenantRequest(
+            String host, RequestType requestType) {
+        WebhookConfig webhookConfig = new WebhookConfig();
+        webhookConfig.setUrl("http://" + host + "/callback");
+        OpenTofuAsyncRequestWithScriptsDirectory request =
+                new OpenTofuAsyncRequestWithScriptsDirectory();
+        request.setRequestId(UUID.randomUUID());
+        request.setRequestType(requestType);
+        request.setWebhookConfig(webhookConfig);
+        return request;
+    }
+
+    private OpenTofuAsyncRequestWithScriptsDirectory newRequest(String provider) throws Exception {
+        Path scriptsDirectory = Files.createTempDirectory(workspace, "scripts");
+        Files.writeString(
+                scriptsDirectory.resolve("main.tf"), "provider \"" + provider + "\" {}\n");
+        OpenTofuAsyncRequestWithScriptsDirectory request =
+                new OpenTofuAsyncRequestWithScriptsDirectory();
+        request.setRequestId(UUID.randomUUID());
+        request.setRequestType(RequestType.DEPLOY);
+        request.setScriptsDirectory(scriptsDirectory.toString());
+        return request;
+    }
+
+    private void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.eclipse.xpanse.tofu.maker.async;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.xpanse.tofu.maker.models.enums.RequestType;
+import org.eclipse.xpanse.tofu.maker.models.request.directory.OpenTofuRequestWithScriptsDirectory;
+import org.junit.jupiter.api.Test;
+
+class TaskDeduplicatorTest {
+
+    private final TaskDeduplicator taskDeduplicator = new TaskDeduplicator(600, 100);
+    private final AtomicInteger runs = new AtomicInteger();
+
+    @Test
+    void testDuplicateRequestGetsResultOfRunningTask() throws Exception {
+        OpenTofuRequestWithScriptsDirectory request = newRequest(RequestType.DEPLOY);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> first =
+                CompletableFuture.supplyAsync(
+                        () ->
+                                taskDeduplicator.runOnce(
+                                        request,
+                                        () -> {
+                                            started.countDown();
+                                            await(release);
+                                            return "result-" + runs.incrementAndGet();
+                                        }));
+        started.await();
+        CompletableFuture<String> duplicate =
+                CompletableFuture.supplyAsync(
+                        () ->
+                                taskDeduplicator.runOnce(
+                                        request, () -> "result-" + runs.incrementAndGet()));
+        release.countDown();
+
+        assertEquals("result-1", first.get());
+        assertEquals("result-1", duplicate.get());
+        assertEquals("result-1", taskDeduplicator.runOnce(request, () -> "result-2"));
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void testFailedRequestCanBeRetried() {
+        OpenTofuRequestWithScriptsDirectory request = newRequest(RequestType.PLAN);
+        assertThrows(
+                IllegalStateException.class,
+                () ->
+                        taskDeduplicator.runOnce(
+                                request,
+                                () -> {
+                                    throw new IllegalStateException("failed");
+                                }));
+
+        assertEquals("retried", taskDeduplicator.runOnce(request, () -> "retried"));
+    }
+
+    @Test
+    void testRunningTaskIsNotEvictedByCompletedTasks() throws Exception {
+        TaskDeduplicator smallDeduplicator = new TaskDeduplicator(600, 1);
+        OpenTofuRequestWithScriptsDirectory request = newRequest(RequestType.DEPLOY);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> first =
+                CompletableFuture.supplyAsync(
+                        () ->
+                                smallDeduplicator.runOnce(
+                                        request,
+                                        () -> {
+                                            started.countDown();
+                                            await(release);
+                                            return "result-" + runs.incrementAndGet();
+                                        }));
+        started.await();
+        for (int i = 0; i < 10; i++) {
+            smallDeduplicator.runOnce(newRequest(RequestType.PLAN), () -> "other");
+        }
+        CompletableFuture<String> duplicate =
+                CompletableFuture.supplyAsync(
+                        () ->
+                                smallDeduplicator.runOnce(
+                                        request, () -> "result-" + runs.incrementAndGet()));
+        release.countDown();
+
+        assertEquals("result-1", first.get());
+        assertEquals("result-1", duplicate.get());
+        assertEquals(1, runs.get());
+    }
+
+    private OpenTofuRequestWithScriptsDirectory newRequest(RequestType requestType) {
+        OpenTofuRequestWithScriptsDirectory request = new OpenTofuRequestWithScriptsDirectory();
+        request.setRequestId(UUID.randomUUID());
+        request.setRequestType(requestType);
+        return request;
+    }
+
+    private void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.eclipse.xpanse.tofu.maker.async;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.eclipse.xpanse.tofu.maker.models.request.directory.OpenTofuRequestWithScriptsDirectory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TaskKeyLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @TempDir private Path workspace;
+
+    @Test
+    void testTasksWithSameProviderWaitForPermit() throws Exception {
+        Files.writeString(
+                workspace.resolve("main.tf"),
+                """
+                terraform {
+                  required_providers {
+                    huaweicloud = {
+                      source = "huaweicloud/huaweicloud"
+                    }
+                  }
+                }
+                provider "huaweicloud" {
+                  region = var.region
+                }
+                """);
+        TaskKeyLimiter taskKeyLimiter =
+                new TaskKeyLimiter("provider:HuaweiCloud=1,invalid,var:region=0", meterRegistry);
+        OpenTofuRequestWithScriptsDirectory request = newRequest(Map.of("region", "eu-west-101"));
+
+        TaskKeyLimiter.Permits permits = taskKeyLimiter.acquire(request);
+        assertEquals(1, permits.keys().size());
+        CompletableFuture<TaskKeyLimiter.Permits> waiting =
+                CompletableFuture.supplyAsync(() -> taskKeyLimiter.acquire(request));
+        assertThrowsTimeout(waiting);
+        assertFalse(waiting.isDone());
+
+        permits.close();
+        waiting.get(5, TimeUnit.SECONDS).close();
+        assertEquals(
+                2,
+                meterRegistry
+                        .get("tofu.maker.task.key.wait")
+                        .tag("rule", "provider:huaweicloud")
+                        .timer()
+                        .count());
+    }
+
+    @Test
+    void testTasksWithDifferentVariableValuesDontWait() {
+        TaskKeyLimiter taskKeyLimiter = new TaskKeyLimiter("var:region=1", meterRegistry);
+
+        TaskKeyLimiter.Permits first = taskKeyLimiter.acquire(newRequest(Map.of("region", "a")));
+        TaskKeyLimiter.Permits second = taskKeyLimiter.acquire(newRequest(Map.of("region", "b")));
+        TaskKeyLimiter.Permits none = taskKeyLimiter.acquire(newRequest(Map.of()));
+
+        assertEquals(1, first.keys().size());
+        assertEquals(1, second.keys().size());
+        assertTrue(none.keys().isEmpty());
+        first.close();
+        second.close();
+        assertEquals(
+                2,
+                meterRegistry
+                        .get("tofu.maker.task.key.wait")
+                        .tag("rule", "var:region")
+                        .timer()
+                        .count());
+        assertTrue(
+                meterRegistry
+                        .find("tofu.maker.task.key.wait")
+                        .tag("rule", "var:region=a")
+                        .timers()
+                        .isEmpty());
+    }
+
+    private OpenTofuRequestWithScriptsDirectory newRequest(Map<String, Object> variables) {
+        OpenTofuRequestWithScriptsDirectory request = new OpenTofuRequestWithScriptsDirectory();
+        request.setScriptsDirectory(workspace.toString());
+        request.setVariables(variables);
+        return request;
+    }
+
+    private void assertThrowsTimeout(CompletableFuture<?> future) {
+        try {
+            future.get(200, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return;
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+        throw new AssertionError("Expected the task to wait for a permit.");
+    }
+}
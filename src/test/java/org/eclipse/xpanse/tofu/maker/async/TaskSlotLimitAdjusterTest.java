@@ -0,0 +1,44 @@
+package org.eclipse.xpanse.tofu.maker.async;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class TaskSlotLimitAdjusterTest {
+
+    private final TaskSlotLimiter taskSlotLimiter =
+            new TaskSlotLimiter(2, 4, new SimpleMeterRegistry());
+
+    @Test
+    void testLatencyIsComparedPerOperation() {
+        TaskSlotLimitAdjuster adjuster = new TaskSlotLimitAdjuster();
+        ReflectionTestUtils.setField(adjuster, "taskSlotLimiter", taskSlotLimiter);
+        ReflectionTestUtils.setField(adjuster, "latencyTolerance", 2.0);
+
+        record(TaskSlotLimiter.Operation.VALIDATE, Duration.ofMillis(100));
+        record(TaskSlotLimiter.Operation.APPLY, Duration.ofSeconds(60));
+        assertEquals(List.of(), getOperationsSlowerThanBaseline(adjuster));
+
+        // many fast validates followed by the usual applies.
+        record(TaskSlotLimiter.Operation.VALIDATE, Duration.ofMillis(100));
+        record(TaskSlotLimiter.Operation.APPLY, Duration.ofSeconds(60));
+        assertEquals(List.of(), getOperationsSlowerThanBaseline(adjuster));
+
+        record(TaskSlotLimiter.Operation.APPLY, Duration.ofSeconds(180));
+        assertEquals(List.of("apply"), getOperationsSlowerThanBaseline(adjuster));
+    }
+
+    private void record(TaskSlotLimiter.Operation operation, Duration duration) {
+        for (int i = 0; i < 3; i++) {
+            taskSlotLimiter.getExecutionTimer(operation).record(duration);
+        }
+    }
+
+    private List<String> getOperationsSlowerThanBaseline(TaskSlotLimitAdjuster adjuster) {
+        return ReflectionTestUtils.invokeMethod(adjuster, "getOperationsSlowerThanBaseline");
+    }
+}
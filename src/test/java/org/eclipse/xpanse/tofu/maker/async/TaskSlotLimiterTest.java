@@ -0,0 +1,47 @@
+package org.eclipse.xpanse.tofu.maker.async;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+class TaskSlotLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void testChangeSlotLimitWithinBounds() {
+        TaskSlotLimiter taskSlotLimiter = new TaskSlotLimiter(2, 4, meterRegistry);
+        assertEquals(4, taskSlotLimiter.getMaxSlots());
+        assertEquals(2, taskSlotLimiter.getSlotLimit());
+
+        taskSlotLimiter.setSlotLimit(10);
+        assertEquals(4, taskSlotLimiter.getSlotLimit());
+        taskSlotLimiter.setSlotLimit(0);
+        assertEquals(1, taskSlotLimiter.getSlotLimit());
+        assertEquals(1.0, meterRegistry.get("tofu.maker.task.slots.limit").gauge().value());
+    }
+
+    @Test
+    void testLoweredLimitKeepsRunningExecutions() {
+        TaskSlotLimiter taskSlotLimiter = new TaskSlotLimiter(3, 0, meterRegistry);
+
+        int usedSlots =
+                taskSlotLimiter.runWithSlot(
+                        TaskSlotLimiter.Operation.APPLY,
+                        () ->
+                                taskSlotLimiter.runWithSlot(
+                                        TaskSlotLimiter.Operation.PLAN,
+                                        () -> {
+                                            taskSlotLimiter.setSlotLimit(1);
+                                            return taskSlotLimiter.getUsedSlots();
+                                        }));
+
+        assertEquals(1, usedSlots);
+        assertEquals(0, taskSlotLimiter.getUsedSlots());
+        assertEquals(
+                1, taskSlotLimiter.getExecutionTimer(TaskSlotLimiter.Operation.APPLY).count());
+        assertEquals(
+                0, taskSlotLimiter.getExecutionTimer(TaskSlotLimiter.Operation.PLAN).count());
+    }
+}
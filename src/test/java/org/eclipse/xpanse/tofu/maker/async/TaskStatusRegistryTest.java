@@ -0,0 +1,73 @@
+package org.eclipse.xpanse.tofu.maker.async;
+
+import static org.eclipse.xpanse.tofu.maker.logging.CustomRequestIdGenerator.REQUEST_ID;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.UUID;
+import org.eclipse.xpanse.tofu.maker.models.enums.RequestType;
+import org.eclipse.xpanse.tofu.maker.models.enums.TaskPhase;
+import org.eclipse.xpanse.tofu.maker.models.request.directory.OpenTofuAsyncRequestWithScriptsDirectory;
+import org.eclipse.xpanse.tofu.maker.models.response.TaskStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+class TaskStatusRegistryTest {
+
+    private final TaskStatusRegistry taskStatusRegistry = new TaskStatusRegistry();
+
+    @AfterEach
+    void tearDown() {
+        MDC.clear();
+    }
+
+    @Test
+    void testTaskPhasesUntilCompleted() {
+        UUID requestId = queueTask();
+        assertTrue(taskStatusRegistry.isInProgress(requestId));
+        assertEquals(TaskPhase.QUEUED, taskStatusRegistry.getStatus(requestId).getPhase());
+
+        MDC.put(REQUEST_ID, requestId.toString());
+        taskStatusRegistry.updatePhaseOfCurrentTask(TaskPhase.APPLY);
+        TaskStatus status = taskStatusRegistry.getStatus(requestId);
+        assertEquals(TaskPhase.APPLY, status.getPhase());
+        assertEquals(RequestType.DEPLOY, status.getRequestType());
+        assertNotNull(status.getNode());
+
+        taskStatusRegistry.finished(requestId, true);
+        assertFalse(taskStatusRegistry.isInProgress(requestId));
+        assertEquals(TaskPhase.COMPLETED, taskStatusRegistry.getStatus(requestId).getPhase());
+        assertNotNull(taskStatusRegistry.getStatus(requestId).getFinishedTime());
+
+        taskStatusRegistry.updatePhase(requestId, TaskPhase.CALLBACK);
+        assertEquals(TaskPhase.COMPLETED, taskStatusRegistry.getStatus(requestId).getPhase());
+    }
+
+    @Test
+    void testGetStatusesOfUnknownTasks() {
+        UUID requestId = queueTask();
+        UUID unknownRequestId = UUID.randomUUID();
+        taskStatusRegistry.updatePhase(unknownRequestId, TaskPhase.INIT);
+
+        List<TaskStatus> statuses =
+                taskStatusRegistry.getStatuses(List.of(unknownRequestId, requestId));
+
+        assertEquals(TaskPhase.UNKNOWN, statuses.get(0).getPhase());
+        assertEquals(unknownRequestId, statuses.get(0).getRequestId());
+        assertEquals(TaskPhase.QUEUED, statuses.get(1).getPhase());
+        assertFalse(taskStatusRegistry.isInProgress(unknownRequestId));
+    }
+
+    private UUID queueTask() {
+        OpenTofuAsyncRequestWithScriptsDirectory request =
+                new OpenTofuAsyncRequestWithScriptsDirectory();
+        request.setRequestId(UUID.randomUUID());
+        request.setRequestType(RequestType.DEPLOY);
+        taskStatusRegistry.queued(request);
+        return request.getRequestId();
+    }
+}
@@ -0,0 +1,84 @@
+package org.eclipse.xpanse.tofu.maker.opentofu.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.Resource;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import org.eclipse.xpanse.tofu.maker.async.OpenTofuTaskJournal;
+import org.eclipse.xpanse.tofu.maker.async.OpenTofuTaskScheduler;
+import org.eclipse.xpanse.tofu.maker.async.TaskAdmissionController;
+import org.eclipse.xpanse.tofu.maker.async.TaskDeduplicator;
+import org.eclipse.xpanse.tofu.maker.async.TaskStatusRegistry;
+import org.eclipse.xpanse.tofu.maker.models.enums.RequestType;
+import org.eclipse.xpanse.tofu.maker.models.exceptions.InvalidOpenTofuRequestException;
+import org.eclipse.xpanse.tofu.maker.models.request.directory.OpenTofuAsyncRequestWithScriptsDirectory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+@SpringBootTest(classes = {OpenTofuRequestService.class, OpenTofuScriptsDirectoryHelper.class})
+class OpenTofuRequestServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir private Path workspace;
+
+    @Resource private OpenTofuRequestService requestService;
+
+    @MockitoBean private OpenTofuScriptsDirectoryService scriptsDirectoryService;
+    @MockitoBean private OpenTofuScriptsGitRepoHelper scriptsGitRepoHelper;
+    @MockitoBean private TaskAdmissionController admissionController;
+    @MockitoBean private OpenTofuTaskScheduler taskScheduler;
+    @MockitoBean private OpenTofuTaskJournal taskJournal;
+    @MockitoBean private TaskStatusRegistry taskStatusRegistry;
+    @MockitoBean private TaskDeduplicator taskDeduplicator;
+
+    @Test
+    void testRecoveredTaskGetsScriptFilesFromWorkspace() throws Exception {
+        File scriptFile =
+                Files.writeString(workspace.resolve("main.tf"), "terraform {}").toFile();
+        OpenTofuAsyncRequestWithScriptsDirectory recoveredRequest =
+                getRecoveredRequest(List.of(scriptFile));
+        assertNull(recoveredRequest.getScriptFiles());
+
+        requestService.scheduleRecoveredTask(recoveredRequest);
+
+        assertEquals(List.of(scriptFile), recoveredRequest.getScriptFiles());
+        verify(taskScheduler).schedule(eq(recoveredRequest), any(Runnable.class));
+    }
+
+    @Test
+    void testRecoveredTaskWithoutScriptFilesIsNotScheduled() throws Exception {
+        OpenTofuAsyncRequestWithScriptsDirectory recoveredRequest = getRecoveredRequest(List.of());
+
+        assertThrows(
+                InvalidOpenTofuRequestException.class,
+                () -> requestService.scheduleRecoveredTask(recoveredRequest));
+        verifyNoInteractions(taskScheduler);
+    }
+
+    /** The task journal stores the request as JSON, which leaves out the script files. */
+    private OpenTofuAsyncRequestWithScriptsDirectory getRecoveredRequest(List<File> scriptFiles)
+            throws Exception {
+        OpenTofuAsyncRequestWithScriptsDirectory request =
+                new OpenTofuAsyncRequestWithScriptsDirectory();
+        request.setRequestId(UUID.randomUUID());
+        request.setRequestType(RequestType.DEPLOY);
+        request.setScriptsDirectory(workspace.toString());
+        request.setScriptFiles(scriptFiles);
+        return objectMapper.treeToValue(
+                objectMapper.valueToTree(request), OpenTofuAsyncRequestWithScriptsDirectory.class);
+    }
+}
@@ -0,0 +1,110 @@
+package org.eclipse.xpanse.tofu.maker.opentofu.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.eclipse.xpanse.tofu.maker.models.response.ReFetchResult;
+import org.eclipse.xpanse.tofu.maker.models.response.ReFetchState;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class OpenTofuResultBatchManageTest {
+
+    private final OpenTofuResultPersistenceManage resultPersistenceManage =
+            mock(OpenTofuResultPersistenceManage.class);
+
+    @Test
+    void testErrorInReadIsWrittenAsFailedResult() {
+        UUID failedRequestId = UUID.randomUUID();
+        UUID requestId = UUID.randomUUID();
+        when(resultPersistenceManage.readOpenTofuResultByRequestId(failedRequestId))
+                .thenThrow(new StackOverflowError());
+        when(resultPersistenceManage.readOpenTofuResultByRequestId(requestId))
+                .thenReturn(okResult(requestId));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        assertTimeoutPreemptively(
+                Duration.ofSeconds(5),
+                () ->
+                        newBatchManage(2)
+                                .writeResults(List.of(failedRequestId, requestId), output, true));
+
+        String response = output.toString();
+        assertTrue(response.contains(ReFetchState.RESULT_PARSE_FAILED.toValue()));
+        verify(resultPersistenceManage).removeOpenTofuResult(requestId);
+        verify(resultPersistenceManage, never()).removeOpenTofuResult(failedRequestId);
+    }
+
+    @Test
+    void testReadsWaitForSlowClient() throws Exception {
+        when(resultPersistenceManage.readOpenTofuResultByRequestId(any()))
+                .thenAnswer(invocation -> okResult(invocation.getArgument(0)));
+        List<UUID> requestIds = Stream.generate(UUID::randomUUID).limit(10).toList();
+        CountDownLatch clientReading = new CountDownLatch(1);
+        OutputStream slowOutput =
+                new OutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        write(new byte[] {(byte) b}, 0, 1);
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        try {
+                            clientReading.await();
+                        } catch (InterruptedException e) {
+                            throw new IOException(e);
+                        }
+                    }
+                };
+        OpenTofuResultBatchManage batchManage = newBatchManage(2);
+
+        CompletableFuture<Void> response =
+                CompletableFuture.runAsync(
+                        () -> {
+                            try {
+                                batchManage.writeResults(requestIds, slowOutput, true);
+                            } catch (IOException e) {
+                                throw new IllegalStateException(e);
+                            }
+                        });
+        TimeUnit.MILLISECONDS.sleep(300);
+        assertEquals(2, mockingDetails(resultPersistenceManage).getInvocations().size());
+
+        clientReading.countDown();
+        response.get(5, TimeUnit.SECONDS);
+        requestIds.forEach(
+                requestId -> verify(resultPersistenceManage).removeOpenTofuResult(requestId));
+    }
+
+    private OpenTofuResultBatchManage newBatchManage(int parallelism) {
+        OpenTofuResultBatchManage batchManage = new OpenTofuResultBatchManage();
+        ReflectionTestUtils.setField(
+                batchManage, "resultPersistenceManage", resultPersistenceManage);
+        ReflectionTestUtils.setField(batchManage, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(batchManage, "parallelism", parallelism);
+        return batchManage;
+    }
+
+    private ReFetchResult okResult(UUID requestId) {
+        return ReFetchResult.builder().requestId(requestId).state(ReFetchState.OK).build();
+    }
+}
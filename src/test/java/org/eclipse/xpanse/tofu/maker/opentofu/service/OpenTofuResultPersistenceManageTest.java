@@ -0,0 +1,72 @@
+package org.eclipse.xpanse.tofu.maker.opentofu.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.stream.Stream;
+import org.eclipse.xpanse.tofu.maker.models.response.OpenTofuResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class OpenTofuResultPersistenceManageTest {
+
+    private final OpenTofuResultPersistenceManage resultPersistenceManage =
+            new OpenTofuResultPersistenceManage();
+
+    @TempDir private Path storeLocation;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(resultPersistenceManage, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(
+                resultPersistenceManage, "failedCallbackStoreLocation", storeLocation.toString());
+        ReflectionTestUtils.setField(
+                resultPersistenceManage, "resultContentRetentionSeconds", 3600L);
+    }
+
+    @Test
+    void testRemovesExpiredContentWithItsDirectory() throws Exception {
+        UUID expiredRequestId = storeResultContent();
+        UUID requestId = storeResultContent();
+        Path expiredContentFile =
+                resultPersistenceManage.getOpenTofuResultContentFile(expiredRequestId).toPath();
+        Files.setLastModifiedTime(
+                expiredContentFile, FileTime.from(Instant.now().minus(Duration.ofHours(2))));
+        // a directory emptied by an earlier version.
+        Path emptyDirectory = Files.createDirectory(storeLocation.resolve("empty"));
+        Files.setLastModifiedTime(
+                emptyDirectory, FileTime.from(Instant.now().minus(Duration.ofHours(2))));
+
+        resultPersistenceManage.removeExpiredResultContents();
+
+        assertEquals(1, countDirectories());
+        assertNotNull(resultPersistenceManage.getOpenTofuResultContentFile(requestId));
+        assertTrue(Files.notExists(storeLocation.resolve(expiredRequestId.toString())));
+    }
+
+    private UUID storeResultContent() throws Exception {
+        UUID requestId = UUID.randomUUID();
+        resultPersistenceManage.storeOpenTofuResultContent(
+                OpenTofuResult.builder().requestId(requestId).isCommandSuccessful(true).build());
+        File contentFile = resultPersistenceManage.getOpenTofuResultContentFile(requestId);
+        assertNotNull(contentFile);
+        return requestId;
+    }
+
+    private long countDirectories() throws Exception {
+        try (Stream<Path> paths = Files.list(storeLocation)) {
+            return paths.filter(Files::isDirectory).count();
+        }
+    }
+}
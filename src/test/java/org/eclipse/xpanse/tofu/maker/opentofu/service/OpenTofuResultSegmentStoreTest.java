@@ -0,0 +1,144 @@
+package org.eclipse.xpanse.tofu.maker.opentofu.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OpenTofuResultSegmentStoreTest {
+
+    @TempDir private Path storeLocation;
+    private OpenTofuResultSegmentStore store;
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    @Test
+    void testResultsAreReadAfterReopen() throws Exception {
+        store = openStore(3600);
+        List<UUID> requestIds = putResults(10);
+        store.remove(requestIds.getFirst());
+        store.close();
+
+        store = openStore(3600);
+
+        assertNull(store.get(requestIds.getFirst()));
+        assertArrayEquals(getData(5), store.get(requestIds.get(5)));
+    }
+
+    @Test
+    void testCompactionDeletesSegmentsOfRemovedResults() throws Exception {
+        store = openStore(3600);
+        List<UUID> requestIds = putResults(10);
+        for (int i = 0; i < 8; i++) {
+            store.remove(requestIds.get(i));
+        }
+
+        store.compact().get();
+
+        assertEquals(3, countSegments());
+        assertArrayEquals(getData(8), store.get(requestIds.get(8)));
+        store.close();
+        store = openStore(3600);
+        assertNull(store.get(requestIds.get(7)));
+        assertArrayEquals(getData(9), store.get(requestIds.get(9)));
+    }
+
+    @Test
+    void testTornRecordIsCutOffOnOpen() throws Exception {
+        store = openStore(3600);
+        List<UUID> requestIds = putResults(3);
+        store.close();
+        Path lastSegment;
+        try (Stream<Path> segments = Files.list(getStoreDirectory())) {
+            lastSegment = segments.sorted().toList().getLast();
+        }
+        Files.write(lastSegment, new byte[] {1, 2, 3}, StandardOpenOption.APPEND);
+
+        store = openStore(3600);
+        UUID requestId = UUID.randomUUID();
+        store.put(requestId, getData(3));
+
+        assertArrayEquals(getData(2), store.get(requestIds.get(2)));
+        assertArrayEquals(getData(3), store.get(requestId));
+    }
+
+    @Test
+    void testExpiredResultsAreRemoved() throws Exception {
+        store = openStore(0);
+        List<UUID> requestIds = putResults(10);
+        Thread.sleep(5);
+
+        store.compact().get();
+
+        assertNull(store.get(requestIds.getLast()));
+        assertEquals(1, countSegments());
+    }
+
+    @Test
+    void testInterruptedReadKeepsStoreWritable() throws Exception {
+        store = openStore(3600);
+        List<UUID> requestIds = putResults(1);
+
+        Thread.currentThread().interrupt();
+        try {
+            assertArrayEquals(getData(0), store.get(requestIds.getFirst()));
+        } finally {
+            Thread.interrupted();
+        }
+
+        UUID requestId = UUID.randomUUID();
+        store.put(requestId, getData(1));
+        assertArrayEquals(getData(1), store.get(requestId));
+    }
+
+    private OpenTofuResultSegmentStore openStore(long retentionSeconds) {
+        OpenTofuResultSegmentStore segmentStore =
+                new OpenTofuResultSegmentStore(
+                        storeLocation.toString(),
+                        200,
+                        retentionSeconds,
+                        5000,
+                        new SimpleMeterRegistry());
+        segmentStore.open();
+        return segmentStore;
+    }
+
+    private List<UUID> putResults(int count) throws Exception {
+        List<UUID> requestIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            UUID requestId = UUID.randomUUID();
+            store.put(requestId, getData(i));
+            requestIds.add(requestId);
+        }
+        return requestIds;
+    }
+
+    private byte[] getData(int index) {
+        return ("result-" + index + "-".repeat(60)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private long countSegments() throws Exception {
+        try (Stream<Path> segments = Files.list(getStoreDirectory())) {
+            return segments.count();
+        }
+    }
+
+    private Path getStoreDirectory() {
+        return storeLocation.resolve("tofu-maker-result-store");
+    }
+}
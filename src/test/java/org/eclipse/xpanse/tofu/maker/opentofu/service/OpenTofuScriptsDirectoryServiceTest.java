@@ -0,0 +1,78 @@
+package org.eclipse.xpanse.tofu.maker.opentofu.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.List;
+import java.util.UUID;
+import org.eclipse.xpanse.tofu.maker.models.enums.StateProjection;
+import org.eclipse.xpanse.tofu.maker.models.enums.StateResultMode;
+import org.eclipse.xpanse.tofu.maker.models.request.directory.OpenTofuRequestWithScriptsDirectory;
+import org.eclipse.xpanse.tofu.maker.models.response.OpenTofuResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class OpenTofuScriptsDirectoryServiceTest {
+
+    private static final String SCRIPTS_DIRECTORY = "/workspace";
+    private static final String FULL_STATE = "{\"serial\":2}";
+
+    private final OpenTofuScriptsDirectoryHelper scriptsHelper =
+            mock(OpenTofuScriptsDirectoryHelper.class);
+    private final OpenTofuStateDeltaHelper stateDeltaHelper = mock(OpenTofuStateDeltaHelper.class);
+    private final OpenTofuStateProjectionHelper stateProjectionHelper =
+            mock(OpenTofuStateProjectionHelper.class);
+    private final OpenTofuScriptsDirectoryService directoryService =
+            new OpenTofuScriptsDirectoryService();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(directoryService, "scriptsHelper", scriptsHelper);
+        ReflectionTestUtils.setField(directoryService, "stateDeltaHelper", stateDeltaHelper);
+        ReflectionTestUtils.setField(
+                directoryService, "stateProjectionHelper", stateProjectionHelper);
+        when(scriptsHelper.getTerraformStateFile(SCRIPTS_DIRECTORY))
+                .thenReturn(new File(SCRIPTS_DIRECTORY, "terraform.tfstate"));
+        when(scriptsHelper.getTerraformState(SCRIPTS_DIRECTORY)).thenReturn(FULL_STATE);
+    }
+
+    @Test
+    void testFailedDeltaFallsBackToFullStateWithProjections() {
+        when(stateDeltaHelper.getStatePatch(any(), any())).thenReturn(null);
+
+        OpenTofuResult tofuResult = setTerraformStateToResult();
+
+        verify(stateProjectionHelper).setStateProjectionsToResult(any(), any(), any());
+        assertNull(tofuResult.getTerraformStatePatch());
+        assertEquals(FULL_STATE, tofuResult.getTerraformState());
+    }
+
+    @Test
+    void testDeltaIsReturnedWithProjections() {
+        when(stateDeltaHelper.getStatePatch(any(), any())).thenReturn("[]");
+
+        OpenTofuResult tofuResult = setTerraformStateToResult();
+
+        assertEquals("[]", tofuResult.getTerraformStatePatch());
+        assertNull(tofuResult.getTerraformState());
+    }
+
+    private OpenTofuResult setTerraformStateToResult() {
+        OpenTofuRequestWithScriptsDirectory request = new OpenTofuRequestWithScriptsDirectory();
+        request.setRequestId(UUID.randomUUID());
+        request.setScriptsDirectory(SCRIPTS_DIRECTORY);
+        request.setTfState("{\"serial\":1}");
+        request.setStateResultMode(StateResultMode.STATE_DELTA);
+        request.setStateProjections(List.of(StateProjection.OUTPUTS));
+        OpenTofuResult tofuResult = OpenTofuResult.builder().build();
+        ReflectionTestUtils.invokeMethod(
+                directoryService, "setTerraformStateToResult", tofuResult, request);
+        return tofuResult;
+    }
+}
@@ -0,0 +1,138 @@
+package org.eclipse.xpanse.tofu.maker.opentofu.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.stream.Stream;
+import org.eclipse.xpanse.tofu.maker.models.request.git.OpenTofuScriptsGitRepoDetails;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class OpenTofuScriptsGitRepoCacheManageTest {
+
+    private static final String COMMIT_A = "a".repeat(40);
+    private static final String COMMIT_B = "b".repeat(40);
+    private static final String COMMIT_C = "c".repeat(40);
+    private static final String COMMIT_D = "d".repeat(40);
+
+    private final OpenTofuScriptsGitRepoMirrorManage mirrorManage =
+            mock(OpenTofuScriptsGitRepoMirrorManage.class);
+    private final OpenTofuScriptsGitRepoCacheManage cacheManage =
+            new OpenTofuScriptsGitRepoCacheManage();
+
+    @TempDir private Path cacheDirectory;
+    @TempDir private Path workspace;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(cacheManage, "mirrorManage", mirrorManage);
+        ReflectionTestUtils.setField(cacheManage, "cacheDirectory", cacheDirectory.toString());
+        ReflectionTestUtils.setField(cacheManage, "maxEntries", 2);
+        ReflectionTestUtils.setField(cacheManage, "maxIdleHours", 1L);
+        when(mirrorManage.resolveCommit(any()))
+                .thenAnswer(
+                        invocation -> {
+                            OpenTofuScriptsGitRepoDetails scriptsRepo = invocation.getArgument(0);
+                            return scriptsRepo.getCommit();
+                        });
+        when(mirrorManage.getExportPath(any())).thenReturn("scripts");
+        doAnswer(
+                        invocation -> {
+                            File target = invocation.getArgument(2);
+                            Files.writeString(
+                                    target.toPath().resolve("main.tf"),
+                                    invocation.getArgument(1, String.class));
+                            return null;
+                        })
+                .when(mirrorManage)
+                .exportCommit(any(), any(), any());
+    }
+
+    @Test
+    void testCachesScriptsOfSameCommitPerRepo() throws Exception {
+        OpenTofuScriptsGitRepoDetails repoA = newScriptsRepo("https://git.example.com/a", COMMIT_A);
+        OpenTofuScriptsGitRepoDetails repoB = newScriptsRepo("https://git.example.com/b", COMMIT_A);
+
+        cacheManage.copyScripts(workspace.resolve("1").toString(), repoA);
+        cacheManage.copyScripts(workspace.resolve("2").toString(), repoA);
+        cacheManage.copyScripts(workspace.resolve("3").toString(), repoB);
+
+        verify(mirrorManage, times(1)).exportCommit(eq(repoA), eq(COMMIT_A), any());
+        verify(mirrorManage, times(1)).exportCommit(eq(repoB), eq(COMMIT_A), any());
+        assertEquals(COMMIT_A, Files.readString(workspace.resolve("2").resolve("main.tf")));
+    }
+
+    @Test
+    void testRemovesIdleAndLeastRecentlyUsedScripts() throws Exception {
+        String repoUrl = "https://git.example.com/a";
+        for (String commit : new String[] {COMMIT_A, COMMIT_B, COMMIT_C, COMMIT_D}) {
+            cacheManage.copyScripts(
+                    workspace.resolve(commit).toString(), newScriptsRepo(repoUrl, commit));
+        }
+        setLastUsed(COMMIT_A, Duration.ofHours(2));
+        setLastUsed(COMMIT_B, Duration.ofMinutes(10));
+        setLastUsed(COMMIT_C, Duration.ofMinutes(5));
+
+        cacheManage.removeUnusedScripts();
+
+        assertFalse(isCached(COMMIT_A));
+        assertFalse(isCached(COMMIT_B));
+        assertTrue(isCached(COMMIT_C));
+        assertTrue(isCached(COMMIT_D));
+
+        cacheManage.copyScripts(
+                workspace.resolve("again").toString(), newScriptsRepo(repoUrl, COMMIT_A));
+        verify(mirrorManage, times(2)).exportCommit(any(), eq(COMMIT_A), any());
+    }
+
+    private void setLastUsed(String commit, Duration age) throws Exception {
+        Files.setLastModifiedTime(
+                findCommitDirectory(commit).resolve(getPathKey(commit)),
+                FileTime.from(Instant.now().minus(age)));
+    }
+
+    private boolean isCached(String commit) throws Exception {
+        try (Stream<Path> paths = Files.find(cacheDirectory, 2, (path, attributes) -> true)) {
+            return paths.anyMatch(path -> path.getFileName().toString().equals(commit));
+        }
+    }
+
+    private Path findCommitDirectory(String commit) throws Exception {
+        try (Stream<Path> paths = Files.find(cacheDirectory, 2, (path, attributes) -> true)) {
+            return paths.filter(path -> path.getFileName().toString().equals(commit))
+                    .findFirst()
+                    .orElseThrow();
+        }
+    }
+
+    private String getPathKey(String commit) throws Exception {
+        try (Stream<Path> paths = Files.list(findCommitDirectory(commit))) {
+            return paths.findFirst().orElseThrow().getFileName().toString();
+        }
+    }
+
+    private OpenTofuScriptsGitRepoDetails newScriptsRepo(String repoUrl, String commit) {
+        OpenTofuScriptsGitRepoDetails scriptsRepo = new OpenTofuScriptsGitRepoDetails();
+        scriptsRepo.setRepoUrl(repoUrl);
+        scriptsRepo.setBranch("main");
+        scriptsRepo.setScriptPath("scripts");
+        scriptsRepo.setCommit(commit);
+        return scriptsRepo;
+    }
+}
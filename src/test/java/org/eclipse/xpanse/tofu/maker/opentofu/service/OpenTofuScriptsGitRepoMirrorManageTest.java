@@ -0,0 +1,186 @@
+package org.eclipse.xpanse.tofu.maker.opentofu.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Stream;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.xpanse.tofu.maker.models.exceptions.GitRepoCloneException;
+import org.eclipse.xpanse.tofu.maker.models.request.git.OpenTofuScriptsGitRepoDetails;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class OpenTofuScriptsGitRepoMirrorManageTest {
+
+    @TempDir private Path repoDirectory;
+    @TempDir private Path mirrorDirectory;
+    @TempDir private Path otherRepoDirectory;
+    @TempDir private Path workspace;
+
+    private Git repo;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        repo = Git.init().setDirectory(repoDirectory.toFile()).setInitialBranch("main").call();
+    }
+
+    @AfterEach
+    void tearDown() {
+        repo.close();
+    }
+
+    @Test
+    void testResolveCommit() {
+        OpenTofuScriptsGitRepoMirrorManage mirrorManage = newMirrorManage(3600);
+        String commitId = "0123456789ABCDEF0123456789abcdef01234567";
+
+        assertEquals(commitId.toLowerCase(), mirrorManage.resolveCommit(newScriptsRepo(commitId)));
+        assertThrows(
+                GitRepoCloneException.class,
+                () -> mirrorManage.resolveCommit(newScriptsRepo("0123abc")));
+    }
+
+    @Test
+    void testResolvedTagIsKeptUntilTtl() throws Exception {
+        RevCommit firstCommit = commit("v1");
+        repo.tag().setName("v1.0").setObjectId(firstCommit).call();
+        OpenTofuScriptsGitRepoMirrorManage cachingMirrorManage = newMirrorManage(3600);
+        OpenTofuScriptsGitRepoMirrorManage expiringMirrorManage = newMirrorManage(0);
+        assertEquals(firstCommit.name(), cachingMirrorManage.resolveCommit(newScriptsRepo("v1.0")));
+        assertEquals(
+                firstCommit.name(), expiringMirrorManage.resolveCommit(newScriptsRepo("v1.0")));
+
+        RevCommit secondCommit = commit("v2");
+        repo.tag().setName("v1.0").setObjectId(secondCommit).setForceUpdate(true).call();
+
+        assertEquals(firstCommit.name(), cachingMirrorManage.resolveCommit(newScriptsRepo("v1.0")));
+        assertEquals(
+                secondCommit.name(), expiringMirrorManage.resolveCommit(newScriptsRepo("v1.0")));
+    }
+
+    @Test
+    void testRemovesUnusedMirrors() throws Exception {
+        commit("v1");
+        OpenTofuScriptsGitRepoMirrorManage mirrorManage = newMirrorManage(3600);
+        ReflectionTestUtils.setField(mirrorManage, "maxEntries", 1);
+        ReflectionTestUtils.setField(mirrorManage, "maxIdleHours", 1L);
+        Path mirrorParent = mirrorDirectory.resolve("3600");
+        // a mirror left by an earlier run.
+        Path earlierMirror = Files.createDirectories(mirrorParent.resolve("earlier.git"));
+        Files.setLastModifiedTime(
+                earlierMirror, FileTime.from(Instant.now().minus(Duration.ofHours(2))));
+        String otherRepoUrl = otherRepoDirectory.toUri().toString();
+        Git.cloneRepository()
+                .setURI(repoDirectory.toUri().toString())
+                .setDirectory(otherRepoDirectory.toFile())
+                .call()
+                .close();
+        mirrorManage.exportScripts(
+                workspace.resolve("1").toString(), newScriptsRepo(otherRepoUrl, "main"));
+        mirrorManage.exportScripts(workspace.resolve("2").toString(), newScriptsRepo("main"));
+
+        mirrorManage.removeUnusedMirrors();
+
+        try (Stream<Path> mirrors = Files.list(mirrorParent)) {
+            assertEquals(1, mirrors.count());
+        }
+        assertEquals(
+                List.of(
+                        new OpenTofuScriptsGitRepoMirrorManage.MirrorRef(
+                                repoDirectory.toUri().toString(), "refs/heads/main")),
+                mirrorManage.getMostRequestedRefs(10));
+    }
+
+    @Test
+    void testFreshRefIsReadWhileMirrorIsFetched() throws Exception {
+        commit("v1");
+        OpenTofuScriptsGitRepoMirrorManage mirrorManage = newMirrorManage(3600);
+        ReflectionTestUtils.setField(mirrorManage, "minRefreshIntervalSeconds", 3600L);
+        mirrorManage.exportScripts(workspace.resolve("1").toString(), newScriptsRepo("main"));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> mirrorStates =
+                (Map<String, Object>) ReflectionTestUtils.getField(mirrorManage, "mirrorStates");
+        Lock fetchLock =
+                (Lock)
+                        ReflectionTestUtils.getField(
+                                mirrorStates.values().iterator().next(), "fetchLock");
+
+        // another ref is fetched into the mirror meanwhile.
+        CountDownLatch fetchStarted = new CountDownLatch(1);
+        CompletableFuture<Void> fetch = new CompletableFuture<>();
+        CompletableFuture<Void> fetching =
+                CompletableFuture.runAsync(
+                        () -> {
+                            fetchLock.lock();
+                            fetchStarted.countDown();
+                            fetch.join();
+                            fetchLock.unlock();
+                        });
+        fetchStarted.await();
+        try {
+            assertTimeoutPreemptively(
+                    Duration.ofSeconds(5),
+                    () ->
+                            mirrorManage.exportScripts(
+                                    workspace.resolve("2").toString(), newScriptsRepo("main")));
+        } finally {
+            fetch.complete(null);
+            fetching.join();
+        }
+        assertEquals("v1", Files.readString(workspace.resolve("2").resolve("main.tf")));
+    }
+
+    private RevCommit commit(String content) throws Exception {
+        Files.writeString(repoDirectory.resolve("main.tf"), content);
+        repo.add().addFilepattern("main.tf").call();
+        return repo.commit().setMessage(content).setSign(false).call();
+    }
+
+    private OpenTofuScriptsGitRepoMirrorManage newMirrorManage(long tagResolveTtlSeconds) {
+        OpenTofuScriptsGitRepoMirrorManage mirrorManage = new OpenTofuScriptsGitRepoMirrorManage();
+        ReflectionTestUtils.setField(mirrorManage, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(
+                mirrorManage,
+                "mirrorDirectory",
+                mirrorDirectory.resolve(String.valueOf(tagResolveTtlSeconds)).toString());
+        ReflectionTestUtils.setField(mirrorManage, "minRefreshIntervalSeconds", 0L);
+        ReflectionTestUtils.setField(mirrorManage, "maxEntries", 100);
+        ReflectionTestUtils.setField(mirrorManage, "maxIdleHours", 168L);
+        ReflectionTestUtils.setField(mirrorManage, "fetchTimeoutSeconds", 20);
+        ReflectionTestUtils.setField(mirrorManage, "isSparseCheckoutEnabled", true);
+        ReflectionTestUtils.setField(mirrorManage, "tagResolveTtlSeconds", tagResolveTtlSeconds);
+        mirrorManage.createResolvedTagsCache();
+        return mirrorManage;
+    }
+
+    private OpenTofuScriptsGitRepoDetails newScriptsRepo(String commit) {
+        OpenTofuScriptsGitRepoDetails scriptsRepo = new OpenTofuScriptsGitRepoDetails();
+        scriptsRepo.setRepoUrl(repoDirectory.toUri().toString());
+        scriptsRepo.setBranch("main");
+        scriptsRepo.setCommit(commit);
+        return scriptsRepo;
+    }
+
+    private OpenTofuScriptsGitRepoDetails newScriptsRepo(String repoUrl, String branch) {
+        OpenTofuScriptsGitRepoDetails scriptsRepo = new OpenTofuScriptsGitRepoDetails();
+        scriptsRepo.setRepoUrl(repoUrl);
+        scriptsRepo.setBranch(branch);
+        return scriptsRepo;
+    }
+}
@@ -0,0 +1,93 @@
+package org.eclipse.xpanse.tofu.maker.opentofu.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OpenTofuStateDeltaHelperTest {
+
+    private static final String ORIGINAL_STATE =
+            """
+            {"version":4,"serial":3,"lineage":"abc","outputs":{"ip":{"value":"10.0.0.1"}},
+            "resources":[
+            {"mode":"managed","type":"huaweicloud_vpc","name":"a","instances":[{"attributes":{"id":"1"}}]},
+            {"mode":"managed","type":"huaweicloud_vpc","name":"c","instances":[{"attributes":{"id":"3"}}]}
+            ]}
+            """;
+
+    private final OpenTofuStateDeltaHelper stateDeltaHelper = new OpenTofuStateDeltaHelper();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir private Path workspace;
+
+    @Test
+    void testGetStatePatchWithAddedResource() throws Exception {
+        String newState =
+                """
+                {"version":4,"serial":4,"lineage":"abc","outputs":{"ip":{"value":"10.0.0.2"}},
+                "resources":[
+                {"mode":"managed","type":"huaweicloud_vpc","name":"a","instances":[{"attributes":{"id":"1"}}]},
+                {"mode":"managed","type":"huaweicloud_vpc","name":"b","instances":[{"attributes":{"id":"2"}}]},
+                {"mode":"managed","type":"huaweicloud_vpc","name":"c","instances":[{"attributes":{"id":"3"}}]}
+                ]}
+                """;
+        JsonNode patch =
+                objectMapper.readTree(
+                        stateDeltaHelper.getStatePatch(ORIGINAL_STATE, writeState(newState)));
+
+        assertEquals(5, patch.size());
+        assertOperation(patch.get(0), "test", "/lineage");
+        assertOperation(patch.get(1), "test", "/serial");
+        assertEquals(3, patch.get(1).get("value").asInt());
+        assertOperation(patch.get(2), "replace", "/serial");
+        assertOperation(patch.get(3), "replace", "/outputs/ip/value");
+        assertOperation(patch.get(4), "add", "/resources/1");
+        assertEquals("b", patch.get(4).get("value").get("name").asText());
+    }
+
+    @Test
+    void testGetStatePatchWithRemovedResource() throws Exception {
+        String newState =
+                """
+                {"version":4,"serial":4,"lineage":"abc","outputs":{"ip":{"value":"10.0.0.1"}},
+                "resources":[
+                {"mode":"managed","type":"huaweicloud_vpc","name":"c","instances":[{"attributes":{"id":"3"}}]}
+                ]}
+                """;
+        JsonNode patch =
+                objectMapper.readTree(
+                        stateDeltaHelper.getStatePatch(ORIGINAL_STATE, writeState(newState)));
+
+        assertEquals(4, patch.size());
+        assertOperation(patch.get(2), "replace", "/serial");
+        assertOperation(patch.get(3), "remove", "/resources/0");
+    }
+
+    @Test
+    void testGetStatePatchReturnsNullWhenLineageChanged() throws Exception {
+        String newState = "{\"version\":4,\"serial\":1,\"lineage\":\"xyz\",\"resources\":[]}";
+        assertNull(stateDeltaHelper.getStatePatch(ORIGINAL_STATE, writeState(newState)));
+    }
+
+    @Test
+    void testGetStatePatchReturnsNullWithoutOriginalState() throws Exception {
+        String newState = "{\"version\":4,\"serial\":1,\"lineage\":\"abc\",\"resources\":[]}";
+        assertNull(stateDeltaHelper.getStatePatch(null, writeState(newState)));
+    }
+
+    private File writeState(String state) throws Exception {
+        return Files.writeString(workspace.resolve("terraform.tfstate"), state).toFile();
+    }
+
+    private void assertOperation(JsonNode operation, String op, String path) {
+        assertEquals(op, operation.get("op").asText());
+        assertEquals(path, operation.get("path").asText());
+    }
+}
@@ -0,0 +1,69 @@
+package org.eclipse.xpanse.tofu.maker.opentofu.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.xpanse.tofu.maker.models.enums.StateProjection;
+import org.eclipse.xpanse.tofu.maker.models.response.OpenTofuResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OpenTofuStateProjectionHelperTest {
+
+    private static final String STATE =
+            """
+            {"version":4,"serial":3,"lineage":"abc",
+            "outputs":{"ip":{"value":"10.0.0.1","type":"string"},"ports":{"value":[80,443]}},
+            "resources":[
+            {"mode":"managed","type":"huaweicloud_vpc","name":"a","instances":[{"attributes":{}}]},
+            {"module":"module.ecs","mode":"managed","type":"huaweicloud_compute_instance",
+            "name":"vm","instances":[{"index_key":0,"attributes":{}},{"index_key":1}]},
+            {"mode":"data","type":"huaweicloud_images_image","name":"img",
+            "instances":[{"index_key":"x","attributes":{"nested":{"id":"1"}}}]}
+            ],
+            "check_results":null}
+            """;
+
+    private final OpenTofuStateProjectionHelper stateProjectionHelper =
+            new OpenTofuStateProjectionHelper();
+
+    @TempDir private Path workspace;
+
+    @Test
+    void testSetStateProjectionsToResult() throws Exception {
+        OpenTofuResult result = OpenTofuResult.builder().build();
+        stateProjectionHelper.setStateProjectionsToResult(
+                result,
+                writeState(),
+                List.of(StateProjection.OUTPUTS, StateProjection.RESOURCE_ADDRESSES));
+
+        assertEquals(Map.of("ip", "10.0.0.1", "ports", List.of(80, 443)), result.getStateOutputs());
+        assertEquals(
+                List.of(
+                        "huaweicloud_vpc.a",
+                        "module.ecs.huaweicloud_compute_instance.vm[0]",
+                        "module.ecs.huaweicloud_compute_instance.vm[1]",
+                        "data.huaweicloud_images_image.img[\"x\"]"),
+                result.getStateResourceAddresses());
+        assertNull(result.getTerraformState());
+    }
+
+    @Test
+    void testSetOnlyOutputsToResult() throws Exception {
+        OpenTofuResult result = OpenTofuResult.builder().build();
+        stateProjectionHelper.setStateProjectionsToResult(
+                result, writeState(), List.of(StateProjection.OUTPUTS));
+
+        assertEquals(2, result.getStateOutputs().size());
+        assertNull(result.getStateResourceAddresses());
+    }
+
+    private File writeState() throws Exception {
+        return Files.writeString(workspace.resolve("terraform.tfstate"), STATE).toFile();
+    }
+}
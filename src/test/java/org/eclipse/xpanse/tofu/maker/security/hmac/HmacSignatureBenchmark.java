@@ -0,0 +1,126 @@
+package org.eclipse.xpanse.tofu.maker.security.hmac;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.apache.commons.codec.binary.Hex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares signing webhook payloads of 1KB and 50MB per request, as done before, with a Mac,
+ * key and SecureRandom created per request and the payload concatenated into one String, and
+ * with the cached Mac fed from a String or from the streamed payload. Run the main method, or
+ * {@code java -cp <test classpath> org.openjdk.jmh.Main HmacSignatureBenchmark -prof gc}.
+ *
+ * <p>Results are indicative only. They were measured on JDK 17 with one shared CPU, -Xmx2g, 2
+ * warmup and 3 measurement iterations of 2s and 1 fork, on a modified copy that creates the
+ * HashMap with its constructor instead of HashMap.newHashMap. The times have wide errors, the
+ * allocations per operation are stable.
+ *
+ * <pre>
+ * 1KB payload               avg time    allocated per op
+ *   perRequestMac            34.5 us             16.6 KB
+ *   cachedMacWithString       3.0 us              2.7 KB
+ *   cachedMacWithStream       2.4 us              1.7 KB
+ *
+ * 50MB payload              avg time    allocated per op
+ *   perRequestMac             155 ms            104.9 MB
+ *   cachedMacWithString        85 ms             52.4 MB
+ *   cachedMacWithStream        49 ms              1.7 KB
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class HmacSignatureBenchmark {
+
+    private static final String KEY = "benchmark-secret-key";
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final String URL = "http://localhost:8080/webhook/result";
+
+    @Param({"1024", "52428800"})
+    private int payloadSize;
+
+    private String payload;
+    private byte[] payloadBytes;
+    private HmacSignatureHeaderManage hmacSignatureHeaderManage;
+
+    @Setup
+    public void setUp() throws Exception {
+        char[] chars = new char[payloadSize];
+        Arrays.fill(chars, 'x');
+        payload = new String(chars);
+        payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        hmacSignatureHeaderManage = new HmacSignatureHeaderManage(KEY, ALGORITHM);
+    }
+
+    @Benchmark
+    public Map<String, String> perRequestMac() throws Exception {
+        Mac mac = Mac.getInstance(ALGORITHM);
+        mac.init(new SecretKeySpec(KEY.getBytes(), ALGORITHM));
+        byte[] nonceBytes = new byte[16];
+        new SecureRandom().nextBytes(nonceBytes);
+        StringBuilder nonce = new StringBuilder();
+        for (byte b : nonceBytes) {
+            nonce.append(String.format("%02x", b));
+        }
+        String timestamp = Long.toString(System.currentTimeMillis());
+        String value = nonce + "\n" + timestamp + "\n" + URL + "\n" + payload;
+        byte[] hmacBytes = mac.doFinal(value.getBytes());
+        Map<String, String> headers = new HashMap<>();
+        headers.put("x-nonce-signature", nonce.toString());
+        headers.put("x-timestamp-signature", timestamp);
+        headers.put(
+                "x-signature",
+                String.format(
+                        "algorithm=%s;headers=%s %s;signature=%s",
+                        ALGORITHM,
+                        "x-nonce-signature",
+                        "x-timestamp-signature",
+                        Hex.encodeHexString(hmacBytes)));
+        return headers;
+    }
+
+    @Benchmark
+    public Map<String, String> cachedMacWithString() {
+        return hmacSignatureHeaderManage.createHmacSignatureHeader(URL, payload);
+    }
+
+    @Benchmark
+    public Map<String, String> cachedMacWithStream() throws IOException {
+        return hmacSignatureHeaderManage.createHmacSignatureHeader(
+                URL, output -> output.write(payloadBytes));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(
+                        new OptionsBuilder()
+                                .include(HmacSignatureBenchmark.class.getSimpleName())
+                                .addProfiler(GCProfiler.class)
+                                .build())
+                .run();
+    }
+}
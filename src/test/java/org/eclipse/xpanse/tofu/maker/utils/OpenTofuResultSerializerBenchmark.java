@@ -0,0 +1,187 @@
+package org.eclipse.xpanse.tofu.maker.utils;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.xpanse.tofu.maker.models.response.OpenTofuResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the result codecs on the eclipse-serializer output with Jackson JSON, Smile and CBOR,
+ * on results with the state, logs and generated files of small and large deployments. The size
+ * of the stored result of each format is printed in the setup. Run the main method, or {@code
+ * java -cp <test classpath> org.openjdk.jmh.Main OpenTofuResultSerializerBenchmark -prof gc}.
+ *
+ * <p>Results on JDK 17 with one CPU, 2 warmup and 3 measurement iterations of 1s and 1 fork. The
+ * eclipse-* parameters could not run there, as the org.eclipse.serializer artifacts were not
+ * available. Instead each codec compressed the Jackson JSON bytes of the same results, so the
+ * times include the JSON step and the ratios on the eclipse-serializer output will differ. The
+ * results are indicative only, errors are wide on a single CPU. The default codec stays none
+ * until the eclipse-* parameters are measured.
+ *
+ * <pre>
+ * Size in bytes                 10 resources   1000 resources
+ *   json + none                         7325           642215
+ *   json + gzip                         1250            61600  (10.4x)
+ *   json + zstd                         1213            57316  (11.2x)
+ *   json + lz4                          1855           107400   (6.0x)
+ *   smile                               6581           581081
+ *   cbor                                6581           581512
+ *
+ * Time per op, 1000 resources      serialize      deserialize
+ *   json + none                       1.8 ms           2.1 ms
+ *   json + gzip                      13.6 ms           3.9 ms
+ *   json + zstd                       4.7 ms           3.2 ms
+ *   json + lz4                        3.0 ms           3.7 ms
+ *   smile                             1.4 ms           1.6 ms
+ *   cbor                              0.9 ms           1.4 ms
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OpenTofuResultSerializerBenchmark {
+
+    @Param({"eclipse-none", "eclipse-gzip", "eclipse-zstd", "eclipse-lz4", "json", "smile", "cbor"})
+    private String format;
+
+    @Param({"10", "1000"})
+    private int resourceCount;
+
+    private OpenTofuResult result;
+    private byte[] serializedResult;
+    private OpenTofuResultSerializer resultSerializer;
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() throws IOException {
+        result = createResult(resourceCount);
+        if (format.startsWith("eclipse-")) {
+            resultSerializer =
+                    new OpenTofuResultSerializer(
+                            OpenTofuResultCodec.getByValue(format.substring("eclipse-".length())));
+        } else {
+            objectMapper =
+                    switch (format) {
+                        case "smile" -> new ObjectMapper(new SmileFactory());
+                        case "cbor" -> new ObjectMapper(new CBORFactory());
+                        default -> new ObjectMapper();
+                    };
+            objectMapper.addMixIn(OpenTofuResult.class, OpenTofuResultMixIn.class);
+            objectMapper.addMixIn(
+                    OpenTofuResult.OpenTofuResultBuilder.class, OpenTofuResultBuilderMixIn.class);
+        }
+        serializedResult = serialize();
+        System.out.printf(
+                "%n%s with %d resources: %d bytes%n",
+                format, resourceCount, serializedResult.length);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return Objects.nonNull(resultSerializer)
+                ? resultSerializer.serialize(result)
+                : objectMapper.writeValueAsBytes(result);
+    }
+
+    @Benchmark
+    public OpenTofuResult deserialize() throws IOException {
+        return Objects.nonNull(resultSerializer)
+                ? resultSerializer.deserialize(serializedResult)
+                : objectMapper.readValue(serializedResult, OpenTofuResult.class);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(
+                        new OptionsBuilder()
+                                .include(OpenTofuResultSerializerBenchmark.class.getSimpleName())
+                                .addProfiler(GCProfiler.class)
+                                .build())
+                .run();
+    }
+
+    private static OpenTofuResult createResult(int resourceCount) {
+        StringBuilder state = new StringBuilder();
+        state.append("{\"version\":4,\"terraform_version\":\"1.8.0\",\"serial\":12,")
+                .append("\"lineage\":\"")
+                .append(UUID.randomUUID())
+                .append("\",\"outputs\":{},\"resources\":[");
+        StringBuilder stdOutput = new StringBuilder();
+        for (int i = 0; i < resourceCount; i++) {
+            if (i > 0) {
+                state.append(',');
+            }
+            state.append("{\"mode\":\"managed\",\"type\":\"openstack_compute_instance_v2\",")
+                    .append("\"name\":\"vm_")
+                    .append(i)
+                    .append("\",\"provider\":\"provider[\\\"registry.opentofu.org/")
+                    .append("terraform-provider-openstack/openstack\\\"]\",\"instances\":[{")
+                    .append("\"schema_version\":0,\"attributes\":{\"id\":\"")
+                    .append(UUID.randomUUID())
+                    .append("\",\"name\":\"vm-")
+                    .append(i)
+                    .append("\",\"flavor_name\":\"s6.large.2\",\"image_name\":\"Ubuntu 22.04\",")
+                    .append("\"access_ip_v4\":\"192.168.")
+                    .append(i / 256)
+                    .append('.')
+                    .append(i % 256)
+                    .append("\",\"availability_zone\":\"eu-west-101a\",\"metadata\":{},")
+                    .append("\"security_groups\":[\"default\"],\"tags\":[]},")
+                    .append("\"sensitive_attributes\":[]}]}");
+            stdOutput
+                    .append("openstack_compute_instance_v2.vm_")
+                    .append(i)
+                    .append(": Creation complete after 32s [id=")
+                    .append(UUID.randomUUID())
+                    .append("]\n");
+        }
+        state.append("]}");
+        Map<String, String> generatedFiles = new HashMap<>();
+        generatedFiles.put(".terraform.lock.hcl", "provider \"openstack\" {}\n".repeat(20));
+        return OpenTofuResult.builder()
+                .requestId(UUID.randomUUID())
+                .isCommandSuccessful(true)
+                .commandStdOutput(stdOutput.toString())
+                .commandStdError("")
+                .terraformState(state.toString())
+                .generatedFileContentMap(generatedFiles)
+                .openTofuVersionUsed("1.8.0")
+                .build();
+    }
+
+    @JsonDeserialize(builder = OpenTofuResult.OpenTofuResultBuilder.class)
+    private abstract static class OpenTofuResultMixIn {}
+
+    @JsonPOJOBuilder(withPrefix = "")
+    private abstract static class OpenTofuResultBuilderMixIn {
+
+        @JsonProperty("commandSuccessful")
+        abstract OpenTofuResult.OpenTofuResultBuilder isCommandSuccessful(boolean value);
+    }
+}
@@ -0,0 +1,69 @@
+package org.eclipse.xpanse.tofu.maker.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import org.eclipse.xpanse.tofu.maker.models.response.OpenTofuResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+class OpenTofuResultSerializerTest {
+
+    @ParameterizedTest
+    @EnumSource(OpenTofuResultCodec.class)
+    void testResultsOfAllCodecsAreReadWithConfiguredCodec(OpenTofuResultCodec codec) {
+        OpenTofuResult result = createResult();
+        OpenTofuResultSerializer serializer = new OpenTofuResultSerializer(codec);
+        OpenTofuResultSerializer otherSerializer =
+                new OpenTofuResultSerializer(OpenTofuResultCodec.GZIP);
+
+        byte[] data = serializer.serialize(result);
+
+        assertEquals(result, serializer.deserialize(data));
+        assertEquals(result, otherSerializer.deserialize(data));
+        if (codec != OpenTofuResultCodec.NONE) {
+            assertTrue(data.length < serializer.getSerializedSize(data));
+        }
+    }
+
+    @Test
+    void testResultWithoutHeaderIsRead() {
+        OpenTofuResult result = createResult();
+        OpenTofuResultSerializer serializer = new OpenTofuResultSerializer(OpenTofuResultCodec.LZ4);
+        byte[] data = new OpenTofuResultSerializer(OpenTofuResultCodec.NONE).serialize(result);
+        byte[] dataWithoutHeader = Arrays.copyOfRange(data, 9, data.length);
+
+        assertEquals(result, serializer.deserialize(dataWithoutHeader));
+        assertEquals(dataWithoutHeader.length, serializer.getSerializedSize(dataWithoutHeader));
+    }
+
+    @Test
+    void testTruncatedGzipDataIsRejected() {
+        byte[] data = "{\"version\":4}".getBytes(StandardCharsets.UTF_8);
+        byte[] encoded = OpenTofuResultCodec.GZIP.encode(data, new byte[0]);
+
+        assertThrows(
+                IllegalStateException.class,
+                () -> OpenTofuResultCodec.GZIP.decode(encoded, 0, data.length + 1));
+    }
+
+    private OpenTofuResult createResult() {
+        Map<String, String> generatedFiles = new HashMap<>();
+        generatedFiles.put(".terraform.lock.hcl", "provider \"openstack\" {}");
+        return OpenTofuResult.builder()
+                .requestId(UUID.randomUUID())
+                .isCommandSuccessful(true)
+                .commandStdOutput("Apply complete! Resources: 1 added.\n".repeat(100))
+                .terraformState("{\"version\":4,\"resources\":[]}".repeat(100))
+                .generatedFileContentMap(generatedFiles)
+                .openTofuVersionUsed("1.8.0")
+                .build();
+    }
+}
@@ -0,0 +1,195 @@
+package org.eclipse.xpanse.tofu.maker.webhook;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpServer;
+import java.net.InetSocketAddress;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.eclipse.xpanse.tofu.maker.models.enums.WebhookContentEncoding;
+import org.eclipse.xpanse.tofu.maker.models.exceptions.WebhookDeliveryException;
+import org.eclipse.xpanse.tofu.maker.security.hmac.HmacSignatureHeaderManage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class WebhookClientTest {
+
+    private static final String SIGNING_KEY = "webhook-signing-key";
+    private static final String SIGNING_ALGORITHM = "HmacSHA256";
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final List<String> receivedBodies = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private String baseUrl;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext(
+                "/ok",
+                exchange -> {
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    exchange.getRequestBody().readAllBytes();
+                    exchange.sendResponseHeaders(204, -1);
+                    inFlight.decrementAndGet();
+                    exchange.close();
+                });
+        server.createContext(
+                "/error",
+                exchange -> {
+                    exchange.getRequestBody().readAllBytes();
+                    exchange.sendResponseHeaders(500, -1);
+                    exchange.close();
+                });
+        server.createContext(
+                "/identity",
+                exchange -> {
+                    String contentEncoding =
+                            exchange.getRequestHeaders().getFirst("Content-Encoding");
+                    receivedBodies.add(new String(exchange.getRequestBody().readAllBytes()));
+                    exchange.sendResponseHeaders(Objects.isNull(contentEncoding) ? 204 : 415, -1);
+                    exchange.close();
+                });
+        server.createContext(
+                "/bad-request",
+                exchange -> {
+                    String contentEncoding =
+                            exchange.getRequestHeaders().getFirst("Content-Encoding");
+                    receivedBodies.add(new String(exchange.getRequestBody().readAllBytes()));
+                    exchange.sendResponseHeaders(Objects.isNull(contentEncoding) ? 204 : 400, -1);
+                    exchange.close();
+                });
+        server.createContext(
+                "/signed",
+                exchange -> {
+                    Headers headers = exchange.getRequestHeaders();
+                    byte[] body = exchange.getRequestBody().readAllBytes();
+                    boolean isValid =
+                            headers.getFirst("x-signature")
+                                    .endsWith(
+                                            sign(
+                                                    headers.getFirst("x-nonce-signature"),
+                                                    headers.getFirst("x-timestamp-signature"),
+                                                    baseUrl + "/signed",
+                                                    body));
+                    exchange.sendResponseHeaders(isValid ? 204 : 401, -1);
+                    exchange.close();
+                });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void testRequestsOverHostLimitAreQueued() {
+        WebhookClient client = new WebhookClient(new ObjectMapper(), null, 1000, 5000, 2, 2, 30);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            futures.add(client.post(baseUrl + "/ok", null, Map.of("index", i)));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        assertTrue(maxInFlight.get() <= 2);
+        assertEquals(0, client.getActiveHosts());
+    }
+
+    @Test
+    void testGzipRejectedIsSentUncompressed() {
+        WebhookClient client = new WebhookClient(new ObjectMapper(), null, 1000, 5000, 2, 2, 30);
+
+        client.post(baseUrl + "/identity", WebhookContentEncoding.GZIP, Map.of("index", 0)).join();
+        client.post(baseUrl + "/identity", WebhookContentEncoding.GZIP, Map.of("index", 1)).join();
+
+        assertEquals(3, receivedBodies.size());
+        assertEquals("{\"index\":0}", receivedBodies.get(1));
+        assertEquals("{\"index\":1}", receivedBodies.get(2));
+    }
+
+    @Test
+    void testGzipBadRequestIsSentUncompressed() {
+        WebhookClient client = new WebhookClient(new ObjectMapper(), null, 1000, 5000, 2, 2, 30);
+
+        client.post(baseUrl + "/bad-request", WebhookContentEncoding.GZIP, Map.of("index", 0))
+                .join();
+
+        assertEquals(2, receivedBodies.size());
+        assertEquals("{\"index\":0}", receivedBodies.get(1));
+    }
+
+    @Test
+    void testSignatureCoversBodyAsSent() throws Exception {
+        HmacSignatureHeaderManage hmacSignatureHeaderManage =
+                new HmacSignatureHeaderManage(SIGNING_KEY, SIGNING_ALGORITHM);
+        WebhookClient client =
+                new WebhookClient(
+                        new ObjectMapper(), hmacSignatureHeaderManage, 1000, 5000, 2, 2, 30);
+        Map<String, Object> body = Map.of("output", "x".repeat(200_000));
+
+        client.post(baseUrl + "/signed", WebhookContentEncoding.GZIP, body).join();
+        client.post(baseUrl + "/signed", null, body).join();
+    }
+
+    @Test
+    void testErrorStatusCompletesExceptionally() {
+        WebhookClient client = new WebhookClient(new ObjectMapper(), null, 1000, 5000, 2, 2, 30);
+
+        CompletionException e =
+                assertThrows(
+                        CompletionException.class,
+                        () -> client.post(baseUrl + "/error", null, Map.of("index", 0)).join());
+
+        assertInstanceOf(WebhookDeliveryException.class, e.getCause());
+    }
+
+    @Test
+    void testInvalidUrlCompletesExceptionally() {
+        WebhookClient client = new WebhookClient(new ObjectMapper(), null, 1000, 5000, 2, 2, 30);
+
+        CompletionException e =
+                assertThrows(
+                        CompletionException.class,
+                        () -> client.post("not a url", null, Map.of("index", 0)).join());
+
+        assertInstanceOf(WebhookDeliveryException.class, e.getCause());
+    }
+
+    private static String sign(String nonce, String timestamp, String url, byte[] body) {
+        try {
+            Mac mac = Mac.getInstance(SIGNING_ALGORITHM);
+            mac.init(new SecretKeySpec(SIGNING_KEY.getBytes(), SIGNING_ALGORITHM));
+            mac.update((nonce + "\n" + timestamp + "\n" + url + "\n").getBytes());
+            return HexFormat.of().formatHex(mac.doFinal(body));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package org.eclipse.xpanse.tofu.maker.webhook;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.eclipse.xpanse.tofu.maker.models.exceptions.WebhookDeliveryException;
+import org.eclipse.xpanse.tofu.maker.models.request.webhook.WebhookConfig;
+import org.eclipse.xpanse.tofu.maker.models.response.OpenTofuResult;
+import org.eclipse.xpanse.tofu.maker.opentofu.service.OpenTofuResultPersistenceManage;
+import org.eclipse.xpanse.tofu.maker.utils.OpenTofuResultCodec;
+import org.eclipse.xpanse.tofu.maker.utils.OpenTofuResultSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class WebhookOutboxTest {
+
+    private static final String WEBHOOK_URL = "http://webhook.example.com/callback";
+
+    private final WebhookClient webhookClient = mock(WebhookClient.class);
+    private final OpenTofuResultPersistenceManage resultPersistenceManage =
+            mock(OpenTofuResultPersistenceManage.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BlockingQueue<CompletableFuture<Void>> posts = new LinkedBlockingQueue<>();
+    private final List<Object> postedBodies = new CopyOnWriteArrayList<>();
+    private final List<WebhookOutbox> outboxes = new ArrayList<>();
+
+    @TempDir private Path outboxDirectory;
+
+    @BeforeEach
+    void setUp() {
+        when(webhookClient.post(any(), any(), any()))
+                .thenAnswer(
+                        invocation -> {
+                            postedBodies.add(invocation.getArgument(2));
+                            CompletableFuture<Void> post = new CompletableFuture<>();
+                            posts.add(post);
+                            return post;
+                        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        outboxes.forEach(WebhookOutbox::close);
+    }
+
+    @Test
+    void testRetriesWithBackoffUntilDelivered() throws Exception {
+        WebhookOutbox outbox = newOutbox(10, 1);
+        outbox.enqueue(newWebhookConfig(), newResult());
+
+        nextPost().completeExceptionally(new WebhookDeliveryException("failed"));
+        long failedTime = System.nanoTime();
+        CompletableFuture<Void> secondPost = nextPost();
+        // the first retry waits between half and the whole initial backoff of 100ms.
+        assertTrue(System.nanoTime() - failedTime >= TimeUnit.MILLISECONDS.toNanos(50));
+        secondPost.completeExceptionally(new WebhookDeliveryException("failed"));
+        nextPost().complete(null);
+
+        awaitOutboxEmpty();
+        assertEquals(2, meterRegistry.counter("tofu.maker.webhook.retries").count());
+    }
+
+    @Test
+    void testExhaustedDeliveryIsStored() throws Exception {
+        WebhookOutbox outbox = newOutbox(2, 10);
+        OpenTofuResult result = newResult();
+        outbox.enqueue(newWebhookConfig(), result);
+
+        nextPost().completeExceptionally(new WebhookDeliveryException("failed"));
+        nextPost().completeExceptionally(new WebhookDeliveryException("failed"));
+
+        verify(resultPersistenceManage, timeout(5000)).persistOpenTofuResult(result);
+        awaitOutboxEmpty();
+        assertEquals(1, meterRegistry.counter("tofu.maker.webhook.exhausted").count());
+    }
+
+    @Test
+    void testOpenCircuitLetsSingleTrialThrough() throws Exception {
+        WebhookOutbox outbox = newOutbox(10, 1);
+        outbox.enqueue(newWebhookConfig(), newResult());
+        nextPost().completeExceptionally(new WebhookDeliveryException("failed"));
+        outbox.enqueue(newWebhookConfig(), newResult());
+
+        assertNull(posts.poll(500, TimeUnit.MILLISECONDS));
+        CompletableFuture<Void> trial = nextPost();
+        assertNull(posts.poll(500, TimeUnit.MILLISECONDS));
+        trial.complete(null);
+        nextPost().complete(null);
+
+        awaitOutboxEmpty();
+    }
+
+    @Test
+    void testResumesDeliveriesAfterRestart() throws Exception {
+        WebhookOutbox outbox = newOutbox(10, 10);
+        OpenTofuResult result = newResult();
+        outbox.enqueue(newWebhookConfig(), result);
+        assertNotNull(nextPost());
+        outbox.close();
+
+        newOutbox(10, 10);
+
+        nextPost().complete(null);
+        OpenTofuResult resumedResult = assertInstanceOf(OpenTofuResult.class, postedBodies.get(1));
+        assertEquals(result.getRequestId(), resumedResult.getRequestId());
+        awaitOutboxEmpty();
+    }
+
+    private WebhookOutbox newOutbox(int maxAttempts, int circuitFailureThreshold) {
+        WebhookOutbox outbox = new WebhookOutbox();
+        ReflectionTestUtils.setField(outbox, "webhookClient", webhookClient);
+        ReflectionTestUtils.setField(
+                outbox, "resultSerializer", new OpenTofuResultSerializer(OpenTofuResultCodec.NONE));
+        ReflectionTestUtils.setField(outbox, "resultPersistenceManage", resultPersistenceManage);
+        ReflectionTestUtils.setField(outbox, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(outbox, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(outbox, "directory", outboxDirectory.toString());
+        ReflectionTestUtils.setField(outbox, "maxAttempts", maxAttempts);
+        ReflectionTestUtils.setField(outbox, "initialBackoffMillis", 100L);
+        ReflectionTestUtils.setField(outbox, "maxBackoffMillis", 200L);
+        ReflectionTestUtils.setField(outbox, "circuitFailureThreshold", circuitFailureThreshold);
+        ReflectionTestUtils.setField(outbox, "circuitOpenSeconds", 1L);
+        ReflectionTestUtils.setField(outbox, "batchLingerMillis", 200L);
+        ReflectionTestUtils.setField(outbox, "batchMaxSize", 100);
+        outbox.open();
+        outboxes.add(outbox);
+        return outbox;
+    }
+
+    private CompletableFuture<Void> nextPost() throws InterruptedException {
+        CompletableFuture<Void> post = posts.poll(5, TimeUnit.SECONDS);
+        assertNotNull(post);
+        return post;
+    }
+
+    private void awaitOutboxEmpty() throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() - deadline < 0) {
+            try (Stream<Path> files = Files.list(outboxDirectory)) {
+                if (files.findAny().isEmpty()) {
+                    return;
+                }
+            }
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+        throw new AssertionError("Deliveries left in webhook outbox.");
+    }
+
+    private WebhookConfig newWebhookConfig() {
+        WebhookConfig webhookConfig = new WebhookConfig();
+        webhookConfig.setUrl(WEBHOOK_URL);
+        return webhookConfig;
+    }
+
+    private OpenTofuResult newResult() {
+        return OpenTofuResult.builder()
+                .requestId(UUID.randomUUID())
+                .isCommandSuccessful(true)
+                .build();
+    }
+}